@@ -13,10 +13,18 @@ import ca.ubc.ece.cpen221.mp3.staff.Vertex;
  */
 public class AdjacencyListGraph implements Graph {
     private Map<Vertex, List<Vertex>> adjacencyList;
+    // incoming edges: the vertices with an edge to each vertex
+    private Map<Vertex, List<Vertex>> reverseAdjacencyList;
+    // the one clone of each vertex that every list refers to
+    private Map<Vertex, Vertex> canonicalVertices;
+    // number of vertices and edges added so far
+    private int modificationCount;
 
     public AdjacencyListGraph() {
         // create the adjacency list!
         adjacencyList = new HashMap<Vertex, List<Vertex>>();
+        reverseAdjacencyList = new HashMap<Vertex, List<Vertex>>();
+        canonicalVertices = new HashMap<Vertex, Vertex>();
     }
 
     /**
@@ -37,6 +45,9 @@ public class AdjacencyListGraph implements Graph {
         // and add it to the adjacency list
         List<Vertex> edgeList = new LinkedList<Vertex>();
         adjacencyList.put(vClone, edgeList);
+        reverseAdjacencyList.put(vClone, new LinkedList<Vertex>());
+        canonicalVertices.put(vClone, vClone);
+        modificationCount++;
     }
 
     /**
@@ -56,10 +67,14 @@ public class AdjacencyListGraph implements Graph {
             return;
         }
 
-        // defensively clone the the vertex
-        Vertex v2Clone = new Vertex(v2.getLabel());
-        // add the edge
+        // use the clones made by addVertex, so that no vertex is copied per
+        // edge
+        Vertex v1Clone = canonicalVertices.get(v1);
+        Vertex v2Clone = canonicalVertices.get(v2);
+        // add the edge to both the outgoing and incoming lists
         adjacencyList.get(v1).add(v2Clone);
+        reverseAdjacencyList.get(v2).add(v1Clone);
+        modificationCount++;
     }
 
     /**
@@ -102,21 +117,8 @@ public class AdjacencyListGraph implements Graph {
      * @return a list of size 0 if v has no upstream neighbors.
      */
     public List<Vertex> getUpstreamNeighbors(Vertex v) {
-        // create an empty list for the upstream neighbors
-        List<Vertex> neighbors = new LinkedList<Vertex>();
-
-        // for every vertex in the adjacency list
-        for (Vertex currentVertex : adjacencyList.keySet()) {
-            // if that vertex has and edge to vertex v
-            if (adjacencyList.get(currentVertex).contains(v)) {
-
-                // add that vertex to the list of upstream neighbors
-                Vertex vClone = new Vertex(currentVertex.getLabel());
-                neighbors.add(vClone);
-            }
-        }
-
-        return neighbors;
+        // the incoming edges are kept up to date by addEdge
+        return Collections.unmodifiableList(reverseAdjacencyList.get(v));
     }
 
     /**
@@ -131,4 +133,12 @@ public class AdjacencyListGraph implements Graph {
         return Collections.unmodifiableList(Vertices);
     }
 
+    /**
+     * @return a count that goes up by one with every vertex or edge added, so
+     *         that callers can tell when the graph has changed
+     */
+    public int modificationCount() {
+        return modificationCount;
+    }
+
 }
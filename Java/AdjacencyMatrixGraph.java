@@ -1,69 +1,101 @@
 package ca.ubc.ece.cpen221.mp3.graph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import ca.ubc.ece.cpen221.mp3.staff.Graph;
 import ca.ubc.ece.cpen221.mp3.staff.Vertex;
 /**
  * @author Cinnie Hsiung, Yuqing Du
  */
-public class AdjacencyMatrixGraph implements Graph {
-
-    // adjacency matrix as a list of lists
-    private List<ArrayList<Integer>> adjacencyMatrix;
+public class AdjacencyMatrixGraph implements IndexedGraph {
+
+    // number of bits in each word of the matrix
+    private static final int WORD_SIZE = 64;
+    // number of vertices the matrix has room for when it is first created
+    private static final int INITIAL_CAPACITY = WORD_SIZE;
+
+    // adjacency matrix as bitsets: bit j of rows[i] is set iff there is an
+    // edge from vertex i to vertex j
+    private long[][] rows;
+    // the same matrix stored by column: bit i of columns[j] is set iff there
+    // is an edge from vertex i to vertex j
+    private long[][] columns;
     // list of vertices that correspond to the adjacency matrix
     private List<Vertex> vertices = new ArrayList<Vertex>();
+    // index of each vertex in the adjacency matrix
+    private Map<Vertex, Integer> indices = new HashMap<Vertex, Integer>();
+    // number of edges in the graph
+    private int edgeCount;
+    // number of vertices and edges added so far
+    private int modificationCount;
 
     /**
      * Constructor for the AdjacencyMatrixGraph.
      */
     public AdjacencyMatrixGraph() {
-        adjacencyMatrix = new ArrayList<ArrayList<Integer>>();
+        rows = new long[INITIAL_CAPACITY][INITIAL_CAPACITY / WORD_SIZE];
+        columns = new long[INITIAL_CAPACITY][INITIAL_CAPACITY / WORD_SIZE];
     }
 
     /**
      * This method adds a vertex to the adjacency matrix graph
-     * 
+     *
      * @param v
      *            - Vertex to add to the adjacency matrix graph.
      */
     public void addVertex(Vertex v) {
-        if (vertices.contains(v)) {
+        if (indices.containsKey(v)) {
             return;
         }
 
-        else {
+        // make room for the new vertex if the matrix is full
+        if (vertices.size() == rows.length) {
+            grow();
+        }
 
-            // defensively copy vertex
-            Vertex cloneVertex = new Vertex(v.getLabel());
-            vertices.add(cloneVertex);
+        // defensively copy vertex
+        Vertex cloneVertex = new Vertex(v.getLabel());
+        indices.put(cloneVertex, vertices.size());
+        vertices.add(cloneVertex);
+        modificationCount++;
 
-            // get index of newly added vertex
-            int newVertexIndex = vertices.indexOf(v);
+        // the new row and column are already all 0
+    }
 
-            // add a new row (List) to the matrix, at index representing newly
-            // added vertex
-            adjacencyMatrix.add(newVertexIndex, new ArrayList<Integer>());
+    /**
+     * Double the number of vertices the matrix has room for. Doubling means
+     * adding n vertices costs O(n) copies of the matrix in total instead of
+     * one copy per vertex.
+     */
+    private void grow() {
+        int newCapacity = 2 * rows.length;
+        int newWords = newCapacity / WORD_SIZE;
 
-            for (int indexA = 0; indexA < vertices.size() - 1; indexA++) {
-                adjacencyMatrix.get(newVertexIndex).add(0);
-            }
+        rows = growMatrix(rows, newCapacity, newWords);
+        columns = growMatrix(columns, newCapacity, newWords);
+    }
 
-            // add 0 to the end of each row for the new vertex
-            for (int index = 0; index < vertices.size(); index++) {
-                adjacencyMatrix.get(index).add(0);
-            }
+    private static long[][] growMatrix(long[][] matrix, int newCapacity, int newWords) {
+        long[][] grown = new long[newCapacity][];
+
+        for (int index = 0; index < matrix.length; index++) {
+            grown[index] = Arrays.copyOf(matrix[index], newWords);
+        }
+        for (int index = matrix.length; index < newCapacity; index++) {
+            grown[index] = new long[newWords];
         }
 
+        return grown;
     }
 
     /**
      * Method to add an edge from v1 to v2 (two vertices) in the adjacency
      * matrix graph.
-     * 
+     *
      * @param v1
      *            - Vertex from which the edge begins (must already be in the
      *            matrix)
@@ -72,18 +104,23 @@ public class AdjacencyMatrixGraph implements Graph {
      *            matrix)
      */
     public void addEdge(Vertex v1, Vertex v2) {
-        int indexOfV1 = vertices.indexOf(v1);
-        int indexOfV2 = vertices.indexOf(v2);
+        int indexOfV1 = indices.get(v1);
+        int indexOfV2 = indices.get(v2);
 
-        adjacencyMatrix.get(indexOfV1).remove(indexOfV2);
-        adjacencyMatrix.get(indexOfV1).add(indexOfV2, 1);
+        if (edgeExists(indexOfV1, indexOfV2)) {
+            return;
+        }
 
+        rows[indexOfV1][indexOfV2 / WORD_SIZE] |= 1L << indexOfV2;
+        columns[indexOfV2][indexOfV1 / WORD_SIZE] |= 1L << indexOfV1;
+        edgeCount++;
+        modificationCount++;
     }
 
     /**
      * Method to check whether or not there's an edge between v1 and v2 (two
      * vertices)
-     * 
+     *
      * @param v1
      *            - Vertex from which the edge begins (must already be in the
      *            adjacency matrix graph)
@@ -93,59 +130,36 @@ public class AdjacencyMatrixGraph implements Graph {
      * @return - true iff the edge exists from v1 to v2, false if not.
      */
     public boolean edgeExists(Vertex v1, Vertex v2) {
-        int indexOfV1 = vertices.indexOf(v1);
-        int indexOfV2 = vertices.indexOf(v2);
-
-        if (adjacencyMatrix.get(indexOfV1).get(indexOfV2) == 1) {
-            return true;
-        }
+        return edgeExists(indices.get(v1), indices.get(v2));
+    }
 
-        return false;
+    public boolean edgeExists(int from, int to) {
+        return (rows[from][to / WORD_SIZE] & (1L << to)) != 0;
     }
 
     /**
      * Returns a list of the downstream neighbours of given Vertex v (ex. if
      * there is an edge from v to w, w would be on the list of returned
      * vertices)
-     * 
+     *
      * @param v
      *            - Vertex we are getting downstream neighbours of (must be in
      *            the adjacency matrix graph)
      * @return List<Vertex> - list containing all the vertices that are
      *         downstream from v (there exists an edge between v and every
      *         element on this returned list)
-     * 
+     *
      *         - If there are no downstream neighbours, returns an empty list.
      */
     public List<Vertex> getDownstreamNeighbors(Vertex v) {
-
-        // new linkedlist to return
-        List<Vertex> downstreamNeighbours = new LinkedList<Vertex>();
-
-        // index of vertex we are currently checking (v)
-        int vertexIndex = vertices.indexOf(v);
-
-        for (int index = 0; index < vertices.size(); index++) {
-            // get edge from v to w
-            int edge = adjacencyMatrix.get(vertexIndex).get(index);
-
-            // get w vertex
-            Vertex w = vertices.get(index);
-
-            // if edge exists, add w to neighbours
-            if (edge == 1) {
-                downstreamNeighbours.add(w);
-            }
-        }
-
-        return Collections.unmodifiableList(downstreamNeighbours);
+        return toVertices(rows[indices.get(v)]);
     }
 
     /**
      * Method that returns the upstream neighbours of a given vertex v (ex. if
      * there is an edge from vertex u to v, u would be on the list of returned
      * vertices)
-     * 
+     *
      * @param v
      *            - Vertex from which we get the upstream neighbours (must be in
      *            the adjacency matrix graph)
@@ -154,35 +168,58 @@ public class AdjacencyMatrixGraph implements Graph {
      *         empty list if no such vertices exist.
      */
     public List<Vertex> getUpstreamNeighbors(Vertex v) {
+        return toVertices(columns[indices.get(v)]);
+    }
 
-        // new linkedlist to return
-        List<Vertex> upstreamNeighbours = new LinkedList<Vertex>();
-
-        // index of vertex we are currently checking (v)
-        int vertexIndex = vertices.indexOf(v);
-
-        int index = 0;
-
-        // iterate through the adjacencymatrix
-        for (ArrayList<Integer> currentRow : adjacencyMatrix) {
+    /**
+     * Make a list of the vertices whose bits are set in a row or column of
+     * the matrix. Whole 64-bit words are skipped when they are 0.
+     */
+    private List<Vertex> toVertices(long[] bits) {
+        List<Vertex> neighbours = new ArrayList<Vertex>();
+
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                int index = word * WORD_SIZE + Long.numberOfTrailingZeros(remaining);
+                neighbours.add(vertices.get(index));
+                // clear the lowest set bit
+                remaining &= remaining - 1;
+            }
+        }
 
-            Vertex u = vertices.get(index);
+        return Collections.unmodifiableList(neighbours);
+    }
 
-            if (currentRow.get(vertexIndex) == 1) { // if edge exists, add w to
-                                                    // neighbours
-                upstreamNeighbours.add(u);
+    /**
+     * Copy the indices of the vertices whose bits are set in a row or column
+     * of the matrix into dest.
+     */
+    private static int toIndices(long[] bits, int[] dest) {
+        int count = 0;
+
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                dest[count++] = word * WORD_SIZE + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
             }
-
-            index++;
         }
 
-        return Collections.unmodifiableList(upstreamNeighbours);
+        return count;
+    }
 
+    private static int countBits(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
     }
 
     /**
      * Method that returns a list of the vertices in the adjacency matrix graph
-     * 
+     *
      * @return List<Vertex> of all the vertices in the adjacency matrix graph.
      *         Returns a list of size 0 if there are no vertices in the graph.
      */
@@ -190,15 +227,63 @@ public class AdjacencyMatrixGraph implements Graph {
         return Collections.unmodifiableList(vertices);
     }
 
+    public int modificationCount() {
+        return modificationCount;
+    }
+
+    public int vertexCount() {
+        return vertices.size();
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    public int indexOf(Vertex v) {
+        Integer index = indices.get(v);
+        return index == null ? -1 : index;
+    }
+
+    public Vertex vertexAt(int id) {
+        return vertices.get(id);
+    }
+
+    public int outDegree(int id) {
+        return countBits(rows[id]);
+    }
+
+    public int inDegree(int id) {
+        return countBits(columns[id]);
+    }
+
+    public int getDownstreamIds(int id, int[] dest) {
+        return toIndices(rows[id], dest);
+    }
+
+    public int getUpstreamIds(int id, int[] dest) {
+        return toIndices(columns[id], dest);
+    }
+
     /**
      * Method that returns a copy of the current adjacency matrix graph.
-     * 
-     * @return List<ArrayList<Integer>> - a copy of the adjacency matrix graph.
-     *         Returns an empty list if there are no vertices in the graph.
+     *
+     * @return List<ArrayList<Integer>> - a copy of the adjacency matrix graph,
+     *         with a 1 for every edge and a 0 everywhere else. Returns an
+     *         empty list if there are no vertices in the graph.
      */
 
     public List<ArrayList<Integer>> getMatrixCopy() {
-        return Collections.unmodifiableList(adjacencyMatrix);
+        List<ArrayList<Integer>> matrixCopy = new ArrayList<ArrayList<Integer>>();
+
+        for (int indexA = 0; indexA < vertices.size(); indexA++) {
+            ArrayList<Integer> row = new ArrayList<Integer>(vertices.size());
+            for (int indexB = 0; indexB < vertices.size(); indexB++) {
+                row.add(edgeExists(indexA, indexB) ? 1 : 0);
+            }
+            matrixCopy.add(row);
+        }
+
+        return Collections.unmodifiableList(matrixCopy);
     }
 
 }
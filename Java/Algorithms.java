@@ -1,5 +1,8 @@
 package ca.ubc.ece.cpen221.mp3.graph;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -9,14 +12,26 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutorService;
 
 import ca.ubc.ece.cpen221.mp3.staff.Graph;
 import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Metrics;
+import metrics.TraversalEvent;
+import metrics.TraversalStats;
 /**
  * @author Cinnie Hsiung, Yuqing Du
  */
 public class Algorithms {
 
+    // vertices and edges visited by every traversal, see Metrics.report
+    private static final TraversalStats BREADTH_FIRST_SEARCH = Metrics.traversal("breadthFirstSearch");
+    private static final TraversalStats DEPTH_FIRST_SEARCH = Metrics.traversal("depthFirstSearch");
+    private static final TraversalStats SHORTEST_DISTANCE = Metrics.traversal("shortestDistance");
+    private static final TraversalStats SHORTEST_DISTANCE_BIDIRECTIONAL = Metrics
+            .traversal("shortestDistanceBidirectional");
+    private static final TraversalStats SHORTEST_DISTANCES = Metrics.traversal("shortestDistances");
+
     /**
      * Breadth first search algorithm to traverse a graph.
      * 
@@ -34,6 +49,10 @@ public class Algorithms {
      */
 
     public static Set<List<Vertex>> breadthFirstSearch(Graph g) {
+        TraversalEvent event = BREADTH_FIRST_SEARCH.start();
+        long verticesVisited = 0;
+        long edgesVisited = 0;
+
         Set<List<Vertex>> searchResult = new HashSet<List<Vertex>>();
         List<Vertex> allVertices = new LinkedList<Vertex>();
         List<Vertex> visitedVertices;
@@ -48,8 +67,12 @@ public class Algorithms {
         for (Vertex startVertex : allVertices) {
             // make a list to keep track of the vertices already visited
             visitedVertices = new LinkedList<Vertex>();
+            // and a set of the vertices visited or in the queue, so checking
+            // a vertex takes O(1) instead of searching both lists
+            Set<Vertex> discovered = new HashSet<Vertex>();
             // add the current start vertex to the toVisit queue
             toVisit.add(startVertex);
+            discovered.add(startVertex);
 
             // while there are still vertices to visit
             while (!toVisit.isEmpty()) {
@@ -60,9 +83,10 @@ public class Algorithms {
 
                 // get all the downstream neighbors for the current vertex
                 for (Vertex downstairsVertex : g.getDownstreamNeighbors(currentVertex)) {
+                    edgesVisited++;
                     // for only add to the toVisit queue if we haven't already
                     // visited them and they aren't already in the toVisit queue
-                    if (!visitedVertices.contains(downstairsVertex) && !toVisit.contains(downstairsVertex)) {
+                    if (discovered.add(downstairsVertex)) {
                         toVisit.add(downstairsVertex);
                     }
                 }
@@ -70,12 +94,77 @@ public class Algorithms {
             }
             // add the list visited vertices to the set of paths
             searchResult.add(Collections.unmodifiableList(visitedVertices));
+            verticesVisited += visitedVertices.size();
         }
 
+        BREADTH_FIRST_SEARCH.stop(event, verticesVisited, edgesVisited);
+
         // return the set of paths
         return Collections.unmodifiableSet(searchResult);
     }
 
+    /**
+     * Breadth first search from every vertex of a graph, like
+     * breadthFirstSearch(g), with the option of using the direction
+     * optimizing search engine. That engine switches to checking the upstream
+     * neighbors of unvisited vertices once the frontier gets large, which
+     * skips most of the wasted edge checks on graphs with high-degree hubs.
+     *
+     * @param Graph
+     *            g - graph to search through. If it is not an IndexedGraph it
+     *            is first copied into a CompressedSparseRowGraph.
+     *
+     * @param directionOptimizing
+     *            - true to use the direction optimizing engine, false to get
+     *            the same result as breadthFirstSearch(g)
+     *
+     * @return Set<List<Vertex>> searchResult a set of the paths (in lists)
+     *         searched using the breadth first search method. With the
+     *         direction optimizing engine every list is in level order, but
+     *         the vertices of one level may come in a different order.
+     */
+    public static Set<List<Vertex>> breadthFirstSearch(Graph g, boolean directionOptimizing) {
+        if (!directionOptimizing) {
+            return breadthFirstSearch(g);
+        }
+
+        IndexedGraph indexedGraph = toIndexedGraph(g);
+        DirectionOptimizingSearch search = new DirectionOptimizingSearch(indexedGraph);
+        Set<List<Vertex>> searchResult = new HashSet<List<Vertex>>();
+
+        for (int startId = 0; startId < indexedGraph.vertexCount(); startId++) {
+            search.search(startId, -1);
+
+            List<Vertex> visitedVertices = new ArrayList<Vertex>(search.visitedCount());
+            for (int k = 0; k < search.visitedCount(); k++) {
+                visitedVertices.add(indexedGraph.vertexAt(search.visitedAt(k)));
+            }
+            searchResult.add(Collections.unmodifiableList(visitedVertices));
+        }
+
+        return Collections.unmodifiableSet(searchResult);
+    }
+
+    /**
+     * Breadth first search from every vertex of a graph, with the traversals
+     * from different start vertices run in parallel on an executor. Gives the
+     * same result as breadthFirstSearch(g).
+     *
+     * @param Graph
+     *            g - graph to search through. Must not change until this
+     *            method returns.
+     *
+     * @param executor
+     *            - the executor to run the traversals on, for example a
+     *            ForkJoinPool or a fixed thread pool. It is not shut down.
+     *
+     * @return Set<List<Vertex>> searchResult a set of the paths (in lists)
+     *         searched using the breadth first search method
+     */
+    public static Set<List<Vertex>> breadthFirstSearch(Graph g, ExecutorService executor) {
+        return ParallelTraversal.breadthFirstSearch(g, executor);
+    }
+
     /**
      * Depth first search algorithm to traverse a graph. Searches through a
      * graph structure by starting at an arbitrary node and explore as far as
@@ -92,6 +181,10 @@ public class Algorithms {
      */
 
     public static Set<List<Vertex>> depthFirstSearch(Graph g) {
+        TraversalEvent event = DEPTH_FIRST_SEARCH.start();
+        long verticesVisited = 0;
+        long edgesVisited = 0;
+
         Set<List<Vertex>> searchResult = new HashSet<List<Vertex>>();
         List<Vertex> visitedVertices;
 
@@ -106,8 +199,11 @@ public class Algorithms {
         for (Vertex startVertex : allVertices) {
             // make a list to keep track of vertices we've already visited
             visitedVertices = new LinkedList<Vertex>();
+            // and a set of the vertices visited or on the stack
+            Set<Vertex> discovered = new HashSet<Vertex>();
             // add the start vertex to the stack of vertices we need to visit
             toVisit.push(startVertex);
+            discovered.add(startVertex);
 
             // while there are still vertices to visit
             while (!toVisit.isEmpty()) {
@@ -118,8 +214,9 @@ public class Algorithms {
 
                 // for every downstream neighbor of the current vertex
                 for (Vertex downstairsVertex : g.getDownstreamNeighbors(currentVertex)) {
+                    edgesVisited++;
                     // if we haven't already visited that vertex/aren't already going to visit it
-                    if (!visitedVertices.contains(downstairsVertex) && !toVisit.contains(downstairsVertex)) {
+                    if (discovered.add(downstairsVertex)) {
                         // add it to the list of vertices we need to visit
                         toVisit.push(downstairsVertex);
                     }
@@ -128,11 +225,75 @@ public class Algorithms {
             }
             // add the visitedVertices list to the set of paths
             searchResult.add(Collections.unmodifiableList(visitedVertices));
+            verticesVisited += visitedVertices.size();
         }
 
+        DEPTH_FIRST_SEARCH.stop(event, verticesVisited, edgesVisited);
+
         return Collections.unmodifiableSet(searchResult);
     }
 
+    /**
+     * Depth first search from every vertex of a graph, with the traversals
+     * from different start vertices run in parallel on an executor. Gives the
+     * same result as depthFirstSearch(g).
+     *
+     * @param Graph
+     *            g - graph to search through. Must not change until this
+     *            method returns.
+     *
+     * @param executor
+     *            - the executor to run the traversals on, for example a
+     *            ForkJoinPool or a fixed thread pool. It is not shut down.
+     *
+     * @return Set<List<Vertex>> searchResult a Set of all the paths (in lists)
+     *         down the graph using the depth first search method.
+     */
+    public static Set<List<Vertex>> depthFirstSearch(Graph g, ExecutorService executor) {
+        return ParallelTraversal.depthFirstSearch(g, executor);
+    }
+
+    /**
+     * Breadth first traversal from one vertex that yields the vertices
+     * lazily, in the order breadthFirstSearch(g) visits them from start.
+     * Unlike breadthFirstSearch it keeps no list of the visited vertices, and
+     * it can stop early; see Traversal for the options. For example
+     * 
+     * breadthFirstTraversal(g, start).maxDepth(2).stream().count()
+     * 
+     * counts the vertices at most two edges downstream of start.
+     * 
+     * @param Graph
+     *            g - graph to traverse. Must not change while the traversal
+     *            is used.
+     * 
+     * @param start
+     *            - the vertex to start from. Must already be in the graph.
+     * 
+     * @return a traversal that can be iterated or streamed
+     */
+    public static Traversal breadthFirstTraversal(Graph g, Vertex start) {
+        return new Traversal(g, start, true);
+    }
+
+    /**
+     * Depth first traversal from one vertex that yields the vertices lazily,
+     * in the order depthFirstSearch(g) visits them from start. See
+     * breadthFirstTraversal and Traversal.
+     * 
+     * @param Graph
+     *            g - graph to traverse. Must not change while the traversal
+     *            is used.
+     * 
+     * @param start
+     *            - the vertex to start from. Must already be in the graph.
+     * 
+     * @return a traversal that can be iterated or streamed
+     */
+    public static Traversal depthFirstTraversal(Graph g, Vertex start) {
+        return new Traversal(g, start, false);
+    }
+
     /**
      * Method to find the shortest distance between two vertices in an
      * unweighted graph. (Number of edges that would have to be traversed to get
@@ -153,36 +314,53 @@ public class Algorithms {
      * 
      */
     public static int shortestDistance(Graph g, Vertex a, Vertex b) throws NoPathException {
-        List<Vertex> visitedVertices = new LinkedList<Vertex>();
-        Queue<Vertex> toVisit = new LinkedList<Vertex>();
+        // on an indexed graph, search the ids with the thread's scratch space
+        if (g instanceof IndexedGraph) {
+            IndexedGraph indexedGraph = (IndexedGraph) g;
+            int idA = indexedGraph.indexOf(a);
+            int idB = indexedGraph.indexOf(b);
+            if (idA < 0 || idB < 0) {
+                throw new NoPathException();
+            }
+
+            int shortestDistance = shortestDistance(indexedGraph, idA, idB);
+            if (shortestDistance < 0) {
+                throw new NoPathException();
+            }
+            return shortestDistance;
+        }
+
+        Queue<Vertex> toVisit = new ArrayDeque<Vertex>();
         int shortestDistance;
+        long verticesVisited = 0;
 
         if (!g.getVertices().contains(b)) {
             throw new NoPathException();
         }
 
-        // make a map of the distances from Vertex a to all other vertices
+        // make a map of the distances from Vertex a to all other vertices.
+        // A vertex is in the map once it has been added to toVisit.
         Map<Vertex, Integer> distances = new HashMap<Vertex, Integer>();
 
         // put that the distance from a to itself is 0
         distances.put(a, 0);
 
         // conduct a breadth first search
+        TraversalEvent event = SHORTEST_DISTANCE.start();
+        long edgesVisited = 0;
         toVisit.add(a);
         outer: while (!toVisit.isEmpty()) {
             Vertex currentVertex = toVisit.remove();
-            visitedVertices.add(currentVertex);
+            verticesVisited++;
 
             for (Vertex downstairsVertex : g.getDownstreamNeighbors(currentVertex)) {
+                edgesVisited++;
                 // if we haven't visited the current vertex before/aren't already going to visit it
-                if (!visitedVertices.contains(downstairsVertex) && !toVisit.contains(downstairsVertex)) {
+                if (!distances.containsKey(downstairsVertex)) {
                     toVisit.add(downstairsVertex);
                     // put that the distance to this downstairs vertex is one more
                     // than the distance from a to the current vertex
-                    // only update the distance if there is not already a distance
-                    if (!distances.containsKey(downstairsVertex)) {
-                        distances.put(downstairsVertex, distances.get(currentVertex) + 1);
-                    }
+                    distances.put(downstairsVertex, distances.get(currentVertex) + 1);
                 }
                 
                 //break as soon as the distance to b is found
@@ -191,6 +369,7 @@ public class Algorithms {
                 }
             }
         }
+        SHORTEST_DISTANCE.stop(event, verticesVisited, edgesVisited);
 
         // if there was no path between a and b throw an exception
         if (!distances.containsKey(b)) {
@@ -202,6 +381,419 @@ public class Algorithms {
         return shortestDistance;
     }
 
+    /**
+     * Method to find the shortest distance between two vertices of an
+     * IndexedGraph by id. The breadth first search runs on the calling
+     * thread's reusable scratch space, so once that has grown to the size of
+     * the graph a call allocates nothing.
+     *
+     * @requires a and b are valid ids of g
+     *
+     * @param g
+     *            - the graph to search through.
+     * @param a
+     *            - id of the start vertex.
+     * @param b
+     *            - id of the end vertex.
+     *
+     * @return the shortest distance to get from vertex a to vertex b, or -1 if
+     *         no path exists between a and b.
+     */
+    public static int shortestDistance(IndexedGraph g, int a, int b) {
+        if (a == b) {
+            return 0;
+        }
+
+        SearchScratch scratch = SearchScratch.get();
+        SearchScratch.EpochMarks visited = scratch.visited(g.vertexCount());
+        IntRingQueue toVisit = scratch.queue;
+        int[] distances = scratch.distances(g.vertexCount());
+
+        TraversalEvent event = SHORTEST_DISTANCE.start();
+        long verticesVisited = 0;
+        long edgesVisited = 0;
+        int shortestDistance = -1;
+
+        visited.clear();
+        toVisit.clear();
+        visited.mark(a);
+        distances[a] = 0;
+        toVisit.add(a);
+
+        // conduct a breadth first search, stopping as soon as b is found
+        outer: while (!toVisit.isEmpty()) {
+            int currentVertex = toVisit.remove();
+            verticesVisited++;
+            int[] neighbors = scratch.neighbors(g.outDegree(currentVertex));
+            int degree = g.getDownstreamIds(currentVertex, neighbors);
+            edgesVisited += degree;
+
+            for (int k = 0; k < degree; k++) {
+                int downstairsVertex = neighbors[k];
+                if (visited.mark(downstairsVertex)) {
+                    distances[downstairsVertex] = distances[currentVertex] + 1;
+                    if (downstairsVertex == b) {
+                        shortestDistance = distances[downstairsVertex];
+                        break outer;
+                    }
+                    toVisit.add(downstairsVertex);
+                }
+            }
+        }
+
+        SHORTEST_DISTANCE.stop(event, verticesVisited, edgesVisited);
+        return shortestDistance;
+    }
+
+    /**
+     * Method to find the shortest distance between two vertices, like
+     * shortestDistance(g, a, b), with the option of using the direction
+     * optimizing search engine.
+     *
+     * @param graph
+     *            g - the graph to search through. The direction optimizing
+     *            engine works on vertex ids, so it is only used if g is an
+     *            IndexedGraph; freeze other graphs into a
+     *            CompressedSparseRowGraph once to use it for many queries.
+     * @param a
+     *            - the start vertex.
+     * @param b
+     *            - the end vertex.
+     * @param directionOptimizing
+     *            - true to use the direction optimizing engine if g is an
+     *            IndexedGraph, false to use shortestDistance(g, a, b)
+     *
+     * @return the shortest distance to get from vertex a to vertex b.
+     *
+     * @throws NoPathException
+     *             if a or b is not in the graph, or no path could be found
+     *             from vertex a to vertex b
+     */
+    public static int shortestDistance(Graph g, Vertex a, Vertex b, boolean directionOptimizing)
+            throws NoPathException {
+        // copying a plain graph for every query would cost more than the
+        // search saves
+        if (!directionOptimizing || !(g instanceof IndexedGraph)) {
+            return shortestDistance(g, a, b);
+        }
+
+        IndexedGraph indexedGraph = (IndexedGraph) g;
+        int idA = indexedGraph.indexOf(a);
+        int idB = indexedGraph.indexOf(b);
+        if (idA < 0 || idB < 0) {
+            throw new NoPathException();
+        }
+
+        int shortestDistance = SearchScratch.get().directionOptimizingSearch(indexedGraph)
+                .search(idA, idB);
+        if (shortestDistance < 0) {
+            throw new NoPathException();
+        }
+
+        return shortestDistance;
+    }
+
+    /**
+     * Method to find the shortest distance between two vertices, like
+     * shortestDistance(g, a, b), with an A* search guided by a landmark
+     * index. See LandmarkIndex.
+     *
+     * @param graph
+     *            g - the graph to search through.
+     * @param a
+     *            - the start vertex.
+     * @param b
+     *            - the end vertex.
+     * @param landmarks
+     *            - a landmark index built for g
+     *
+     * @return the shortest distance to get from vertex a to vertex b.
+     *
+     * @throws NoPathException
+     *             if a or b is not in the graph, or no path could be found
+     *             from vertex a to vertex b
+     */
+    public static int shortestDistance(Graph g, Vertex a, Vertex b, LandmarkIndex landmarks) throws NoPathException {
+        if (landmarks.getGraph() != g) {
+            throw new IllegalArgumentException("the landmark index was built for another graph");
+        }
+
+        int idA = landmarks.getGraph().indexOf(a);
+        int idB = landmarks.getGraph().indexOf(b);
+        if (idA < 0 || idB < 0) {
+            throw new NoPathException();
+        }
+
+        int shortestDistance = landmarks.shortestDistance(idA, idB);
+        if (shortestDistance < 0) {
+            throw new NoPathException();
+        }
+
+        return shortestDistance;
+    }
+
+    /**
+     * Finds the same shortest distance as shortestDistance, but searches from
+     * both ends at once: forward from a along downstream edges and backward
+     * from b along upstream edges, always expanding whichever frontier is
+     * smaller. The search stops once the two sides meet, so on graphs where
+     * most vertices are a few edges apart it visits far fewer vertices than a
+     * search from a alone.
+     *
+     * @param graph
+     *            g - the graph to search through.
+     * @param a
+     *            - the start vertex.
+     * @param b
+     *            - the end vertex.
+     *
+     * @return the shortest distance to get from vertex a to vertex b.
+     *
+     * @throws NoPathException
+     *             if a or b is not in the graph, or no path could be found
+     *             from vertex a to vertex b
+     */
+    public static int shortestDistanceBidirectional(Graph g, Vertex a, Vertex b) throws NoPathException {
+        if (!containsVertex(g, a) || !containsVertex(g, b)) {
+            throw new NoPathException();
+        }
+
+        if (a.equals(b)) {
+            return 0;
+        }
+
+        // distances from a for the forward side, and to b for the backward
+        // side, of every vertex each side has reached
+        Map<Vertex, Integer> distancesFromA = new HashMap<Vertex, Integer>();
+        Map<Vertex, Integer> distancesToB = new HashMap<Vertex, Integer>();
+        distancesFromA.put(a, 0);
+        distancesToB.put(b, 0);
+
+        TraversalEvent event = SHORTEST_DISTANCE_BIDIRECTIONAL.start();
+        // edgesVisited[0] counts the edges both sides checked
+        long[] edgesVisited = new long[1];
+
+        // the vertices each side reached in its last level
+        List<Vertex> frontierA = new ArrayList<Vertex>();
+        List<Vertex> frontierB = new ArrayList<Vertex>();
+        frontierA.add(a);
+        frontierB.add(b);
+
+        while (!frontierA.isEmpty() && !frontierB.isEmpty()) {
+            int shortestDistance;
+
+            // expand one full level of the smaller frontier
+            if (frontierA.size() <= frontierB.size()) {
+                frontierA = expandLevel(g, frontierA, distancesFromA, true, edgesVisited);
+                shortestDistance = meetingDistance(frontierA, distancesFromA, distancesToB);
+            } else {
+                frontierB = expandLevel(g, frontierB, distancesToB, false, edgesVisited);
+                shortestDistance = meetingDistance(frontierB, distancesToB, distancesFromA);
+            }
+
+            // once the sides meet, the shortest meeting point found in a
+            // completed level gives the shortest distance
+            if (shortestDistance != Integer.MAX_VALUE) {
+                SHORTEST_DISTANCE_BIDIRECTIONAL.stop(event, distancesFromA.size() + distancesToB.size(),
+                        edgesVisited[0]);
+                return shortestDistance;
+            }
+        }
+
+        // one side ran out of vertices without meeting the other
+        SHORTEST_DISTANCE_BIDIRECTIONAL.stop(event, distancesFromA.size() + distancesToB.size(), edgesVisited[0]);
+        throw new NoPathException();
+    }
+
+    /**
+     * Method to find the shortest distances from one vertex to several
+     * others with a single breadth first search. The search stops as soon as
+     * every target has been reached.
+     *
+     * @param graph
+     *            g - the graph to search through.
+     * @param a
+     *            - the start vertex.
+     * @param targets
+     *            - the vertices to find the distance to.
+     *
+     * @return a map from every target that can be reached from a to its
+     *         shortest distance from a. Targets that can not be reached, or
+     *         are not in the graph, are left out. Returns an empty map if a is
+     *         not in the graph.
+     */
+    public static Map<Vertex, Integer> shortestDistances(Graph g, Vertex a, Collection<Vertex> targets) {
+        Map<Vertex, Integer> targetDistances = new HashMap<Vertex, Integer>();
+        long edgesVisited = 0;
+
+        // a source that is not in the graph is not a search, so it is not
+        // timed
+        if (g instanceof IndexedGraph) {
+            IndexedGraph indexedGraph = (IndexedGraph) g;
+            int source = indexedGraph.indexOf(a);
+            if (source < 0) {
+                return targetDistances;
+            }
+            TraversalEvent event = SHORTEST_DISTANCES.start();
+
+            SearchScratch scratch = SearchScratch.get();
+            SearchScratch.EpochMarks isTarget = scratch.targets(indexedGraph.vertexCount());
+            SearchScratch.EpochMarks visited = scratch.visited(indexedGraph.vertexCount());
+            IntRingQueue toVisit = scratch.queue;
+            int[] distances = scratch.distances(indexedGraph.vertexCount());
+            long verticesVisited = 0;
+
+            // mark the targets that are in the graph
+            isTarget.clear();
+            int remaining = 0;
+            for (Vertex target : targets) {
+                int id = indexedGraph.indexOf(target);
+                if (id >= 0 && isTarget.mark(id)) {
+                    remaining++;
+                }
+            }
+
+            visited.clear();
+            toVisit.clear();
+            visited.mark(source);
+            distances[source] = 0;
+            toVisit.add(source);
+            if (isTarget.isMarked(source)) {
+                targetDistances.put(indexedGraph.vertexAt(source), 0);
+                remaining--;
+            }
+
+            // conduct a breadth first search until every target is found
+            while (!toVisit.isEmpty() && remaining > 0) {
+                int currentVertex = toVisit.remove();
+                verticesVisited++;
+                int[] neighbors = scratch.neighbors(indexedGraph.outDegree(currentVertex));
+                int degree = indexedGraph.getDownstreamIds(currentVertex, neighbors);
+                edgesVisited += degree;
+
+                for (int k = 0; k < degree; k++) {
+                    int downstairsVertex = neighbors[k];
+                    if (visited.mark(downstairsVertex)) {
+                        distances[downstairsVertex] = distances[currentVertex] + 1;
+                        toVisit.add(downstairsVertex);
+
+                        if (isTarget.isMarked(downstairsVertex)) {
+                            targetDistances.put(indexedGraph.vertexAt(downstairsVertex),
+                                    distances[downstairsVertex]);
+                            remaining--;
+                        }
+                    }
+                }
+            }
+
+            SHORTEST_DISTANCES.stop(event, verticesVisited + toVisit.size(), edgesVisited);
+            return targetDistances;
+        }
+
+        if (!containsVertex(g, a)) {
+            return targetDistances;
+        }
+        TraversalEvent event = SHORTEST_DISTANCES.start();
+
+        Set<Vertex> remaining = new HashSet<Vertex>(targets);
+        Map<Vertex, Integer> distances = new HashMap<Vertex, Integer>();
+        Queue<Vertex> toVisit = new ArrayDeque<Vertex>();
+
+        distances.put(a, 0);
+        toVisit.add(a);
+        if (remaining.remove(a)) {
+            targetDistances.put(a, 0);
+        }
+
+        while (!toVisit.isEmpty() && !remaining.isEmpty()) {
+            Vertex currentVertex = toVisit.remove();
+
+            for (Vertex downstairsVertex : g.getDownstreamNeighbors(currentVertex)) {
+                edgesVisited++;
+                if (!distances.containsKey(downstairsVertex)) {
+                    int distance = distances.get(currentVertex) + 1;
+                    distances.put(downstairsVertex, distance);
+                    toVisit.add(downstairsVertex);
+
+                    if (remaining.remove(downstairsVertex)) {
+                        targetDistances.put(downstairsVertex, distance);
+                    }
+                }
+            }
+        }
+
+        SHORTEST_DISTANCES.stop(event, distances.size(), edgesVisited);
+        return targetDistances;
+    }
+
+    /**
+     * Expand one level of a bidirectional search, adding the number of edges
+     * checked to edgesVisited[0].
+     *
+     * @return the vertices reached for the first time by this side
+     */
+    private static List<Vertex> expandLevel(Graph g, List<Vertex> frontier, Map<Vertex, Integer> distances,
+            boolean forward, long[] edgesVisited) {
+        List<Vertex> nextFrontier = new ArrayList<Vertex>();
+
+        for (Vertex currentVertex : frontier) {
+            int nextDistance = distances.get(currentVertex) + 1;
+            List<Vertex> neighbors = forward ? g.getDownstreamNeighbors(currentVertex)
+                    : g.getUpstreamNeighbors(currentVertex);
+            edgesVisited[0] += neighbors.size();
+
+            for (Vertex neighbor : neighbors) {
+                if (!distances.containsKey(neighbor)) {
+                    distances.put(neighbor, nextDistance);
+                    nextFrontier.add(neighbor);
+                }
+            }
+        }
+
+        return nextFrontier;
+    }
+
+    /**
+     * @return the length of the shortest path through a vertex of frontier that
+     *         the other side has also reached, or Integer.MAX_VALUE if the
+     *         other side has reached none of them
+     */
+    private static int meetingDistance(List<Vertex> frontier, Map<Vertex, Integer> distances,
+            Map<Vertex, Integer> otherDistances) {
+        int shortestDistance = Integer.MAX_VALUE;
+
+        for (Vertex currentVertex : frontier) {
+            Integer otherDistance = otherDistances.get(currentVertex);
+            if (otherDistance != null) {
+                shortestDistance = Math.min(shortestDistance, distances.get(currentVertex) + otherDistance);
+            }
+        }
+
+        return shortestDistance;
+    }
+
+    /**
+     * @return g itself if it is an IndexedGraph, otherwise a
+     *         CompressedSparseRowGraph copy of g
+     */
+    private static IndexedGraph toIndexedGraph(Graph g) {
+        if (g instanceof IndexedGraph) {
+            return (IndexedGraph) g;
+        }
+        return new CompressedSparseRowGraph(g);
+    }
+
+    /**
+     * @return true if v is a vertex in g. Uses the id lookup for an
+     *         IndexedGraph instead of searching the vertex list.
+     */
+    private static boolean containsVertex(Graph g, Vertex v) {
+        if (g instanceof IndexedGraph) {
+            return ((IndexedGraph) g).indexOf(v) >= 0;
+        }
+        return g.getVertices().contains(v);
+    }
+
     /**
      * Method that returns a list of all vertices u such that there is an edge
      * from u to a and an edge from u to b in the given graph G. Returns an
@@ -220,28 +812,30 @@ public class Algorithms {
      * 
      * @return a List of all vertices u, such that there exists an edge from u
      *         to vertex a and u to vertex b or an empty List if no such
-     *         vertices exist.
+     *         vertices exist, or a or b is not in the graph.
      */
 
     public static List<Vertex> commonUpstreamVertices(Graph graph, Vertex a, Vertex b) {
-        List<Vertex> upstreamA = new LinkedList<Vertex>();
-        List<Vertex> upstreamB = new LinkedList<Vertex>();
-        List<Vertex> commonUpStream = new LinkedList<Vertex>();
-
-        // get the upstream neighbors of both a and b
-        upstreamA = graph.getUpstreamNeighbors(a);
-        upstreamB = graph.getUpstreamNeighbors(b);
-
-        // compare the neighbors
-        for (Vertex currentVertexA : upstreamA) {
-            if (upstreamB.contains(currentVertexA)) {
-                // if the neighbors match then add them to the commonUpStream
-                // list
-                commonUpStream.add(currentVertexA);
+        // on an indexed graph, intersect the sorted neighbor ids
+        if (graph instanceof IndexedGraph) {
+            IndexedGraph indexedGraph = (IndexedGraph) graph;
+            int idA = indexedGraph.indexOf(a);
+            int idB = indexedGraph.indexOf(b);
+            if (idA < 0 || idB < 0) {
+                return Collections.emptyList();
             }
+
+            int[] common = SearchScratch.get()
+                    .common(Math.min(indexedGraph.inDegree(idA), indexedGraph.inDegree(idB)));
+            int count = Intersections.commonUpstreamIds(indexedGraph, idA, idB, common);
+            return toVertices(indexedGraph, common, count);
         }
 
-        return Collections.unmodifiableList(commonUpStream);
+        // get the upstream neighbors of both a and b
+        List<Vertex> upstreamA = graph.getUpstreamNeighbors(a);
+        List<Vertex> upstreamB = graph.getUpstreamNeighbors(b);
+
+        return Collections.unmodifiableList(intersect(upstreamA, upstreamB));
 
     }
 
@@ -263,29 +857,87 @@ public class Algorithms {
      * 
      * @return a List of all vertices v such that there exists an edge from a to
      *         v and from b to v. Returns an empty List if no such vertices
-     *         exist.
+     *         exist, or a or b is not in the graph.
      * 
      */
 
     public static List<Vertex> commonDownstreamVertices(Graph graph, Vertex a, Vertex b) {
-        List<Vertex> downstreamA = new LinkedList<Vertex>();
-        List<Vertex> downstreamB = new LinkedList<Vertex>();
-        List<Vertex> commonDownStream = new LinkedList<Vertex>();
+        // on an indexed graph, intersect the sorted neighbor ids
+        if (graph instanceof IndexedGraph) {
+            IndexedGraph indexedGraph = (IndexedGraph) graph;
+            int idA = indexedGraph.indexOf(a);
+            int idB = indexedGraph.indexOf(b);
+            if (idA < 0 || idB < 0) {
+                return Collections.emptyList();
+            }
+
+            int[] common = SearchScratch.get()
+                    .common(Math.min(indexedGraph.outDegree(idA), indexedGraph.outDegree(idB)));
+            int count = Intersections.commonDownstreamIds(indexedGraph, idA, idB, common);
+            return toVertices(indexedGraph, common, count);
+        }
 
         // get downstream neighbors of both a and b
-        downstreamA = graph.getDownstreamNeighbors(a);
-        downstreamB = graph.getDownstreamNeighbors(b);
-
-        // if the downstream neighbors exist in both and b
-        for (Vertex currentVertexA : downstreamA) {
-            if (downstreamB.contains(currentVertexA)) {
-                // add that neighbor to the list of common downstream neighbors
-                commonDownStream.add(currentVertexA);
+        List<Vertex> downstreamA = graph.getDownstreamNeighbors(a);
+        List<Vertex> downstreamB = graph.getDownstreamNeighbors(b);
+
+        return Collections.unmodifiableList(intersect(downstreamA, downstreamB));
+
+    }
+
+    /**
+     * Drop the working space the searches keep for the calling thread between
+     * calls, and with it the last graph the thread searched. Call it from a
+     * long-lived thread that is done searching; the next search on the thread
+     * allocates the space again.
+     */
+    public static void releaseSearchSpace() {
+        SearchScratch.release();
+    }
+
+    /**
+     * @return the vertices of listA that are also in listB, in the order of
+     *         listA. The smaller list is put in a hash set, so this takes
+     *         O(|listA| + |listB|) instead of a contains call per vertex.
+     */
+    private static List<Vertex> intersect(List<Vertex> listA, List<Vertex> listB) {
+        List<Vertex> common = new ArrayList<Vertex>();
+
+        if (listA.size() <= listB.size()) {
+            Set<Vertex> setA = new HashSet<Vertex>(listA);
+            Set<Vertex> inBoth = new HashSet<Vertex>();
+            for (Vertex currentVertexB : listB) {
+                if (setA.contains(currentVertexB)) {
+                    inBoth.add(currentVertexB);
+                }
+            }
+            for (Vertex currentVertexA : listA) {
+                if (inBoth.contains(currentVertexA)) {
+                    common.add(currentVertexA);
+                }
+            }
+        } else {
+            Set<Vertex> setB = new HashSet<Vertex>(listB);
+            for (Vertex currentVertexA : listA) {
+                if (setB.contains(currentVertexA)) {
+                    common.add(currentVertexA);
+                }
             }
         }
 
-        return Collections.unmodifiableList(commonDownStream);
+        return common;
+    }
 
+    /**
+     * @return an unmodifiable list of the vertices with the first count ids of
+     *         ids
+     */
+    private static List<Vertex> toVertices(IndexedGraph g, int[] ids, int count) {
+        List<Vertex> vertices = new ArrayList<Vertex>(count);
+        for (int k = 0; k < count; k++) {
+            vertices.add(g.vertexAt(ids[k]));
+        }
+        return Collections.unmodifiableList(vertices);
     }
 
 }
@@ -0,0 +1,374 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Metrics;
+import metrics.PhaseEvent;
+import metrics.PhaseTimer;
+/**
+ * Whole-graph analytics: scores for every vertex, and the top k vertices by
+ * a score.
+ *
+ * PageRank is computed pull-style over primitive arrays: in every iteration
+ * each vertex sums the contributions of its upstream neighbors, so every
+ * vertex is written by one task only and no locking is needed. The vertices
+ * are split into fixed-size chunks that run as separate tasks on an
+ * executor, so the result does not depend on the number of threads.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class Analytics {
+
+    // the usual PageRank parameters
+    public static final double DEFAULT_DAMPING = 0.85;
+    public static final double DEFAULT_TOLERANCE = 1e-9;
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+    // vertices per PageRank task
+    private static final int CHUNK_SIZE = 1 << 12;
+
+    private static final PhaseTimer PAGE_RANK = Metrics.timer("analytics.pageRank");
+    private static final LongAdder PAGE_RANK_ITERATIONS = Metrics.counter("analytics.pageRankIterations");
+
+    private Analytics() {
+    }
+
+    /**
+     * Compute the PageRank of every vertex with the default parameters. See
+     * pageRank(IndexedGraph, double, double, int, ExecutorService).
+     */
+    public static double[] pageRank(IndexedGraph g, ExecutorService executor) {
+        return pageRank(g, DEFAULT_DAMPING, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS, executor);
+    }
+
+    /**
+     * Compute the PageRank of every vertex: the chance that a walk that
+     * follows a random downstream edge with probability damping, and jumps
+     * to a random vertex otherwise, is at that vertex. Vertices with no
+     * downstream neighbors spread their rank over all vertices.
+     *
+     * @param g
+     *            - the graph to rank. Must not change until this method
+     *            returns.
+     * @param damping
+     *            - the chance of following an edge, between 0 and 1
+     * @param tolerance
+     *            - stop once the ranks change by less than this in total
+     *            (sum of absolute changes) in one iteration
+     * @param maxIterations
+     *            - stop after this many iterations even if the ranks have not
+     *            converged
+     * @param executor
+     *            - the executor to run the iterations on. It is not shut down.
+     * @return the rank of every vertex id. The ranks add up to 1.
+     */
+    public static double[] pageRank(IndexedGraph g, double damping, double tolerance, int maxIterations,
+            ExecutorService executor) {
+        if (damping < 0 || damping > 1) {
+            throw new IllegalArgumentException("damping must be between 0 and 1");
+        }
+
+        PhaseEvent event = PAGE_RANK.start();
+        int vertexCount = g.vertexCount();
+        double[] ranks = new double[vertexCount];
+        if (vertexCount == 0) {
+            PAGE_RANK.stop(event);
+            return ranks;
+        }
+
+        double[] nextRanks = new double[vertexCount];
+        // rank each vertex passes to each of its downstream neighbors
+        double[] contributions = new double[vertexCount];
+        Arrays.fill(ranks, 1.0 / vertexCount);
+
+        int iterations = 0;
+        double change = Double.MAX_VALUE;
+        while (iterations < maxIterations && change >= tolerance) {
+            // rank of the vertices with no downstream neighbors, spread over
+            // all vertices
+            double danglingRank = 0;
+            for (double partial : runChunks(g, executor, new ContributionTask(g, ranks, contributions))) {
+                danglingRank += partial;
+            }
+
+            double base = (1 - damping + damping * danglingRank) / vertexCount;
+            change = 0;
+            for (double partial : runChunks(g, executor,
+                    new RankTask(g, damping, base, ranks, contributions, nextRanks))) {
+                change += partial;
+            }
+
+            double[] swap = ranks;
+            ranks = nextRanks;
+            nextRanks = swap;
+            iterations++;
+        }
+
+        PAGE_RANK.stop(event, (long) iterations * g.edgeCount());
+        PAGE_RANK_ITERATIONS.add(iterations);
+        return ranks;
+    }
+
+    /**
+     * @return the number of upstream neighbors of every vertex id: the
+     *         followers of every user
+     */
+    public static double[] inDegrees(IndexedGraph g) {
+        double[] degrees = new double[g.vertexCount()];
+        for (int id = 0; id < degrees.length; id++) {
+            degrees[id] = g.inDegree(id);
+        }
+        return degrees;
+    }
+
+    /**
+     * @return the number of downstream neighbors of every vertex id: the
+     *         users every user follows
+     */
+    public static double[] outDegrees(IndexedGraph g) {
+        double[] degrees = new double[g.vertexCount()];
+        for (int id = 0; id < degrees.length; id++) {
+            degrees[id] = g.outDegree(id);
+        }
+        return degrees;
+    }
+
+    /**
+     * Find the k highest scores with a heap of the k best seen so far, in
+     * O(V log k).
+     *
+     * @param scores
+     *            - the score of every vertex id
+     * @param k
+     *            - the number of ids to return
+     * @return the ids of the min(k, scores.length) highest scores, highest
+     *         first, lowest id first among equal scores
+     */
+    public static int[] topK(double[] scores, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        k = Math.min(k, scores.length);
+
+        // min-heap of ids by score: the root is the worst of the best k
+        int[] heap = new int[k];
+        int size = 0;
+
+        for (int id = 0; id < scores.length; id++) {
+            if (size < k) {
+                heap[size] = id;
+                siftUp(heap, size, scores);
+                size++;
+            } else if (k > 0 && better(id, heap[0], scores)) {
+                heap[0] = id;
+                siftDown(heap, 0, size, scores);
+            }
+        }
+
+        // take the worst off the heap first, filling the result from the end
+        int[] top = new int[size];
+        for (int position = size - 1; position >= 0; position--) {
+            top[position] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, 0, size, scores);
+        }
+        return top;
+    }
+
+    /**
+     * Find the k most influential vertices by PageRank.
+     *
+     * @param g
+     *            - the graph to rank. If it is not an IndexedGraph it is
+     *            first copied into a CompressedSparseRowGraph, which takes
+     *            O(V + E).
+     * @param k
+     *            - the number of vertices to return
+     * @param executor
+     *            - the executor to run the iterations on. It is not shut down.
+     * @return an unmodifiable list of the k vertices with the highest
+     *         PageRank, highest first
+     */
+    public static List<Vertex> topInfluencers(Graph g, int k, ExecutorService executor) {
+        IndexedGraph indexedGraph = g instanceof IndexedGraph ? (IndexedGraph) g : new CompressedSparseRowGraph(g);
+        int[] top = topK(pageRank(indexedGraph, executor), k);
+
+        List<Vertex> influencers = new ArrayList<Vertex>(top.length);
+        for (int id : top) {
+            influencers.add(indexedGraph.vertexAt(id));
+        }
+        return Collections.unmodifiableList(influencers);
+    }
+
+    /**
+     * @return true if id ranks above other: a higher score, or an equal score
+     *         and a lower id
+     */
+    private static boolean better(int id, int other, double[] scores) {
+        return scores[id] > scores[other] || (scores[id] == scores[other] && id < other);
+    }
+
+    private static void siftUp(int[] heap, int index, double[] scores) {
+        int id = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(heap[parent], id, scores)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = id;
+    }
+
+    private static void siftDown(int[] heap, int index, int size, double[] scores) {
+        if (index >= size) {
+            return;
+        }
+        int id = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && better(heap[child], heap[child + 1], scores)) {
+                child++;
+            }
+            if (!better(id, heap[child], scores)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = id;
+    }
+
+    /**
+     * Run task on every chunk of vertex ids and wait for all of them.
+     *
+     * @return the result of every chunk, in chunk order
+     */
+    private static double[] runChunks(IndexedGraph g, ExecutorService executor, ChunkTask task) {
+        int vertexCount = g.vertexCount();
+        List<Future<Double>> results = new ArrayList<Future<Double>>();
+        for (int from = 0; from < vertexCount; from += CHUNK_SIZE) {
+            results.add(executor.submit(task.forChunk(from, Math.min(from + CHUNK_SIZE, vertexCount))));
+        }
+
+        double[] partials = new double[results.size()];
+        try {
+            for (int k = 0; k < partials.length; k++) {
+                partials[k] = results.get(k).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return partials;
+    }
+
+    /**
+     * One step of a PageRank iteration, run separately on every chunk of
+     * vertex ids.
+     */
+    private abstract static class ChunkTask {
+        /**
+         * @return the work for the vertex ids in [from, to)
+         */
+        Callable<Double> forChunk(final int from, final int to) {
+            return new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return run(from, to);
+                }
+            };
+        }
+
+        abstract double run(int from, int to);
+    }
+
+    /**
+     * Sets the contribution of every vertex to each downstream neighbor, and
+     * adds up the rank of the vertices with none.
+     */
+    private static class ContributionTask extends ChunkTask {
+        private final IndexedGraph g;
+        private final double[] ranks;
+        private final double[] contributions;
+
+        ContributionTask(IndexedGraph g, double[] ranks, double[] contributions) {
+            this.g = g;
+            this.ranks = ranks;
+            this.contributions = contributions;
+        }
+
+        @Override
+        double run(int from, int to) {
+            double danglingRank = 0;
+            for (int id = from; id < to; id++) {
+                int degree = g.outDegree(id);
+                if (degree == 0) {
+                    contributions[id] = 0;
+                    danglingRank += ranks[id];
+                } else {
+                    contributions[id] = ranks[id] / degree;
+                }
+            }
+            return danglingRank;
+        }
+    }
+
+    /**
+     * Pulls the contributions of the upstream neighbors of every vertex into
+     * its next rank, and adds up how much the ranks changed.
+     */
+    private static class RankTask extends ChunkTask {
+        private final IndexedGraph g;
+        private final double damping;
+        private final double base;
+        private final double[] ranks;
+        private final double[] contributions;
+        private final double[] nextRanks;
+
+        RankTask(IndexedGraph g, double damping, double base, double[] ranks, double[] contributions,
+                double[] nextRanks) {
+            this.g = g;
+            this.damping = damping;
+            this.base = base;
+            this.ranks = ranks;
+            this.contributions = contributions;
+            this.nextRanks = nextRanks;
+        }
+
+        @Override
+        double run(int from, int to) {
+            int[] neighbors = new int[IndexedGraphs.maxInDegree(g, from, to)];
+            double change = 0;
+
+            for (int id = from; id < to; id++) {
+                int degree = g.getUpstreamIds(id, neighbors);
+                double sum = 0;
+                for (int k = 0; k < degree; k++) {
+                    sum += contributions[neighbors[k]];
+                }
+
+                double rank = base + damping * sum;
+                change += Math.abs(rank - ranks[id]);
+                nextRanks[id] = rank;
+            }
+            return change;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import metrics.Metrics;
+import metrics.PhaseEvent;
+import metrics.PhaseTimer;
+/**
+ * Connected components of a graph, as an array with the component id of
+ * every vertex id. Component ids are compact: they run from 0 to
+ * count(components) - 1.
+ *
+ * - stronglyConnected: vertices are in the same component if each can reach
+ * the other. Found with Tarjan's algorithm on an explicit stack, so graphs
+ * with very long paths can not overflow the call stack.
+ *
+ * - weaklyConnected: vertices are in the same component if they are
+ * connected when edge directions are ignored. Found with a lock-free
+ * union-find whose edges are split over tasks on an executor.
+ *
+ * There is no path between vertices in different weak components, and a path
+ * between strong components only leads from a higher component id to a lower
+ * one, so either array can rule out a path in O(1).
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class Components {
+
+    // vertices per union-find task
+    private static final int CHUNK_SIZE = 1 << 12;
+
+    private static final PhaseTimer STRONGLY_CONNECTED = Metrics.timer("components.stronglyConnected");
+    private static final PhaseTimer WEAKLY_CONNECTED = Metrics.timer("components.weaklyConnected");
+
+    private Components() {
+    }
+
+    /**
+     * Find the strongly connected components of g.
+     *
+     * @param g
+     *            - the graph. Must not change until this method returns.
+     * @return the component of every vertex id, numbered in reverse
+     *         topological order: a path only ever leads to a component with
+     *         the same or a lower id
+     */
+    public static int[] stronglyConnected(IndexedGraph g) {
+        PhaseEvent event = STRONGLY_CONNECTED.start();
+        int[] offsets = new int[g.vertexCount() + 1];
+        int[] targets = downstreamRows(g, offsets);
+
+        int[] components = new int[g.vertexCount()];
+        stronglyConnected(offsets, targets, components);
+        STRONGLY_CONNECTED.stop(event, g.vertexCount());
+        return components;
+    }
+
+    /**
+     * Find the weakly connected components of g. The edges of every chunk of
+     * vertices are joined as a separate task on executor.
+     *
+     * @param g
+     *            - the graph. Must not change until this method returns.
+     * @param executor
+     *            - the executor to run the tasks on. It is not shut down.
+     * @return the component of every vertex id, numbered in order of the
+     *         lowest vertex id in each component, so the result does not
+     *         depend on the number of threads
+     */
+    public static int[] weaklyConnected(final IndexedGraph g, ExecutorService executor) {
+        PhaseEvent event = WEAKLY_CONNECTED.start();
+        int vertexCount = g.vertexCount();
+
+        // parent of every vertex in the union-find forest; a root is its own
+        // parent. A root is only ever linked below a lower id, so the root of
+        // every tree is its lowest vertex id.
+        final AtomicIntegerArray parents = new AtomicIntegerArray(vertexCount);
+        for (int id = 0; id < vertexCount; id++) {
+            parents.set(id, id);
+        }
+
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        for (int from = 0; from < vertexCount; from += CHUNK_SIZE) {
+            final int chunkFrom = from;
+            final int chunkTo = Math.min(from + CHUNK_SIZE, vertexCount);
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    int[] neighbors = new int[IndexedGraphs.maxOutDegree(g, chunkFrom, chunkTo)];
+                    for (int id = chunkFrom; id < chunkTo; id++) {
+                        int degree = g.getDownstreamIds(id, neighbors);
+                        for (int k = 0; k < degree; k++) {
+                            union(parents, id, neighbors[k]);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        // number the components in order of their roots
+        int[] components = new int[vertexCount];
+        int componentCount = 0;
+        for (int id = 0; id < vertexCount; id++) {
+            int root = find(parents, id);
+            // the root is never higher than id, so it is numbered already
+            components[id] = root == id ? componentCount++ : components[root];
+        }
+
+        WEAKLY_CONNECTED.stop(event, vertexCount);
+        return components;
+    }
+
+    /**
+     * @return the number of components in components
+     */
+    public static int count(int[] components) {
+        int count = 0;
+        for (int component : components) {
+            count = Math.max(count, component + 1);
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of vertices in every component of components, by
+     *         component id
+     */
+    public static int[] sizes(int[] components) {
+        int[] sizes = new int[count(components)];
+        for (int component : components) {
+            sizes[component]++;
+        }
+        return sizes;
+    }
+
+    /**
+     * @return the root of the tree of id, halving the path to it on the way
+     */
+    private static int find(AtomicIntegerArray parents, int id) {
+        int parent = parents.get(id);
+        while (parent != id) {
+            int grandparent = parents.get(parent);
+            // point id at its grandparent; if another thread changed it
+            // first, its new parent is at least as close to the root
+            parents.compareAndSet(id, parent, grandparent);
+            id = parent;
+            parent = parents.get(id);
+        }
+        return id;
+    }
+
+    /**
+     * Join the trees of a and b.
+     */
+    private static void union(AtomicIntegerArray parents, int a, int b) {
+        while (true) {
+            int rootA = find(parents, a);
+            int rootB = find(parents, b);
+            if (rootA == rootB) {
+                return;
+            }
+
+            // link the higher root below the lower one. This fails if the
+            // higher root was linked somewhere else meanwhile, in which case
+            // try again from its new root.
+            int high = Math.max(rootA, rootB);
+            int low = Math.min(rootA, rootB);
+            if (parents.compareAndSet(high, high, low)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copy the downstream neighbor ids of every vertex into one array.
+     *
+     * @param offsets
+     *            - filled in so that the neighbors of id are at
+     *            [offsets[id], offsets[id + 1]) of the result
+     * @return the neighbor ids of all vertices, in id order
+     */
+    static int[] downstreamRows(IndexedGraph graph, int[] offsets) {
+        int vertexCount = graph.vertexCount();
+        for (int id = 0; id < vertexCount; id++) {
+            offsets[id + 1] = offsets[id] + graph.outDegree(id);
+        }
+
+        int[] targets = new int[offsets[vertexCount]];
+        int[] neighbors = new int[vertexCount];
+        for (int id = 0; id < vertexCount; id++) {
+            int degree = graph.getDownstreamIds(id, neighbors);
+            System.arraycopy(neighbors, 0, targets, offsets[id], degree);
+        }
+        return targets;
+    }
+
+    /**
+     * Find the strongly connected components with Tarjan's algorithm, using
+     * an explicit stack instead of recursion so deep graphs can not overflow
+     * the call stack.
+     *
+     * @param components
+     *            - filled in with the component of every vertex, numbered in
+     *            the order the components are completed, which is reverse
+     *            topological order
+     * @return the number of components
+     */
+    static int stronglyConnected(int[] offsets, int[] targets, int[] components) {
+        int vertexCount = components.length;
+        // order in which each vertex was first reached, or -1, and the lowest
+        // such order reachable from it through the search tree and one more
+        // edge
+        int[] order = new int[vertexCount];
+        int[] lowLink = new int[vertexCount];
+        Arrays.fill(order, -1);
+
+        // vertices whose component is not complete yet
+        int[] componentStack = new int[vertexCount];
+        boolean[] onComponentStack = new boolean[vertexCount];
+        int componentStackSize = 0;
+
+        // the search path, and the next edge to follow from each vertex on it
+        int[] callStack = new int[vertexCount];
+        int[] nextEdge = new int[vertexCount];
+        int callStackSize = 0;
+
+        int nextOrder = 0;
+        int componentCount = 0;
+
+        for (int root = 0; root < vertexCount; root++) {
+            if (order[root] >= 0) {
+                continue;
+            }
+
+            order[root] = lowLink[root] = nextOrder++;
+            componentStack[componentStackSize++] = root;
+            onComponentStack[root] = true;
+            callStack[callStackSize++] = root;
+            nextEdge[root] = offsets[root];
+
+            while (callStackSize > 0) {
+                int v = callStack[callStackSize - 1];
+
+                if (nextEdge[v] < offsets[v + 1]) {
+                    int w = targets[nextEdge[v]++];
+                    if (order[w] < 0) {
+                        // descend into w
+                        order[w] = lowLink[w] = nextOrder++;
+                        componentStack[componentStackSize++] = w;
+                        onComponentStack[w] = true;
+                        callStack[callStackSize++] = w;
+                        nextEdge[w] = offsets[w];
+                    } else if (onComponentStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], order[w]);
+                    }
+                    continue;
+                }
+
+                // every edge of v is done
+                callStackSize--;
+                if (lowLink[v] == order[v]) {
+                    // v is the first vertex reached of its component
+                    int w;
+                    do {
+                        w = componentStack[--componentStackSize];
+                        onComponentStack[w] = false;
+                        components[w] = componentCount;
+                    } while (w != v);
+                    componentCount++;
+                }
+                if (callStackSize > 0) {
+                    int parent = callStack[callStackSize - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+            }
+        }
+
+        return componentCount;
+    }
+}
@@ -0,0 +1,326 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * An immutable graph stored in compressed sparse row (CSR) form. Every vertex
+ * gets a dense int id, and the edges are kept in two pairs of int arrays: the
+ * downstream neighbors of vertex i are downstreamTargets[downstreamOffsets[i]]
+ * to downstreamTargets[downstreamOffsets[i + 1] - 1], and likewise for the
+ * upstream neighbors. The neighbors of each vertex are sorted by id, so
+ * neighbor lists come back in id order rather than in the order the edges
+ * were added. Vertices that are not in the graph have no neighbors and no
+ * edges.
+ *
+ * The graph can not be changed once it is built, so addVertex and addEdge
+ * throw UnsupportedOperationException.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class CompressedSparseRowGraph implements IndexedGraph {
+
+    // vertex for each id
+    private final Vertex[] vertices;
+    // id for each vertex
+    private final Map<Vertex, Integer> ids;
+
+    // forward (downstream) adjacency
+    private final int[] downstreamOffsets;
+    private final int[] downstreamTargets;
+
+    // reverse (upstream) adjacency
+    private final int[] upstreamOffsets;
+    private final int[] upstreamTargets;
+
+    /**
+     * Freeze a copy of an existing graph.
+     *
+     * @param g
+     *            - the graph to copy. Vertex ids are given in the order of
+     *            g.getVertices().
+     */
+    public CompressedSparseRowGraph(Graph g) {
+        List<Vertex> graphVertices = g.getVertices();
+        int vertexCount = graphVertices.size();
+
+        vertices = new Vertex[vertexCount];
+        ids = new HashMap<Vertex, Integer>(2 * vertexCount);
+
+        int id = 0;
+        for (Vertex v : graphVertices) {
+            // defensively clone the vertex
+            vertices[id] = new Vertex(v.getLabel());
+            ids.put(vertices[id], id);
+            id++;
+        }
+
+        // count the downstream neighbors of every vertex
+        downstreamOffsets = new int[vertexCount + 1];
+        for (id = 0; id < vertexCount; id++) {
+            downstreamOffsets[id + 1] = downstreamOffsets[id] + g.getDownstreamNeighbors(vertices[id]).size();
+        }
+
+        // then fill in their ids
+        downstreamTargets = new int[downstreamOffsets[vertexCount]];
+        for (id = 0; id < vertexCount; id++) {
+            int next = downstreamOffsets[id];
+            for (Vertex w : g.getDownstreamNeighbors(vertices[id])) {
+                downstreamTargets[next++] = ids.get(w);
+            }
+            Arrays.sort(downstreamTargets, downstreamOffsets[id], next);
+        }
+
+        upstreamOffsets = new int[vertexCount + 1];
+        upstreamTargets = new int[downstreamTargets.length];
+        buildUpstream();
+    }
+
+    /**
+     * Build a graph directly from a list of edges between vertex ids. Repeated
+     * edges are only added once.
+     *
+     * @requires every id in sources and targets is between 0 and
+     *           vertices.size() - 1, and sources and targets have at least
+     *           edgeCount elements
+     *
+     * @param vertices
+     *            - the vertices of the graph; the vertex at index i gets id i.
+     *            Must not contain duplicates.
+     * @param sources
+     *            - sources[k] is the id of the vertex edge k starts from
+     * @param targets
+     *            - targets[k] is the id of the vertex edge k ends at
+     * @param edgeCount
+     *            - the number of edges in sources and targets
+     */
+    public CompressedSparseRowGraph(List<Vertex> vertices, int[] sources, int[] targets, int edgeCount) {
+        int vertexCount = vertices.size();
+
+        this.vertices = new Vertex[vertexCount];
+        ids = new HashMap<Vertex, Integer>(2 * vertexCount);
+
+        int id = 0;
+        for (Vertex v : vertices) {
+            this.vertices[id] = new Vertex(v.getLabel());
+            ids.put(this.vertices[id], id);
+            id++;
+        }
+
+        // count the edges starting at every vertex, then turn the counts into
+        // offsets
+        int[] offsets = new int[vertexCount + 1];
+        for (int k = 0; k < edgeCount; k++) {
+            offsets[sources[k] + 1]++;
+        }
+        for (id = 0; id < vertexCount; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+
+        // place every edge in the row of its source
+        int[] rows = new int[edgeCount];
+        int[] next = Arrays.copyOf(offsets, vertexCount);
+        for (int k = 0; k < edgeCount; k++) {
+            rows[next[sources[k]]++] = targets[k];
+        }
+
+        // sort every row and squeeze out repeated edges
+        downstreamOffsets = new int[vertexCount + 1];
+        int size = 0;
+        for (id = 0; id < vertexCount; id++) {
+            Arrays.sort(rows, offsets[id], offsets[id + 1]);
+            for (int k = offsets[id]; k < offsets[id + 1]; k++) {
+                if (k == offsets[id] || rows[k] != rows[k - 1]) {
+                    rows[size++] = rows[k];
+                }
+            }
+            downstreamOffsets[id + 1] = size;
+        }
+        downstreamTargets = size == edgeCount ? rows : Arrays.copyOf(rows, size);
+
+        upstreamOffsets = new int[vertexCount + 1];
+        upstreamTargets = new int[size];
+        buildUpstream();
+    }
+
+    /**
+     * Fill in the upstream arrays by transposing the downstream arrays. Since
+     * the sources are visited in increasing order, every upstream row comes out
+     * sorted.
+     */
+    private void buildUpstream() {
+        int vertexCount = vertices.length;
+
+        for (int k = 0; k < downstreamTargets.length; k++) {
+            upstreamOffsets[downstreamTargets[k] + 1]++;
+        }
+        for (int id = 0; id < vertexCount; id++) {
+            upstreamOffsets[id + 1] += upstreamOffsets[id];
+        }
+
+        int[] next = Arrays.copyOf(upstreamOffsets, vertexCount);
+        for (int id = 0; id < vertexCount; id++) {
+            for (int k = downstreamOffsets[id]; k < downstreamOffsets[id + 1]; k++) {
+                upstreamTargets[next[downstreamTargets[k]]++] = id;
+            }
+        }
+    }
+
+    /**
+     * The graph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public void addVertex(Vertex v) {
+        throw new UnsupportedOperationException("CompressedSparseRowGraph is immutable");
+    }
+
+    /**
+     * The graph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public void addEdge(Vertex v1, Vertex v2) {
+        throw new UnsupportedOperationException("CompressedSparseRowGraph is immutable");
+    }
+
+    /**
+     * Check if there is an edge from v1 to v2.
+     *
+     * @return true if an edge from v1 connects to v2
+     * @return false otherwise, or if v1 or v2 is not in the graph
+     */
+    public boolean edgeExists(Vertex v1, Vertex v2) {
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        return from >= 0 && to >= 0 && edgeExists(from, to);
+    }
+
+    public boolean edgeExists(int from, int to) {
+        // rows are sorted, so binary search the row of from
+        return Arrays.binarySearch(downstreamTargets, downstreamOffsets[from], downstreamOffsets[from + 1], to) >= 0;
+    }
+
+    /**
+     * Get a list containing all downstream vertices adjacent to v. The list is
+     * a read-only view over the adjacency arrays, nothing is copied.
+     *
+     * @return a list containing each vertex w such that there is an edge from v
+     *         to w
+     * @return a list of size 0 if v has no downstream neighbors, or is not in
+     *         the graph.
+     */
+    public List<Vertex> getDownstreamNeighbors(Vertex v) {
+        int id = indexOf(v);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new NeighborList(downstreamTargets, downstreamOffsets[id], downstreamOffsets[id + 1]);
+    }
+
+    /**
+     * Get a list containing all upstream vertices adjacent to v. The list is a
+     * read-only view over the adjacency arrays, nothing is copied.
+     *
+     * @return a list containing each vertex u such that there is an edge from u
+     *         to v
+     * @return a list of size 0 if v has no upstream neighbors, or is not in
+     *         the graph.
+     */
+    public List<Vertex> getUpstreamNeighbors(Vertex v) {
+        int id = indexOf(v);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new NeighborList(upstreamTargets, upstreamOffsets[id], upstreamOffsets[id + 1]);
+    }
+
+    /**
+     * Get all vertices in the graph, in id order.
+     *
+     * @return a list containing all vertices in the graph
+     * @return a list of size 0 if the graph has no vertices.
+     */
+    public List<Vertex> getVertices() {
+        return Collections.unmodifiableList(Arrays.asList(vertices));
+    }
+
+    public int modificationCount() {
+        // the graph never changes
+        return 0;
+    }
+
+    public int vertexCount() {
+        return vertices.length;
+    }
+
+    public int edgeCount() {
+        return downstreamTargets.length;
+    }
+
+    public int indexOf(Vertex v) {
+        Integer id = ids.get(v);
+        return id == null ? -1 : id;
+    }
+
+    public Vertex vertexAt(int id) {
+        return vertices[id];
+    }
+
+    public int outDegree(int id) {
+        return downstreamOffsets[id + 1] - downstreamOffsets[id];
+    }
+
+    public int inDegree(int id) {
+        return upstreamOffsets[id + 1] - upstreamOffsets[id];
+    }
+
+    public int getDownstreamIds(int id, int[] dest) {
+        int degree = outDegree(id);
+        System.arraycopy(downstreamTargets, downstreamOffsets[id], dest, 0, degree);
+        return degree;
+    }
+
+    public int getUpstreamIds(int id, int[] dest) {
+        int degree = inDegree(id);
+        System.arraycopy(upstreamTargets, upstreamOffsets[id], dest, 0, degree);
+        return degree;
+    }
+
+    /**
+     * Read-only list of the vertices whose ids are in targets[from] to
+     * targets[to - 1].
+     */
+    private class NeighborList extends AbstractList<Vertex> {
+        private final int[] targets;
+        private final int from;
+        private final int to;
+
+        NeighborList(int[] targets, int from, int to) {
+            this.targets = targets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Vertex get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return vertices[targets[from + index]];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * An adjacency list graph that many threads can add to and read from at once.
+ *
+ * Vertices are kept in a ConcurrentHashMap. The neighbor lists of every
+ * vertex are append-only arrays, and each vertex has its own lock that only
+ * writers take, so threads adding edges at different vertices never wait for
+ * each other and readers never wait at all. Every vertex also keeps a
+ * concurrent set of its downstream neighbors, so edgeExists takes O(1).
+ *
+ * getDownstreamNeighbors and getUpstreamNeighbors return stable views: a view
+ * holds the neighbors the vertex had when it was made, in the order they
+ * were added, and does not change when more edges are added later.
+ *
+ * addEdge adds the edge to the downstream list of v1 and then to the upstream
+ * list of v2, so a reader running at the same time may briefly see it in the
+ * first but not yet in the second.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class ConcurrentAdjacencyListGraph implements Graph {
+
+    private final ConcurrentMap<Vertex, Adjacency> adjacencyList = new ConcurrentHashMap<Vertex, Adjacency>();
+
+    /**
+     * Adds a vertex to the graph if the vertex was not already in the graph.
+     * If the vertex was already in the graph, does nothing.
+     *
+     * @param v
+     *            the vertex to add to the graph
+     */
+    public void addVertex(Vertex v) {
+        if (adjacencyList.containsKey(v)) {
+            return;
+        }
+        // defensively clone the vertex
+        adjacencyList.putIfAbsent(new Vertex(v.getLabel()), new Adjacency());
+    }
+
+    /**
+     * Adds an edge from v1 to v2 if the edge does not already exist. If the
+     * edge exists, does nothing.
+     *
+     * @requires v1 and v2 are vertices in the graph
+     *
+     * @param v1
+     *            the vertex the edge starts from
+     * @param v2
+     *            the vertex the edge ends
+     */
+    public void addEdge(Vertex v1, Vertex v2) {
+        Adjacency from = adjacencyList.get(v1);
+        Adjacency to = adjacencyList.get(v2);
+
+        // the locks are taken one after the other, never both at once, so
+        // two threads can not deadlock
+        Vertex v2Clone = new Vertex(v2.getLabel());
+        synchronized (from) {
+            if (from.downstreamSet.contains(v2Clone)) {
+                return;
+            }
+            from.downstream.append(v2Clone);
+            from.downstreamSet.add(v2Clone);
+        }
+        synchronized (to) {
+            to.upstream.append(new Vertex(v1.getLabel()));
+        }
+    }
+
+    /**
+     * Check if there is an edge from v1 to v2.
+     *
+     * @requires v1 and v2 be vertices in the graph
+     *
+     * @return true if an edge from v1 connects to v2
+     * @return false otherwise
+     */
+    public boolean edgeExists(Vertex v1, Vertex v2) {
+        return adjacencyList.get(v1).downstreamSet.contains(v2);
+    }
+
+    /**
+     * Get a list containing all downstream vertices adjacent to v, in the
+     * order the edges were added. The list is a read-only view that does not
+     * change when edges are added later; nothing is copied.
+     *
+     * @requires v is a vertex in the graph
+     *
+     * @return a list containing each vertex w such that there is an edge from v
+     *         to w
+     * @return a list of size 0 if v has no downstream neighbors.
+     */
+    public List<Vertex> getDownstreamNeighbors(Vertex v) {
+        return adjacencyList.get(v).downstream.view();
+    }
+
+    /**
+     * Get a list containing all upstream vertices adjacent to v, in the order
+     * the edges were added. The list is a read-only view that does not change
+     * when edges are added later; nothing is copied.
+     *
+     * @requires v is a vertex in the graph
+     *
+     * @return a list containing each vertex u such that there is an edge from u
+     *         to v
+     * @return a list of size 0 if v has no upstream neighbors.
+     */
+    public List<Vertex> getUpstreamNeighbors(Vertex v) {
+        return adjacencyList.get(v).upstream.view();
+    }
+
+    /**
+     * Get all vertices in the graph. Vertices added while the list is being
+     * made may or may not be in it.
+     *
+     * @return a list containing all vertices in the graph
+     * @return a list of size 0 if the graph has no vertices.
+     */
+    public List<Vertex> getVertices() {
+        return Collections.unmodifiableList(new ArrayList<Vertex>(adjacencyList.keySet()));
+    }
+
+    /**
+     * The neighbors of one vertex. Its monitor is the lock writers take.
+     */
+    private static class Adjacency {
+        // downstream neighbors, for edgeExists and to drop repeated edges.
+        // An edge is added here after it is appended to downstream.
+        private final Set<Vertex> downstreamSet = ConcurrentHashMap.newKeySet();
+
+        private final AppendOnlyList downstream = new AppendOnlyList();
+        private final AppendOnlyList upstream = new AppendOnlyList();
+    }
+
+    /**
+     * A list that one writer at a time can append to while any number of
+     * readers take views of it without locking.
+     *
+     * The writer stores an element before it increases size, and a full
+     * array is replaced by a bigger copy, never changed in place below size.
+     * A reader that reads size and then items therefore always finds the
+     * first size elements in items, and they never change afterwards.
+     */
+    private static class AppendOnlyList {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private volatile Vertex[] items = new Vertex[INITIAL_CAPACITY];
+        private volatile int size;
+
+        /**
+         * @requires the caller holds the lock of the owning Adjacency
+         */
+        void append(Vertex v) {
+            Vertex[] current = items;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, 2 * current.length);
+                items = current;
+            }
+            current[size] = v;
+            size = size + 1;
+        }
+
+        /**
+         * @return a read-only view of the elements appended so far
+         */
+        List<Vertex> view() {
+            // read size first; see the class comment
+            final int viewSize = size;
+            final Vertex[] viewItems = items;
+
+            return new AbstractList<Vertex>() {
+                @Override
+                public Vertex get(int index) {
+                    if (index < 0 || index >= viewSize) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + viewSize);
+                    }
+                    return viewItems[index];
+                }
+
+                @Override
+                public int size() {
+                    return viewSize;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.Arrays;
+
+import metrics.Metrics;
+import metrics.TraversalEvent;
+import metrics.TraversalStats;
+/**
+ * Breadth first search that switches between two ways of expanding a level:
+ *
+ * - top-down: every frontier vertex checks its downstream neighbors, which is
+ * cheap while the frontier is small.
+ *
+ * - bottom-up: every unvisited vertex checks its upstream neighbors for one
+ * that is in the frontier, and stops at the first one it finds. Once the
+ * frontier covers a large part of the graph, most top-down edge checks land on
+ * vertices that were already visited, and bottom-up skips those checks.
+ *
+ * Frontiers and the visited set are bitsets over vertex ids. The arrays are
+ * kept between searches, so one instance can run many searches on the same
+ * graph. An instance must not be used by two threads at once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class DirectionOptimizingSearch {
+
+    // switch to bottom-up when the edges out of the frontier are more than
+    // 1/ALPHA of the edges into unvisited vertices
+    private static final int ALPHA = 14;
+    // switch back to top-down when the frontier is smaller than 1/BETA of the
+    // vertices
+    private static final int BETA = 24;
+
+    private static final int WORD_SIZE = 64;
+
+    private static final TraversalStats TRAVERSAL = Metrics.traversal("directionOptimizingSearch");
+
+    private final IndexedGraph graph;
+    // graph.modificationCount() when this engine was made
+    private final int modificationCount;
+
+    private final long[] visited;
+    private long[] frontier;
+    private long[] nextFrontier;
+
+    // distance from the source of every visited vertex
+    private final int[] distances;
+    // visited vertices in the order they were reached
+    private final int[] order;
+    private int visitedCount;
+    // edges the last search checked
+    private long edgesVisited;
+
+    // neighbor ids of the vertex being expanded, grown to the largest
+    // degree seen
+    private int[] neighbors = new int[0];
+
+    /**
+     * Make a search engine for one graph.
+     *
+     * @param graph
+     *            - the graph to search. Must not change while this engine is
+     *            used.
+     */
+    public DirectionOptimizingSearch(IndexedGraph graph) {
+        this.graph = graph;
+
+        int vertexCount = graph.vertexCount();
+        int words = (vertexCount + WORD_SIZE - 1) / WORD_SIZE;
+
+        visited = new long[words];
+        frontier = new long[words];
+        nextFrontier = new long[words];
+        distances = new int[vertexCount];
+        order = new int[vertexCount];
+        modificationCount = graph.modificationCount();
+    }
+
+    /**
+     * @return true if this engine searches g, and g has not changed since
+     *         this engine was made
+     */
+    boolean isFor(IndexedGraph g) {
+        return g == graph && g.modificationCount() == modificationCount;
+    }
+
+    /**
+     * Search from source, level by level, until target is reached or there is
+     * nothing left to visit.
+     *
+     * @requires 0 <= source < vertexCount() and target is -1 or a valid id
+     *
+     * @param source
+     *            - id of the vertex to search from
+     * @param target
+     *            - id of the vertex to stop at, or -1 to visit everything
+     *            reachable from source
+     * @return the distance from source to target, or -1 if target is -1 or can
+     *         not be reached
+     */
+    public int search(int source, int target) {
+        TraversalEvent event = TRAVERSAL.start();
+        reset();
+        int distance = run(source, target);
+        TRAVERSAL.stop(event, visitedCount, edgesVisited);
+        return distance;
+    }
+
+    private int run(int source, int target) {
+        int vertexCount = graph.vertexCount();
+
+        markVisited(source, 0);
+        setBit(frontier, source);
+        if (source == target) {
+            return 0;
+        }
+
+        int frontierSize = 1;
+        long frontierEdges = graph.outDegree(source);
+        long unvisitedEdges = graph.edgeCount() - graph.inDegree(source);
+        boolean bottomUp = false;
+        int distance = 0;
+
+        while (frontierSize > 0) {
+            distance++;
+
+            // pick the direction for this level
+            if (!bottomUp && frontierEdges > unvisitedEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < vertexCount / BETA) {
+                bottomUp = false;
+            }
+
+            int levelStart = visitedCount;
+            if (bottomUp) {
+                bottomUpStep(distance);
+            } else {
+                topDownStep(distance);
+            }
+
+            // count the new frontier
+            frontierSize = visitedCount - levelStart;
+            frontierEdges = 0;
+            for (int k = levelStart; k < visitedCount; k++) {
+                frontierEdges += graph.outDegree(order[k]);
+                unvisitedEdges -= graph.inDegree(order[k]);
+            }
+
+            if (target >= 0 && getBit(visited, target)) {
+                return distance;
+            }
+
+            long[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            Arrays.fill(nextFrontier, 0);
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the number of vertices the last search visited
+     */
+    public int visitedCount() {
+        return visitedCount;
+    }
+
+    /**
+     * @return the number of edges the last search checked
+     */
+    public long edgesVisited() {
+        return edgesVisited;
+    }
+
+    /**
+     * @requires 0 <= k < visitedCount()
+     *
+     * @return the id of the k-th vertex the last search visited. Vertices come
+     *         out level by level; within a level they are not necessarily in
+     *         the order a queue based search would visit them.
+     */
+    public int visitedAt(int k) {
+        return order[k];
+    }
+
+    /**
+     * @return the distance from the source of the last search to the vertex
+     *         with the given id, or -1 if that search did not reach it
+     */
+    public int distanceTo(int id) {
+        return getBit(visited, id) ? distances[id] : -1;
+    }
+
+    /**
+     * @return the neighbor buffer, with room for degree ids
+     */
+    private int[] neighborsFor(int degree) {
+        if (neighbors.length < degree) {
+            neighbors = new int[Math.max(degree, 2 * neighbors.length)];
+        }
+        return neighbors;
+    }
+
+    private void topDownStep(int distance) {
+        for (int word = 0; word < frontier.length; word++) {
+            long remaining = frontier[word];
+            while (remaining != 0) {
+                int u = word * WORD_SIZE + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+
+                int[] neighbors = neighborsFor(graph.outDegree(u));
+                int degree = graph.getDownstreamIds(u, neighbors);
+                edgesVisited += degree;
+                for (int k = 0; k < degree; k++) {
+                    int w = neighbors[k];
+                    if (!getBit(visited, w)) {
+                        markVisited(w, distance);
+                        setBit(nextFrontier, w);
+                    }
+                }
+            }
+        }
+    }
+
+    private void bottomUpStep(int distance) {
+        int vertexCount = graph.vertexCount();
+
+        for (int word = 0; word < visited.length; word++) {
+            // every unvisited vertex in this word
+            long remaining = ~visited[word];
+            while (remaining != 0) {
+                int v = word * WORD_SIZE + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                if (v >= vertexCount) {
+                    break;
+                }
+
+                int[] neighbors = neighborsFor(graph.inDegree(v));
+                int degree = graph.getUpstreamIds(v, neighbors);
+                int checked = 0;
+                while (checked < degree) {
+                    if (getBit(frontier, neighbors[checked++])) {
+                        markVisited(v, distance);
+                        setBit(nextFrontier, v);
+                        break;
+                    }
+                }
+                edgesVisited += checked;
+            }
+        }
+    }
+
+    private void markVisited(int id, int distance) {
+        setBit(visited, id);
+        distances[id] = distance;
+        order[visitedCount++] = id;
+    }
+
+    /**
+     * Clear what the last search left behind.
+     */
+    private void reset() {
+        Arrays.fill(visited, 0);
+        Arrays.fill(frontier, 0);
+        Arrays.fill(nextFrontier, 0);
+        visitedCount = 0;
+        edgesVisited = 0;
+    }
+
+    private static boolean getBit(long[] bits, int index) {
+        return (bits[index / WORD_SIZE] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bits, int index) {
+        bits[index / WORD_SIZE] |= 1L << index;
+    }
+}
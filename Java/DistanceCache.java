@@ -0,0 +1,251 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Metrics;
+/**
+ * A cache of single-source distance arrays for one graph. The first distance
+ * query from a source runs a full breadth first search and keeps the distance
+ * from that source to every vertex; later queries from the same source are
+ * answered with one array lookup.
+ *
+ * The arrays are kept within a byte budget. When a new array does not fit,
+ * the least recently used arrays are evicted until it does. If the graph is so
+ * large that one array does not fit in the whole budget, nothing is cached and
+ * every query runs a search that stops at its target.
+ *
+ * Every array is thrown away as soon as the graph changes, since adding a
+ * vertex or an edge can change any distance. An IndexedGraph shows a change by
+ * its modificationCount; an AdjacencyListGraph is searched through a
+ * CompressedSparseRowGraph copy, which is made again after it changes.
+ *
+ * The hits, misses and evictions of all caches are counted in Metrics.
+ *
+ * All methods may be called from several threads at once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class DistanceCache {
+
+    // rough cost of one cache entry besides its distance array
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private static final LongAdder HITS = Metrics.counter("distanceCache.hits");
+    private static final LongAdder MISSES = Metrics.counter("distanceCache.misses");
+    private static final LongAdder EVICTIONS = Metrics.counter("distanceCache.evictions");
+
+    // the graph the queries are about, and the graph searched: the same
+    // graph if it is an IndexedGraph, a copy of it otherwise
+    private final Graph original;
+    private IndexedGraph graph;
+    private final long byteBudget;
+
+    // distance arrays by source id, least recently used first
+    private final LinkedHashMap<Integer, int[]> distances = new LinkedHashMap<Integer, int[]>(16, 0.75f, true);
+    // modificationCount(original) when graph and the cached arrays were made
+    private int modificationCount;
+    private long bytesUsed;
+
+    /**
+     * @param g
+     *            - the graph to answer distance queries on: an IndexedGraph or
+     *            an AdjacencyListGraph
+     * @param byteBudget
+     *            - the most memory, in bytes, the cached distance arrays may
+     *            use
+     * @throws IllegalArgumentException
+     *             if g is of another kind, whose changes can not be seen
+     */
+    public DistanceCache(Graph g, long byteBudget) {
+        this.original = g;
+        this.byteBudget = byteBudget;
+        this.modificationCount = modificationCount(g);
+        this.graph = g instanceof IndexedGraph ? (IndexedGraph) g : new CompressedSparseRowGraph(g);
+    }
+
+    /**
+     * Find the shortest distance from a to b.
+     *
+     * @param a
+     *            - the start vertex.
+     * @param b
+     *            - the end vertex.
+     * @return the shortest distance to get from vertex a to vertex b.
+     * @throws NoPathException
+     *             if a or b is not in the graph, or no path could be found
+     *             from vertex a to vertex b
+     */
+    public int shortestDistance(Vertex a, Vertex b) throws NoPathException {
+        IndexedGraph g = currentGraph();
+        int from = g.indexOf(a);
+        int to = g.indexOf(b);
+        if (from < 0 || to < 0) {
+            throw new NoPathException();
+        }
+
+        int distance;
+        if (bytes(g.vertexCount()) > byteBudget) {
+            // the array could never be cached, so only search as far as b
+            MISSES.increment();
+            distance = Algorithms.shortestDistance(g, from, to);
+        } else {
+            distance = distancesFrom(g, from)[to];
+        }
+        if (distance < 0) {
+            throw new NoPathException();
+        }
+        return distance;
+    }
+
+    /**
+     * Get the distances from one source to every vertex, from the cache if
+     * they are there.
+     *
+     * @requires 0 <= source < currentGraph().vertexCount()
+     *
+     * @return an array with the distance from source to every vertex id of
+     *         currentGraph(), or -1 for vertices that can not be reached. Must
+     *         not be modified.
+     */
+    public int[] distancesFrom(int source) {
+        return distancesFrom(currentGraph(), source);
+    }
+
+    /**
+     * Get the distances from one source to every vertex of g, from the cache
+     * if g is still the current graph and they are there.
+     */
+    private int[] distancesFrom(IndexedGraph g, int source) {
+        int currentModificationCount;
+        synchronized (this) {
+            invalidateIfModified();
+            int[] cached = g == graph ? distances.get(source) : null;
+            if (cached != null) {
+                HITS.increment();
+                return cached;
+            }
+            MISSES.increment();
+            currentModificationCount = modificationCount;
+        }
+
+        // run the search without holding the lock
+        int[] computed = search(g, source);
+
+        synchronized (this) {
+            // only keep the array if the graph did not change during the
+            // search
+            invalidateIfModified();
+            if (g == graph && modificationCount == currentModificationCount && !distances.containsKey(source)) {
+                put(source, computed);
+            }
+        }
+        return computed;
+    }
+
+    /**
+     * @return the graph that vertex ids refer to: the graph given to the
+     *         constructor if it is an IndexedGraph, otherwise a copy of its
+     *         latest version
+     */
+    public synchronized IndexedGraph currentGraph() {
+        invalidateIfModified();
+        return graph;
+    }
+
+    /**
+     * @return true if the distances from one source fit in the byte budget,
+     *         so that distancesFrom keeps them for later queries
+     */
+    public boolean canCache() {
+        return bytes(currentGraph().vertexCount()) <= byteBudget;
+    }
+
+    /**
+     * @return the number of bytes the cached arrays use
+     */
+    public synchronized long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    /**
+     * Throw away every cached array.
+     */
+    public synchronized void clear() {
+        distances.clear();
+        bytesUsed = 0;
+    }
+
+    private void invalidateIfModified() {
+        int currentModificationCount = modificationCount(original);
+        if (currentModificationCount != modificationCount) {
+            clear();
+            modificationCount = currentModificationCount;
+            if (!(original instanceof IndexedGraph)) {
+                graph = new CompressedSparseRowGraph(original);
+            }
+        }
+    }
+
+    /**
+     * @return a count that goes up whenever g changes
+     * @throws IllegalArgumentException
+     *             if g is neither an IndexedGraph nor an AdjacencyListGraph
+     */
+    private static int modificationCount(Graph g) {
+        if (g instanceof IndexedGraph) {
+            return ((IndexedGraph) g).modificationCount();
+        }
+        if (g instanceof AdjacencyListGraph) {
+            return ((AdjacencyListGraph) g).modificationCount();
+        }
+        throw new IllegalArgumentException("Can not tell when a " + g.getClass().getSimpleName() + " changes");
+    }
+
+    private void put(int source, int[] sourceDistances) {
+        long size = bytes(sourceDistances.length);
+        if (size > byteBudget) {
+            return;
+        }
+
+        // evict the least recently used arrays until the new one fits
+        Iterator<Map.Entry<Integer, int[]>> leastRecentlyUsed = distances.entrySet().iterator();
+        while (bytesUsed + size > byteBudget && leastRecentlyUsed.hasNext()) {
+            bytesUsed -= bytes(leastRecentlyUsed.next().getValue().length);
+            leastRecentlyUsed.remove();
+            EVICTIONS.increment();
+        }
+
+        distances.put(source, sourceDistances);
+        bytesUsed += size;
+    }
+
+    /**
+     * @return the bytes a cached array of the distances to vertexCount
+     *         vertices uses
+     */
+    private static long bytes(int vertexCount) {
+        return ENTRY_OVERHEAD + 4L * vertexCount;
+    }
+
+    /**
+     * @return the distance from source to every vertex of g
+     */
+    private static int[] search(IndexedGraph g, int source) {
+        DirectionOptimizingSearch search = SearchScratch.get().directionOptimizingSearch(g);
+        search.search(source, -1);
+
+        int[] sourceDistances = new int[g.vertexCount()];
+        Arrays.fill(sourceDistances, -1);
+        for (int k = 0; k < search.visitedCount(); k++) {
+            int id = search.visitedAt(k);
+            sourceDistances[id] = search.distanceTo(id);
+        }
+        return sourceDistances;
+    }
+}
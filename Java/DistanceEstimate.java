@@ -0,0 +1,59 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+/**
+ * Bounds on the shortest distance from one vertex to another, as estimated by
+ * a LandmarkIndex. Immutable.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class DistanceEstimate {
+
+    // the bounds when there is certainly no path
+    static final DistanceEstimate UNREACHABLE = new DistanceEstimate(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final int lowerBound;
+    private final int upperBound;
+
+    DistanceEstimate(int lowerBound, int upperBound) {
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+    }
+
+    /**
+     * @return a distance the shortest distance is at least, or
+     *         Integer.MAX_VALUE if there is certainly no path
+     */
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * @return the length of a path that is known to exist, which the shortest
+     *         distance is at most, or Integer.MAX_VALUE if no path is known
+     */
+    public int getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * @return true if there is certainly no path
+     */
+    public boolean isUnreachable() {
+        return lowerBound == Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the bounds are equal, so the shortest distance is known
+     */
+    public boolean isExact() {
+        return lowerBound == upperBound && lowerBound != Integer.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        if (isUnreachable()) {
+            return "unreachable";
+        }
+        return "[" + lowerBound + ", " + (upperBound == Integer.MAX_VALUE ? "?" : String.valueOf(upperBound)) + "]";
+    }
+}
@@ -0,0 +1,361 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+/**
+ * Saves graphs to, and loads graphs from, a compact binary snapshot file.
+ *
+ * A snapshot is laid out as follows, with every int stored big-endian:
+ *
+ * - header: magic number, format version, vertex count V, edge count E, the
+ * size T of the label hash table, and then the Source of the graph as longs
+ *
+ * - label offsets: V + 1 ints, the label of vertex i is in label bytes
+ * [labelOffsets[i], labelOffsets[i + 1])
+ *
+ * - downstream offsets (V + 1 ints) and targets (E ints), in the same compressed
+ * sparse row form as CompressedSparseRowGraph
+ *
+ * - upstream offsets (V + 1 ints) and targets (E ints)
+ *
+ * - label hash table: T ints, open addressing with linear probing, each slot
+ * is a vertex id + 1 or 0 if empty
+ *
+ * - label bytes: the UTF-8 labels of all vertices, one after the other
+ *
+ * Loading a snapshot maps the file into memory and answers queries straight
+ * from the mapped bytes, so nothing is deserialized up front. A snapshot is
+ * written to a temporary file and then moved over the old one, so a save that
+ * is cut short never leaves a truncated snapshot behind.
+ *
+ * Graphs too large for this layout (2 GB) are saved in the long-offset
+ * layout of OffHeapGraph instead, which load also reads.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class GraphSnapshot {
+
+    static final int MAGIC = 0x47534E50;
+    static final int VERSION = 5;
+    static final int HEADER_INTS = 5 + 2 * Source.LONGS;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Save a graph to a snapshot file, replacing the file if it exists. The
+     * old file is only replaced once the new one is complete.
+     *
+     * @param g
+     *            - the graph to save. If it is not an IndexedGraph it is first
+     *            copied into a CompressedSparseRowGraph.
+     * @param path
+     *            - the file to write
+     * @param source
+     *            - what the graph was loaded from, see readSource
+     * @throws IOException
+     *             if the file can not be written
+     */
+    public static void save(Graph g, Path path, Source source) throws IOException {
+        IndexedGraph graph = g instanceof IndexedGraph ? (IndexedGraph) g : new CompressedSparseRowGraph(g);
+        int vertexCount = graph.vertexCount();
+        int edgeCount = graph.edgeCount();
+
+        // encode the labels and build the hash table
+        byte[][] labels = new byte[vertexCount][];
+        long labelBytes = 0;
+        for (int id = 0; id < vertexCount; id++) {
+            labels[id] = graph.vertexAt(id).getLabel().getBytes(StandardCharsets.UTF_8);
+            labelBytes += labels[id].length;
+        }
+
+        int tableSize = tableSize(vertexCount);
+        int[] table = new int[tableSize];
+        for (int id = 0; id < vertexCount; id++) {
+            int slot = hash(labels[id], 0, labels[id].length) & (tableSize - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = id + 1;
+        }
+
+        long ints = HEADER_INTS + 3L * (vertexCount + 1) + 2L * edgeCount + tableSize;
+        Path temp = temporaryFile(path);
+        try {
+            if (4 * ints + labelBytes > Integer.MAX_VALUE) {
+                OffHeapGraph.writeFile(graph, temp, source);
+            } else {
+                write(graph, labels, table, temp, source);
+            }
+            moveIntoPlace(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Write a graph to a file in the layout above, and force it to disk.
+     */
+    private static void write(IndexedGraph graph, byte[][] labels, int[] table, Path path, Source source)
+            throws IOException {
+        int vertexCount = graph.vertexCount();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(vertexCount);
+            out.writeInt(graph.edgeCount());
+            out.writeInt(table.length);
+            out.writeLong(source.getLength());
+            out.writeLong(source.getLastModified());
+            out.writeLong(source.getBytesLoaded());
+            out.writeLong(source.getFingerprint());
+
+            // label offsets
+            int offset = 0;
+            out.writeInt(offset);
+            for (int id = 0; id < vertexCount; id++) {
+                offset += labels[id].length;
+                out.writeInt(offset);
+            }
+
+            int[] neighbors = new int[vertexCount];
+            writeAdjacency(out, graph, neighbors, true);
+            writeAdjacency(out, graph, neighbors, false);
+
+            for (int slot : table) {
+                out.writeInt(slot);
+            }
+
+            for (byte[] label : labels) {
+                out.write(label);
+            }
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * @return a new empty file next to path to write a new version of it to
+     */
+    static Path temporaryFile(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        return Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    }
+
+    /**
+     * Replace path with the complete file temp, atomically where the file
+     * system allows it.
+     */
+    static void moveIntoPlace(Path temp, Path path) throws IOException {
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Write the offsets and then the targets of one direction of the graph.
+     */
+    private static void writeAdjacency(DataOutputStream out, IndexedGraph graph, int[] neighbors, boolean downstream)
+            throws IOException {
+        int vertexCount = graph.vertexCount();
+
+        int offset = 0;
+        out.writeInt(offset);
+        for (int id = 0; id < vertexCount; id++) {
+            offset += downstream ? graph.outDegree(id) : graph.inDegree(id);
+            out.writeInt(offset);
+        }
+
+        for (int id = 0; id < vertexCount; id++) {
+            int degree = downstream ? graph.getDownstreamIds(id, neighbors) : graph.getUpstreamIds(id, neighbors);
+            for (int k = 0; k < degree; k++) {
+                out.writeInt(neighbors[k]);
+            }
+        }
+    }
+
+    /**
+     * Load a snapshot file. The file is memory-mapped and must not be changed
+     * while the returned graph is in use.
+     *
+     * @param path
+     *            - the snapshot file to load
+     * @return a read-only graph backed by the mapped file
+     * @throws IOException
+     *             if the file can not be read or is not a snapshot of a
+     *             supported version
+     */
+    public static IndexedGraph load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() >= 8 && readVersion(channel) == OffHeapGraph.LARGE_VERSION) {
+                return OffHeapGraph.load(path);
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large: " + path);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SnapshotGraph(buffer);
+        }
+    }
+
+    /**
+     * Read what a snapshot file was made from, without loading the graph.
+     *
+     * @param path
+     *            - the snapshot file
+     * @return the Source the snapshot was saved with
+     * @throws IOException
+     *             if the file can not be read or is not a snapshot of a
+     *             supported version
+     */
+    public static Source readSource(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < 8) {
+                throw new IOException("Not a graph snapshot");
+            }
+            int version = readVersion(channel);
+            int start;
+            if (version == VERSION) {
+                start = 4 * (HEADER_INTS - 2 * Source.LONGS);
+            } else if (version == OffHeapGraph.LARGE_VERSION) {
+                start = OffHeapGraph.SOURCE_START;
+            } else {
+                throw new IOException("Unsupported graph snapshot version " + version);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(8 * Source.LONGS);
+            while (header.hasRemaining()) {
+                if (channel.read(header, start + header.position()) < 0) {
+                    throw new IOException("Graph snapshot is truncated or corrupt");
+                }
+            }
+            return new Source(header.getLong(0), header.getLong(8), header.getLong(16), header.getLong(24));
+        }
+    }
+
+    /**
+     * @return the format version in the header of a snapshot file
+     */
+    private static int readVersion(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not a graph snapshot");
+            }
+        }
+        return header.getInt(4);
+    }
+
+    /**
+     * @return the size of the label hash table for a graph with vertexCount
+     *         vertices: a power of two at least twice vertexCount
+     */
+    static int tableSize(int vertexCount) {
+        int size = 1;
+        while (size < 2 * vertexCount) {
+            size *= 2;
+        }
+        return size;
+    }
+
+    /**
+     * @return true if size is a label hash table size that a snapshot of
+     *         vertexCount vertices can have: a positive power of two with at
+     *         least one slot more than there are vertices, so every probe
+     *         ends at an empty slot
+     */
+    static boolean isTableSize(int size, int vertexCount) {
+        return size > 0 && (size & (size - 1)) == 0 && size > vertexCount;
+    }
+
+    /**
+     * What the graph of a snapshot was loaded from: the length and
+     * modification time of the edge file when it was loaded, how many of its
+     * bytes the graph holds, and a fingerprint of those bytes.
+     */
+    public static class Source {
+        // number of longs a Source takes up in a snapshot header
+        static final int LONGS = 4;
+        // the Source of a graph that was not loaded from a file
+        static final Source NONE = new Source(-1, -1, 0, 0);
+
+        private final long length;
+        private final long lastModified;
+        private final long bytesLoaded;
+        private final long fingerprint;
+
+        /**
+         * @param length
+         *            - the length of the edge file when it was loaded
+         * @param lastModified
+         *            - the modification time of the edge file when it was
+         *            loaded, as File.lastModified
+         * @param bytesLoaded
+         *            - the number of bytes of the file the graph holds
+         * @param fingerprint
+         *            - a fingerprint of the contents of those bytes, which
+         *            changes whenever they do
+         */
+        public Source(long length, long lastModified, long bytesLoaded, long fingerprint) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.bytesLoaded = bytesLoaded;
+            this.fingerprint = fingerprint;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getBytesLoaded() {
+            return bytesLoaded;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return true if file still has the length and modification time
+         *         it had when the graph was loaded from it
+         */
+        public boolean matches(File file) {
+            return file.isFile() && file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+
+    /**
+     * FNV-1a hash of the bytes in [from, to) of label.
+     */
+    static int hash(byte[] label, int from, int to) {
+        int hash = 0x811C9DC5;
+        for (int k = from; k < to; k++) {
+            hash ^= label[k] & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,160 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Metrics;
+import metrics.PhaseEvent;
+import metrics.PhaseTimer;
+/**
+ * A graph that keeps growing while it is being queried.
+ *
+ * addVertex and addEdge collect a batch of changes; publish applies the batch
+ * and makes it visible all at once. Readers call snapshot to get the latest
+ * published version, an IndexedGraph that never changes, so a batch of
+ * queries answered on one snapshot sees one consistent graph no matter how
+ * many batches are published meanwhile. Vertex ids stay the same in every
+ * version.
+ *
+ * A version is the graph it started from plus a small overlay of what was
+ * added since. Once the overlay holds more than 1/COMPACTION_RATIO of the
+ * base's edges, publish folds it into a new CompressedSparseRowGraph base,
+ * which keeps neighbor lookups fast and the cost of each publish bounded.
+ *
+ * All methods may be called from several threads at once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class IncrementalGraph implements Graph {
+
+    // compact once the overlay has more than 1/COMPACTION_RATIO of the base's
+    // edges, but never for fewer than MIN_COMPACTION_EDGES
+    private static final int COMPACTION_RATIO = 8;
+    private static final int MIN_COMPACTION_EDGES = 1 << 16;
+
+    private static final PhaseTimer PUBLISH = Metrics.timer("ingest.publish");
+    private static final PhaseTimer COMPACT = Metrics.timer("ingest.compact");
+
+    // the latest published version
+    private volatile OverlayGraph current;
+
+    // the batch that the next publish applies
+    private final List<Vertex> pendingVertices = new ArrayList<Vertex>();
+    private final Set<Vertex> pendingVertexSet = new HashSet<Vertex>();
+    private final List<Vertex> pendingSources = new ArrayList<Vertex>();
+    private final List<Vertex> pendingTargets = new ArrayList<Vertex>();
+
+    /**
+     * @param base
+     *            - the graph to start from. Must not change afterwards.
+     */
+    public IncrementalGraph(IndexedGraph base) {
+        current = new OverlayGraph(base, 0);
+    }
+
+    /**
+     * Add a vertex to the next batch. It is not visible until the batch is
+     * published.
+     */
+    public synchronized void addVertex(Vertex v) {
+        if (current.indexOf(v) < 0 && pendingVertexSet.add(v)) {
+            pendingVertices.add(v);
+        }
+    }
+
+    /**
+     * Add an edge to the next batch. It is not visible until the batch is
+     * published.
+     *
+     * @requires v1 and v2 are in the graph or were added to the same batch
+     */
+    public synchronized void addEdge(Vertex v1, Vertex v2) {
+        pendingSources.add(v1);
+        pendingTargets.add(v2);
+    }
+
+    /**
+     * Apply every vertex and edge added since the last publish, and make them
+     * visible to snapshot.
+     *
+     * @return the new latest version
+     */
+    public synchronized IndexedGraph publish() {
+        if (pendingVertices.isEmpty() && pendingSources.isEmpty()) {
+            return current;
+        }
+
+        PhaseEvent event = PUBLISH.start();
+        OverlayGraph next = current.apply(pendingVertices, pendingSources, pendingTargets);
+        PUBLISH.stop(event, pendingSources.size());
+
+        if (next.addedEdgeCount() > Math.max(MIN_COMPACTION_EDGES, next.getBase().edgeCount() / COMPACTION_RATIO)) {
+            event = COMPACT.start();
+            next = next.compact();
+            COMPACT.stop(event, next.edgeCount());
+        }
+
+        pendingVertices.clear();
+        pendingVertexSet.clear();
+        pendingSources.clear();
+        pendingTargets.clear();
+
+        current = next;
+        return next;
+    }
+
+    /**
+     * @return the latest published version. It never changes, and its
+     *         modificationCount goes up by one with every publish that
+     *         changed the graph.
+     */
+    public IndexedGraph snapshot() {
+        return current;
+    }
+
+    /**
+     * @return the number of edges added since the last publish
+     */
+    public synchronized int pendingEdgeCount() {
+        return pendingSources.size();
+    }
+
+    /**
+     * Check if there is an edge from v1 to v2 in the latest published
+     * version.
+     *
+     * @requires v1 and v2 be vertices in the latest published version
+     */
+    public boolean edgeExists(Vertex v1, Vertex v2) {
+        return current.edgeExists(v1, v2);
+    }
+
+    /**
+     * @requires v is a vertex in the latest published version
+     *
+     * @return the downstream neighbors of v in the latest published version
+     */
+    public List<Vertex> getDownstreamNeighbors(Vertex v) {
+        return current.getDownstreamNeighbors(v);
+    }
+
+    /**
+     * @requires v is a vertex in the latest published version
+     *
+     * @return the upstream neighbors of v in the latest published version
+     */
+    public List<Vertex> getUpstreamNeighbors(Vertex v) {
+        return current.getUpstreamNeighbors(v);
+    }
+
+    /**
+     * @return the vertices of the latest published version, in id order
+     */
+    public List<Vertex> getVertices() {
+        return current.getVertices();
+    }
+}
@@ -0,0 +1,107 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * A graph whose vertices are numbered with dense int ids from 0 to
+ * vertexCount() - 1. Algorithms can use these ids to work on primitive arrays
+ * instead of Vertex objects.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public interface IndexedGraph extends Graph {
+
+    /**
+     * @return the number of vertices in the graph
+     */
+    public int vertexCount();
+
+    /**
+     * @return the number of edges in the graph
+     */
+    public int edgeCount();
+
+    /**
+     * Get the id of a vertex.
+     *
+     * @param v
+     *            - the vertex to look up
+     * @return the id of v, or -1 if v is not in the graph
+     */
+    public int indexOf(Vertex v);
+
+    /**
+     * Get the vertex with a given id.
+     *
+     * @requires 0 <= id < vertexCount()
+     *
+     * @param id
+     *            - the id of the vertex
+     * @return the vertex with that id
+     */
+    public Vertex vertexAt(int id);
+
+    /**
+     * @requires 0 <= id < vertexCount()
+     *
+     * @return the number of edges starting at the vertex with the given id
+     */
+    public int outDegree(int id);
+
+    /**
+     * @requires 0 <= id < vertexCount()
+     *
+     * @return the number of edges ending at the vertex with the given id
+     */
+    public int inDegree(int id);
+
+    /**
+     * Copy the ids of the downstream neighbors of a vertex into dest, in
+     * ascending order.
+     *
+     * @requires 0 <= id < vertexCount() and dest.length >= outDegree(id)
+     *
+     * @param id
+     *            - the id of the vertex
+     * @param dest
+     *            - the array to copy the neighbor ids into, starting at index
+     *            0
+     * @return the number of ids copied (the out-degree of the vertex)
+     */
+    public int getDownstreamIds(int id, int[] dest);
+
+    /**
+     * Copy the ids of the upstream neighbors of a vertex into dest, in
+     * ascending order.
+     *
+     * @requires 0 <= id < vertexCount() and dest.length >= inDegree(id)
+     *
+     * @param id
+     *            - the id of the vertex
+     * @param dest
+     *            - the array to copy the neighbor ids into, starting at index
+     *            0
+     * @return the number of ids copied (the in-degree of the vertex)
+     */
+    public int getUpstreamIds(int id, int[] dest);
+
+    /**
+     * Check if there is an edge between the vertices with the given ids.
+     *
+     * @requires 0 <= from, to < vertexCount()
+     *
+     * @return true if there is an edge from the vertex with id from to the
+     *         vertex with id to, false otherwise
+     */
+    public boolean edgeExists(int from, int to);
+
+    /**
+     * Get a number that changes every time a vertex or edge is added to the
+     * graph, so that anything computed from the graph can tell when it is out
+     * of date.
+     *
+     * @return the number of changes made to the graph so far; always 0 for a
+     *         graph that can not be changed
+     */
+    public int modificationCount();
+}
@@ -0,0 +1,45 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+/**
+ * The largest degree over a range of vertex ids, to size the neighbor buffer
+ * of a task that runs on an executor.
+ *
+ * Such a task allocates its own buffer instead of using SearchScratch: the
+ * search space of a pool thread would stay behind on the thread, with the
+ * graph it was sized for, after the task is done.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class IndexedGraphs {
+
+    private IndexedGraphs() {
+    }
+
+    /**
+     * @requires 0 <= from <= to <= g.vertexCount()
+     *
+     * @return the largest out degree of the vertex ids in [from, to), or 0 if
+     *         there are none
+     */
+    static int maxOutDegree(IndexedGraph g, int from, int to) {
+        int maxDegree = 0;
+        for (int id = from; id < to; id++) {
+            maxDegree = Math.max(maxDegree, g.outDegree(id));
+        }
+        return maxDegree;
+    }
+
+    /**
+     * @requires 0 <= from <= to <= g.vertexCount()
+     *
+     * @return the largest in degree of the vertex ids in [from, to), or 0 if
+     *         there are none
+     */
+    static int maxInDegree(IndexedGraph g, int from, int to) {
+        int maxDegree = 0;
+        for (int id = from; id < to; id++) {
+            maxDegree = Math.max(maxDegree, g.inDegree(id));
+        }
+        return maxDegree;
+    }
+}
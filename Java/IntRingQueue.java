@@ -0,0 +1,60 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A first in, first out queue of ints in a circular array. The array doubles
+ * when it is full and never shrinks, so a queue that is cleared and reused
+ * allocates nothing once it is big enough.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+final class IntRingQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // capacity is a power of two, so indices wrap with a mask
+    private int[] items = new int[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    void add(int value) {
+        if (size == items.length) {
+            grow();
+        }
+        items[(head + size) & (items.length - 1)] = value;
+        size++;
+    }
+
+    int remove() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int value = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        return value;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int[] grown = new int[2 * items.length];
+        for (int k = 0; k < size; k++) {
+            grown[k] = items[(head + k) & (items.length - 1)];
+        }
+        items = grown;
+        head = 0;
+    }
+}
@@ -0,0 +1,157 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+/**
+ * Intersection of sorted int arrays, used for the common neighbor queries on
+ * an IndexedGraph (whose neighbor ids always come out sorted).
+ *
+ * Two strategies are used depending on the sizes of the two arrays:
+ *
+ * - merge: walk both arrays together, O(n + m). Best when the sizes are
+ * close.
+ *
+ * - galloping: for every element of the small array, find it in the large
+ * array with an exponential search starting from where the last one was found,
+ * O(n log(m / n)). Best when one array is much larger, for example the
+ * followers of a celebrity against those of an ordinary account.
+ *
+ * The common neighbor queries read the neighbor ids into per-thread scratch
+ * arrays, so they allocate nothing once those have grown to the graph.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class Intersections {
+
+    // gallop when the large array is at least this many times the small one
+    private static final int GALLOP_RATIO = 32;
+
+    private Intersections() {
+    }
+
+    /**
+     * Intersect the first aLength elements of a with the first bLength
+     * elements of b.
+     *
+     * @requires both ranges are sorted in strictly increasing order, and dest
+     *           has room for min(aLength, bLength) elements
+     *
+     * @param dest
+     *            - the array to write the common elements into, in increasing
+     *            order, starting at index 0. May be the same array as a or b.
+     * @return the number of common elements
+     */
+    public static int intersect(int[] a, int aLength, int[] b, int bLength, int[] dest) {
+        // make a the smaller array
+        if (aLength > bLength) {
+            return intersect(b, bLength, a, aLength, dest);
+        }
+
+        if (aLength == 0) {
+            return 0;
+        }
+
+        if (bLength / aLength >= GALLOP_RATIO) {
+            return gallop(a, aLength, b, bLength, dest);
+        }
+        return merge(a, aLength, b, bLength, dest);
+    }
+
+    /**
+     * Intersect by walking both arrays together.
+     */
+    static int merge(int[] a, int aLength, int[] b, int bLength, int[] dest) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < aLength && j < bLength) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                dest[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Intersect by looking up every element of the small array a in the large
+     * array b.
+     */
+    static int gallop(int[] a, int aLength, int[] b, int bLength, int[] dest) {
+        int count = 0;
+        int low = 0;
+
+        for (int i = 0; i < aLength && low < bLength; i++) {
+            int key = a[i];
+
+            // double the step until b[high] >= key or we run off the end
+            int step = 1;
+            int high = low;
+            while (high < bLength && b[high] < key) {
+                low = high + 1;
+                high += step;
+                step *= 2;
+            }
+
+            // then binary search the range [low, min(high, bLength - 1)]
+            high = Math.min(high, bLength - 1);
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (b[middle] < key) {
+                    low = middle + 1;
+                } else if (b[middle] > key) {
+                    high = middle - 1;
+                } else {
+                    dest[count++] = key;
+                    low = middle + 1;
+                    break;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Find the ids of the vertices with an edge from both a and b.
+     *
+     * @requires a and b are valid ids of g, and dest has room for
+     *           min(g.outDegree(a), g.outDegree(b)) elements
+     *
+     * @return the number of ids written to dest, in increasing order
+     */
+    public static int commonDownstreamIds(IndexedGraph g, int a, int b, int[] dest) {
+        // the neighbor ids go in the thread's scratch space
+        SearchScratch scratch = SearchScratch.get();
+        int[] neighborsA = scratch.neighbors(g.outDegree(a));
+        int[] neighborsB = scratch.otherNeighbors(g.outDegree(b));
+        int lengthA = g.getDownstreamIds(a, neighborsA);
+        int lengthB = g.getDownstreamIds(b, neighborsB);
+
+        return intersect(neighborsA, lengthA, neighborsB, lengthB, dest);
+    }
+
+    /**
+     * Find the ids of the vertices with an edge to both a and b.
+     *
+     * @requires a and b are valid ids of g, and dest has room for
+     *           min(g.inDegree(a), g.inDegree(b)) elements
+     *
+     * @return the number of ids written to dest, in increasing order
+     */
+    public static int commonUpstreamIds(IndexedGraph g, int a, int b, int[] dest) {
+        // the neighbor ids go in the thread's scratch space
+        SearchScratch scratch = SearchScratch.get();
+        int[] neighborsA = scratch.neighbors(g.inDegree(a));
+        int[] neighborsB = scratch.otherNeighbors(g.inDegree(b));
+        int lengthA = g.getUpstreamIds(a, neighborsA);
+        int lengthB = g.getUpstreamIds(b, neighborsB);
+
+        return intersect(neighborsA, lengthA, neighborsB, lengthB, dest);
+    }
+}
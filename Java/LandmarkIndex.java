@@ -0,0 +1,416 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Metrics;
+import metrics.PhaseEvent;
+import metrics.PhaseTimer;
+import metrics.TraversalEvent;
+import metrics.TraversalStats;
+/**
+ * A landmark index that bounds shortest distances in microseconds, and drives
+ * an exact search that explores far fewer vertices than a breadth first
+ * search.
+ *
+ * The highest degree vertices are picked as landmarks, and the distance from
+ * every landmark to every vertex and from every vertex to every landmark is
+ * stored. By the triangle inequality, for every landmark L
+ *
+ * d(a, L) + d(L, b) >= d(a, b) >= d(L, b) - d(L, a) and d(a, L) - d(b, L)
+ *
+ * so estimateDistance gives the smallest upper and the largest lower bound
+ * over all landmarks. The bounds also prove there is no path when a landmark
+ * reaches a but not b, or is reached from b but not from a.
+ *
+ * shortestDistance runs an A* search guided by the lower bound to the target,
+ * which never overestimates, so the distance it finds is exact. Vertices from
+ * which the bounds show the target can not be reached, or not reached in
+ * fewer edges than a path already known, are never explored.
+ *
+ * The index takes 8 * landmarks * V bytes, in one array, so landmarks * V
+ * must stay below 2^30. The graph must not change while the index is used;
+ * build a new index for a new version of the graph. The index never changes
+ * once built, so it may be queried from several threads at once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class LandmarkIndex {
+
+    private static final PhaseTimer BUILD = Metrics.timer("index.landmarks");
+    private static final TraversalStats SHORTEST_DISTANCE = Metrics.traversal("shortestDistanceLandmarks");
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    // largest array the JVM can always allocate
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final IndexedGraph graph;
+    // ids of the landmarks
+    private final int[] landmarks;
+    // distance from landmark k to vertex id at [2 * (id * landmarks + k)],
+    // and from vertex id to landmark k right after it; -1 where there is no
+    // path. The distances of one vertex are next to each other, so a bound
+    // reads one or two cache lines per vertex. The constructor makes sure the
+    // whole array fits in one Java array, so every index fits in an int.
+    private final int[] distances;
+
+    /**
+     * Build the index. The breadth first searches from and to each landmark
+     * run as separate tasks on executor.
+     *
+     * @param graph
+     *            - the graph to index. Must not change while the index is
+     *            used.
+     * @param landmarkCount
+     *            - the number of landmarks to pick. More landmarks give
+     *            tighter bounds but take more memory and time per query.
+     * @param executor
+     *            - the executor to run the searches on. It is not shut down.
+     * @throws IllegalArgumentException
+     *             if landmarkCount is not positive, or so large that the
+     *             distances of that many landmarks to every vertex of graph
+     *             do not fit in one array
+     */
+    public LandmarkIndex(IndexedGraph graph, int landmarkCount, ExecutorService executor) {
+        if (landmarkCount < 1) {
+            throw new IllegalArgumentException("landmarkCount must be positive");
+        }
+        int vertexCount = graph.vertexCount();
+        int count = Math.min(landmarkCount, vertexCount);
+        long size = 2L * count * vertexCount;
+        if (size > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException("Can not index " + count + " landmarks of " + vertexCount
+                    + " vertices: " + size + " distances do not fit in one array, at most "
+                    + MAX_ARRAY_LENGTH / (2L * vertexCount) + " landmarks do");
+        }
+
+        PhaseEvent event = BUILD.start();
+        this.graph = graph;
+        landmarks = highestDegreeVertices(graph, count);
+        distances = new int[(int) size];
+
+        // one task per search, so the index builds up to 2 * landmarks times
+        // as fast as one search at a time
+        int maxDegree = Math.max(IndexedGraphs.maxOutDegree(graph, 0, graph.vertexCount()),
+                IndexedGraphs.maxInDegree(graph, 0, graph.vertexCount()));
+        List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+        for (int landmark : landmarks) {
+            results.add(executor.submit(new LandmarkSearch(landmark, true, maxDegree)));
+            results.add(executor.submit(new LandmarkSearch(landmark, false, maxDegree)));
+        }
+
+        try {
+            for (int k = 0; k < landmarks.length; k++) {
+                interleave(results.get(2 * k).get(), 2 * k);
+                interleave(results.get(2 * k + 1).get(), 2 * k + 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        BUILD.stop(event, 2L * landmarks.length);
+    }
+
+    /**
+     * @return the graph this index was built for
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the landmarks, highest degree first
+     */
+    public List<Vertex> getLandmarks() {
+        List<Vertex> landmarkVertices = new ArrayList<Vertex>(landmarks.length);
+        for (int landmark : landmarks) {
+            landmarkVertices.add(graph.vertexAt(landmark));
+        }
+        return landmarkVertices;
+    }
+
+    /**
+     * Bound the shortest distance from a to b without searching.
+     *
+     * @param a
+     *            - the start vertex.
+     * @param b
+     *            - the end vertex.
+     * @return the bounds on the shortest distance from a to b. They show there
+     *         is no path if a or b is not in the graph.
+     */
+    public DistanceEstimate estimateDistance(Vertex a, Vertex b) {
+        int source = graph.indexOf(a);
+        int target = graph.indexOf(b);
+        if (source < 0 || target < 0) {
+            return DistanceEstimate.UNREACHABLE;
+        }
+        return estimateDistance(source, target);
+    }
+
+    /**
+     * Bound the shortest distance between two vertices by id. See
+     * estimateDistance(Vertex, Vertex).
+     *
+     * @requires source and target are valid ids of the graph
+     */
+    public DistanceEstimate estimateDistance(int source, int target) {
+        int lowerBound = lowerBound(source, target);
+        if (lowerBound == UNREACHABLE) {
+            return DistanceEstimate.UNREACHABLE;
+        }
+        return new DistanceEstimate(lowerBound, upperBound(source, target));
+    }
+
+    /**
+     * Find the shortest distance from source to target with an A* search
+     * guided by the landmark bounds. Runs on the calling thread's reusable
+     * scratch space.
+     *
+     * @requires source and target are valid ids of the graph
+     *
+     * @return the shortest distance from source to target, or -1 if there is
+     *         no path
+     */
+    public int shortestDistance(int source, int target) {
+        if (source == target) {
+            return 0;
+        }
+
+        int lowerBound = lowerBound(source, target);
+        if (lowerBound == UNREACHABLE) {
+            return -1;
+        }
+        // if a path through a landmark is known, no longer path needs to be
+        // explored
+        int upperBound = upperBound(source, target);
+        if (lowerBound == upperBound) {
+            return upperBound;
+        }
+
+        SearchScratch scratch = SearchScratch.get();
+        SearchScratch.EpochMarks discovered = scratch.visited(graph.vertexCount());
+        SearchScratch.EpochMarks settled = scratch.settled(graph.vertexCount());
+        LongMinHeap toVisit = scratch.heap;
+        int[] distances = scratch.distances(graph.vertexCount());
+
+        TraversalEvent event = SHORTEST_DISTANCE.start();
+        long verticesVisited = 0;
+        long edgesVisited = 0;
+        int shortestDistance = -1;
+
+        discovered.clear();
+        settled.clear();
+        toVisit.clear();
+        discovered.mark(source);
+        distances[source] = 0;
+        toVisit.add(entry(lowerBound, source));
+
+        // explore vertices in order of distance so far plus lower bound of
+        // the distance left
+        while (!toVisit.isEmpty()) {
+            long next = toVisit.remove();
+            if ((int) (next >>> 32) >= upperBound) {
+                // no vertex left can be on a path shorter than the known one
+                break;
+            }
+
+            int currentVertex = (int) next;
+            if (!settled.mark(currentVertex)) {
+                // an earlier entry with a shorter distance already settled it
+                continue;
+            }
+            verticesVisited++;
+
+            if (currentVertex == target) {
+                shortestDistance = distances[currentVertex];
+                break;
+            }
+
+            int nextDistance = distances[currentVertex] + 1;
+            int[] neighbors = scratch.neighbors(graph.outDegree(currentVertex));
+            int degree = graph.getDownstreamIds(currentVertex, neighbors);
+            edgesVisited += degree;
+
+            for (int k = 0; k < degree; k++) {
+                int downstairsVertex = neighbors[k];
+                if (settled.isMarked(downstairsVertex)
+                        || (discovered.isMarked(downstairsVertex) && distances[downstairsVertex] <= nextDistance)) {
+                    continue;
+                }
+
+                int distanceLeft = lowerBound(downstairsVertex, target);
+                // skip vertices that can not reach the target, or not in
+                // fewer edges than the known path
+                if (distanceLeft == UNREACHABLE || (long) nextDistance + distanceLeft >= upperBound) {
+                    continue;
+                }
+
+                discovered.mark(downstairsVertex);
+                distances[downstairsVertex] = nextDistance;
+                toVisit.add(entry(nextDistance + distanceLeft, downstairsVertex));
+            }
+        }
+
+        SHORTEST_DISTANCE.stop(event, verticesVisited, edgesVisited);
+
+        // every shorter path was ruled out, so the known path is shortest
+        if (shortestDistance < 0 && upperBound != UNREACHABLE) {
+            shortestDistance = upperBound;
+        }
+        return shortestDistance;
+    }
+
+    /**
+     * @return a heap entry ordered by estimate, holding id
+     */
+    private static long entry(int estimate, int id) {
+        return ((long) estimate << 32) | id;
+    }
+
+    /**
+     * @return the largest lower bound on the distance from source to target
+     *         over all landmarks, or UNREACHABLE if a landmark shows there is
+     *         no path
+     */
+    private int lowerBound(int source, int target) {
+        int lowerBound = 0;
+        int stride = 2 * landmarks.length;
+        int sourceRow = source * stride;
+        int targetRow = target * stride;
+
+        for (int k = 0; k < stride; k += 2) {
+            int fromLandmarkToSource = distances[sourceRow + k];
+            int fromLandmarkToTarget = distances[targetRow + k];
+            int fromSourceToLandmark = distances[sourceRow + k + 1];
+            int fromTargetToLandmark = distances[targetRow + k + 1];
+
+            // the landmark reaches the source, so it reaches everything the
+            // source reaches
+            if (fromLandmarkToSource >= 0) {
+                if (fromLandmarkToTarget < 0) {
+                    return UNREACHABLE;
+                }
+                lowerBound = Math.max(lowerBound, fromLandmarkToTarget - fromLandmarkToSource);
+            }
+
+            // the target reaches the landmark, so everything that reaches the
+            // target does too
+            if (fromTargetToLandmark >= 0) {
+                if (fromSourceToLandmark < 0) {
+                    return UNREACHABLE;
+                }
+                lowerBound = Math.max(lowerBound, fromSourceToLandmark - fromTargetToLandmark);
+            }
+        }
+
+        return lowerBound;
+    }
+
+    /**
+     * @return the length of the shortest path from source to target through a
+     *         landmark, or UNREACHABLE if there is none
+     */
+    private int upperBound(int source, int target) {
+        int upperBound = UNREACHABLE;
+        int stride = 2 * landmarks.length;
+
+        for (int k = 0; k < stride; k += 2) {
+            int fromSourceToLandmark = distances[source * stride + k + 1];
+            int fromLandmarkToTarget = distances[target * stride + k];
+            if (fromSourceToLandmark >= 0 && fromLandmarkToTarget >= 0) {
+                upperBound = Math.min(upperBound, fromSourceToLandmark + fromLandmarkToTarget);
+            }
+        }
+
+        return upperBound;
+    }
+
+    /**
+     * Copy the distances of one search into column column of distances.
+     */
+    private void interleave(int[] searchDistances, int column) {
+        int stride = 2 * landmarks.length;
+        for (int id = 0; id < searchDistances.length; id++) {
+            distances[id * stride + column] = searchDistances[id];
+        }
+    }
+
+    /**
+     * @return the ids of the count vertices with the highest in plus out
+     *         degree, highest first, lowest id first among equals
+     */
+    private static int[] highestDegreeVertices(IndexedGraph graph, int count) {
+        // pack degree and id so one sort orders by degree, then by id
+        long[] candidates = new long[graph.vertexCount()];
+        for (int id = 0; id < candidates.length; id++) {
+            long degree = Math.min((long) graph.outDegree(id) + graph.inDegree(id), Integer.MAX_VALUE);
+            candidates[id] = ((Integer.MAX_VALUE - degree) << 32) | id;
+        }
+        Arrays.sort(candidates);
+
+        int[] highest = new int[count];
+        for (int k = 0; k < count; k++) {
+            highest[k] = (int) candidates[k];
+        }
+        return highest;
+    }
+
+    /**
+     * Breadth first search from a landmark along downstream edges, or to it
+     * along upstream edges.
+     */
+    private class LandmarkSearch implements Callable<int[]> {
+        private final int landmark;
+        private final boolean forward;
+        private final int maxDegree;
+
+        LandmarkSearch(int landmark, boolean forward, int maxDegree) {
+            this.landmark = landmark;
+            this.forward = forward;
+            this.maxDegree = maxDegree;
+        }
+
+        /**
+         * @return the distance from (or to) the landmark of every vertex id,
+         *         or -1 for vertices with no path
+         */
+        @Override
+        public int[] call() {
+            int vertexCount = graph.vertexCount();
+            int[] distances = new int[vertexCount];
+            Arrays.fill(distances, -1);
+
+            IntRingQueue toVisit = new IntRingQueue();
+            int[] neighbors = new int[maxDegree];
+
+            distances[landmark] = 0;
+            toVisit.add(landmark);
+
+            while (!toVisit.isEmpty()) {
+                int currentVertex = toVisit.remove();
+                int degree = forward ? graph.getDownstreamIds(currentVertex, neighbors)
+                        : graph.getUpstreamIds(currentVertex, neighbors);
+
+                for (int k = 0; k < degree; k++) {
+                    int neighbor = neighbors[k];
+                    if (distances[neighbor] < 0) {
+                        distances[neighbor] = distances[currentVertex] + 1;
+                        toVisit.add(neighbor);
+                    }
+                }
+            }
+
+            return distances;
+        }
+    }
+}
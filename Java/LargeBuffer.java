@@ -0,0 +1,130 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory outside the Java heap addressed with long positions, so that it can
+ * be larger than the 2 GB one ByteBuffer can hold. It is made of SEGMENT_SIZE
+ * segments, either direct buffers or mappings of a file.
+ *
+ * Ints must be at positions that are a multiple of 4, and longs at multiples
+ * of 8, so that no value is split over two segments. Absolute reads do not
+ * change any buffer state, so any number of threads may read at once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+final class LargeBuffer {
+
+    static final int SEGMENT_BITS = 30;
+    static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final ByteBuffer[] segments;
+    // int views of the segments, for bulk reads of neighbor ids
+    private final IntBuffer[] intSegments;
+    private final long size;
+
+    private LargeBuffer(ByteBuffer[] segments, long size) {
+        this.segments = segments;
+        this.size = size;
+        intSegments = new IntBuffer[segments.length];
+        for (int k = 0; k < segments.length; k++) {
+            intSegments[k] = segments[k].asIntBuffer();
+        }
+    }
+
+    /**
+     * @return size bytes of zeroed direct memory
+     */
+    static LargeBuffer allocateDirect(long size) {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(size)];
+        for (int k = 0; k < segments.length; k++) {
+            segments[k] = ByteBuffer.allocateDirect((int) Math.min(SEGMENT_SIZE, size - k * SEGMENT_SIZE));
+        }
+        return new LargeBuffer(segments, size);
+    }
+
+    /**
+     * Map the first size bytes of a file.
+     *
+     * @param mode
+     *            - READ_ONLY, or READ_WRITE to write through to the file
+     */
+    static LargeBuffer map(FileChannel channel, FileChannel.MapMode mode, long size) throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(size)];
+        for (int k = 0; k < segments.length; k++) {
+            long position = k * SEGMENT_SIZE;
+            segments[k] = channel.map(mode, position, Math.min(SEGMENT_SIZE, size - position));
+        }
+        return new LargeBuffer(segments, size);
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK));
+    }
+
+    int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & SEGMENT_MASK));
+    }
+
+    long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    void put(long position, byte value) {
+        segments[(int) (position >>> SEGMENT_BITS)].put((int) (position & SEGMENT_MASK), value);
+    }
+
+    void putInt(long position, int value) {
+        segments[(int) (position >>> SEGMENT_BITS)].putInt((int) (position & SEGMENT_MASK), value);
+    }
+
+    void putLong(long position, long value) {
+        segments[(int) (position >>> SEGMENT_BITS)].putLong((int) (position & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Copy count ints starting at position into dest, starting at index 0.
+     */
+    void getInts(long position, int[] dest, int count) {
+        int copied = 0;
+        while (copied < count) {
+            int segment = (int) (position >>> SEGMENT_BITS);
+            int index = (int) ((position & SEGMENT_MASK) >>> 2);
+            // the rest of the ints may go on in the next segment
+            int length = Math.min(count - copied, intSegments[segment].limit() - index);
+            // a duplicate has its own position, so threads reading at once
+            // do not move each other's
+            intSegments[segment].duplicate().position(index).get(dest, copied, length);
+            copied += length;
+            position += 4L * length;
+        }
+    }
+
+    /**
+     * Write any changes of a file mapping to the file.
+     */
+    void force() {
+        for (ByteBuffer segment : segments) {
+            if (segment instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) segment).force();
+            }
+        }
+    }
+
+    private static int segmentCount(long size) {
+        long count = (size + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too large: " + size + " bytes");
+        }
+        return (int) Math.max(1, count);
+    }
+}
@@ -0,0 +1,82 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of longs in a growable array. Callers pack a priority in
+ * the high bits and a vertex id in the low bits, so no objects are made per
+ * element. The array never shrinks, so a heap that is cleared and reused
+ * allocates nothing once it is big enough.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+final class LongMinHeap {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] items = new long[INITIAL_CAPACITY];
+    private int size;
+
+    void add(long value) {
+        if (size == items.length) {
+            long[] grown = new long[2 * items.length];
+            System.arraycopy(items, 0, grown, 0, size);
+            items = grown;
+        }
+
+        // sift the new value up from the bottom
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (items[parent] <= value) {
+                break;
+            }
+            items[index] = items[parent];
+            index = parent;
+        }
+        items[index] = value;
+    }
+
+    /**
+     * Remove and return the smallest value.
+     */
+    long remove() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        long smallest = items[0];
+        long last = items[--size];
+
+        // sift the last value down from the top
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && items[child + 1] < items[child]) {
+                child++;
+            }
+            if (last <= items[child]) {
+                break;
+            }
+            items[index] = items[child];
+            index = child;
+        }
+        items[index] = last;
+
+        return smallest;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
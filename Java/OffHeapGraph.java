@@ -0,0 +1,508 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * A read-only graph whose adjacency and vertex labels are all kept outside
+ * the Java heap, in direct memory or a memory-mapped file, so that its size is
+ * limited by memory and disk rather than by the heap, and the garbage
+ * collector never has to scan it. Vertex objects are only made when a method
+ * has to return one; getDownstreamIds and getUpstreamIds copy neighbor ids
+ * straight from the off-heap rows.
+ *
+ * The data is laid out like a GraphSnapshot, but with format version
+ * LARGE_VERSION and long offsets, so it is not limited to 2 GB:
+ *
+ * - header: magic number, format version, vertex count V, size T of the label
+ * hash table, then edge count E, label byte count and the GraphSnapshot.Source
+ * of the graph as longs
+ *
+ * - label offsets: V + 1 longs
+ *
+ * - downstream offsets (V + 1 longs) and targets (E ints)
+ *
+ * - upstream offsets (V + 1 longs) and targets (E ints)
+ *
+ * - label hash table: T ints, as in a GraphSnapshot
+ *
+ * - label bytes
+ *
+ * Every section starts at a multiple of 8 bytes, padded with zeros.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class OffHeapGraph implements IndexedGraph {
+
+    static final int LARGE_VERSION = 6;
+    static final int SOURCE_START = 32;
+    private static final int HEADER_BYTES = SOURCE_START + 8 * GraphSnapshot.Source.LONGS;
+
+    private final LargeBuffer buffer;
+
+    private final int vertexCount;
+    private final long edgeCount;
+    private final int tableSize;
+
+    // byte positions of every section of the buffer
+    private final long labelOffsetsStart;
+    private final long downstreamOffsetsStart;
+    private final long downstreamTargetsStart;
+    private final long upstreamOffsetsStart;
+    private final long upstreamTargetsStart;
+    private final long tableStart;
+    private final long labelBytesStart;
+
+    /**
+     * @param buffer
+     *            - a buffer holding a graph in the layout above
+     * @throws IOException
+     *             if the buffer does not hold a graph of a supported version
+     */
+    private OffHeapGraph(LargeBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.size() < HEADER_BYTES || buffer.getInt(0) != GraphSnapshot.MAGIC) {
+            throw new IOException("Not a graph snapshot");
+        }
+        if (buffer.getInt(4) != LARGE_VERSION) {
+            throw new IOException("Unsupported graph snapshot version " + buffer.getInt(4));
+        }
+
+        vertexCount = buffer.getInt(8);
+        tableSize = buffer.getInt(12);
+        edgeCount = buffer.getLong(16);
+        long labelBytes = buffer.getLong(24);
+
+        // the sections must not overflow when their starts are worked out
+        if (vertexCount < 0 || edgeCount < 0 || edgeCount > buffer.size() || labelBytes < 0
+                || labelBytes > buffer.size()) {
+            throw new IOException("Graph snapshot is truncated or corrupt");
+        }
+        // indexOf probes the table until it finds an empty slot
+        if (!GraphSnapshot.isTableSize(tableSize, vertexCount)) {
+            throw new IOException("Graph snapshot has a bad label table size " + tableSize);
+        }
+
+        labelOffsetsStart = HEADER_BYTES;
+        downstreamOffsetsStart = align(labelOffsetsStart + 8L * (vertexCount + 1));
+        downstreamTargetsStart = align(downstreamOffsetsStart + 8L * (vertexCount + 1));
+        upstreamOffsetsStart = align(downstreamTargetsStart + 4 * edgeCount);
+        upstreamTargetsStart = align(upstreamOffsetsStart + 8L * (vertexCount + 1));
+        tableStart = align(upstreamTargetsStart + 4 * edgeCount);
+        labelBytesStart = align(tableStart + 4L * tableSize);
+
+        if (labelBytesStart + labelBytes != buffer.size()) {
+            throw new IOException("Graph snapshot is truncated or corrupt");
+        }
+    }
+
+    /**
+     * Copy a graph into direct memory.
+     *
+     * @param g
+     *            - the graph to copy. If it is not an IndexedGraph it is first
+     *            copied into a CompressedSparseRowGraph.
+     * @return a read-only copy of g kept outside the Java heap
+     */
+    public static OffHeapGraph copyOf(Graph g) {
+        IndexedGraph graph = g instanceof IndexedGraph ? (IndexedGraph) g : new CompressedSparseRowGraph(g);
+        LargeBuffer buffer = LargeBuffer.allocateDirect(size(graph));
+        write(graph, buffer, GraphSnapshot.Source.NONE);
+        try {
+            return new OffHeapGraph(buffer);
+        } catch (IOException e) {
+            // we just wrote the buffer ourselves
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Save a graph to a file in the layout above, replacing the file if it
+     * exists. The old file is only replaced once the new one is complete. The
+     * file is written through a memory mapping, so nothing but the graph
+     * itself is held on the heap.
+     *
+     * @param g
+     *            - the graph to save. If it is not an IndexedGraph it is first
+     *            copied into a CompressedSparseRowGraph.
+     * @param path
+     *            - the file to write
+     * @param source
+     *            - what the graph was loaded from, see
+     *            GraphSnapshot.readSource
+     * @throws IOException
+     *             if the file can not be written
+     */
+    public static void save(Graph g, Path path, GraphSnapshot.Source source) throws IOException {
+        IndexedGraph graph = g instanceof IndexedGraph ? (IndexedGraph) g : new CompressedSparseRowGraph(g);
+        Path temp = GraphSnapshot.temporaryFile(path);
+        try {
+            writeFile(graph, temp, source);
+            GraphSnapshot.moveIntoPlace(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Write a graph to an existing file in the layout above, in place, and
+     * force it to disk. Callers write to a temporary file and move it into
+     * place.
+     */
+    static void writeFile(IndexedGraph graph, Path path, GraphSnapshot.Source source) throws IOException {
+        long size = size(graph);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            LargeBuffer buffer = LargeBuffer.map(channel, FileChannel.MapMode.READ_WRITE, size);
+            write(graph, buffer, source);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Load a file saved by save. The file is memory-mapped and must not be
+     * changed while the returned graph is in use.
+     *
+     * @param path
+     *            - the file to load
+     * @return a read-only graph backed by the mapped file
+     * @throws IOException
+     *             if the file can not be read or is not a graph of a supported
+     *             version
+     */
+    public static OffHeapGraph load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OffHeapGraph(LargeBuffer.map(channel, FileChannel.MapMode.READ_ONLY, channel.size()));
+        }
+    }
+
+    /**
+     * The graph is read-only.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public void addVertex(Vertex v) {
+        throw new UnsupportedOperationException("Off-heap graphs are read-only");
+    }
+
+    /**
+     * The graph is read-only.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public void addEdge(Vertex v1, Vertex v2) {
+        throw new UnsupportedOperationException("Off-heap graphs are read-only");
+    }
+
+    /**
+     * Check if there is an edge from v1 to v2.
+     *
+     * @return true if an edge from v1 connects to v2
+     * @return false otherwise, or if v1 or v2 is not in the graph
+     */
+    public boolean edgeExists(Vertex v1, Vertex v2) {
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        return from >= 0 && to >= 0 && edgeExists(from, to);
+    }
+
+    public boolean edgeExists(int from, int to) {
+        // rows are sorted, so binary search the row of from
+        long low = downstreamOffset(from);
+        long high = downstreamOffset(from + 1) - 1;
+
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int target = buffer.getInt(downstreamTargetsStart + 4 * middle);
+            if (target < to) {
+                low = middle + 1;
+            } else if (target > to) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return a list of size 0 if v has no downstream neighbors, or is not in
+     *         the graph
+     */
+    public List<Vertex> getDownstreamNeighbors(Vertex v) {
+        int id = indexOf(v);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new NeighborList(downstreamTargetsStart, downstreamOffset(id), outDegree(id));
+    }
+
+    /**
+     * @return a list of size 0 if v has no upstream neighbors, or is not in
+     *         the graph
+     */
+    public List<Vertex> getUpstreamNeighbors(Vertex v) {
+        int id = indexOf(v);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new NeighborList(upstreamTargetsStart, upstreamOffset(id), inDegree(id));
+    }
+
+    public List<Vertex> getVertices() {
+        return new AbstractList<Vertex>() {
+            @Override
+            public Vertex get(int index) {
+                if (index < 0 || index >= vertexCount) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + vertexCount);
+                }
+                return vertexAt(index);
+            }
+
+            @Override
+            public int size() {
+                return vertexCount;
+            }
+        };
+    }
+
+    public int modificationCount() {
+        // the graph never changes
+        return 0;
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * @return the number of edges in the graph, or Integer.MAX_VALUE if there
+     *         are more; see longEdgeCount
+     */
+    public int edgeCount() {
+        return (int) Math.min(edgeCount, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of edges in the graph
+     */
+    public long longEdgeCount() {
+        return edgeCount;
+    }
+
+    public int indexOf(Vertex v) {
+        byte[] label = v.getLabel().getBytes(StandardCharsets.UTF_8);
+        int slot = GraphSnapshot.hash(label, 0, label.length) & (tableSize - 1);
+
+        // probe until we find the label or an empty slot
+        while (true) {
+            int entry = buffer.getInt(tableStart + 4L * slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (labelEquals(entry - 1, label)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & (tableSize - 1);
+        }
+    }
+
+    public Vertex vertexAt(int id) {
+        long from = labelOffset(id);
+        byte[] label = new byte[(int) (labelOffset(id + 1) - from)];
+        for (int k = 0; k < label.length; k++) {
+            label[k] = buffer.get(labelBytesStart + from + k);
+        }
+        return new Vertex(new String(label, StandardCharsets.UTF_8));
+    }
+
+    public int outDegree(int id) {
+        return (int) (downstreamOffset(id + 1) - downstreamOffset(id));
+    }
+
+    public int inDegree(int id) {
+        return (int) (upstreamOffset(id + 1) - upstreamOffset(id));
+    }
+
+    public int getDownstreamIds(int id, int[] dest) {
+        int degree = outDegree(id);
+        buffer.getInts(downstreamTargetsStart + 4 * downstreamOffset(id), dest, degree);
+        return degree;
+    }
+
+    public int getUpstreamIds(int id, int[] dest) {
+        int degree = inDegree(id);
+        buffer.getInts(upstreamTargetsStart + 4 * upstreamOffset(id), dest, degree);
+        return degree;
+    }
+
+    private boolean labelEquals(int id, byte[] label) {
+        long from = labelOffset(id);
+        if (labelOffset(id + 1) - from != label.length) {
+            return false;
+        }
+        for (int k = 0; k < label.length; k++) {
+            if (buffer.get(labelBytesStart + from + k) != label[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long labelOffset(int id) {
+        return buffer.getLong(labelOffsetsStart + 8L * id);
+    }
+
+    private long downstreamOffset(int id) {
+        return buffer.getLong(downstreamOffsetsStart + 8L * id);
+    }
+
+    private long upstreamOffset(int id) {
+        return buffer.getLong(upstreamOffsetsStart + 8L * id);
+    }
+
+    /**
+     * @return the number of bytes graph takes up in the layout above
+     */
+    private static long size(IndexedGraph graph) {
+        int vertexCount = graph.vertexCount();
+        long edgeCount = 0;
+        long labelBytes = 0;
+        for (int id = 0; id < vertexCount; id++) {
+            edgeCount += graph.outDegree(id);
+            labelBytes += graph.vertexAt(id).getLabel().getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        long size = HEADER_BYTES;
+        size = align(size + 8L * (vertexCount + 1));
+        size = align(size + 8L * (vertexCount + 1));
+        size = align(size + 4 * edgeCount);
+        size = align(size + 8L * (vertexCount + 1));
+        size = align(size + 4 * edgeCount);
+        size = align(size + 4L * GraphSnapshot.tableSize(vertexCount));
+        return size + labelBytes;
+    }
+
+    /**
+     * Write graph into a zeroed buffer of size(graph) bytes. Labels are encoded
+     * one at a time, and neighbors copied through one array as long as the
+     * highest degree, so the heap use does not grow with the graph.
+     */
+    private static void write(IndexedGraph graph, LargeBuffer buffer, GraphSnapshot.Source source) {
+        int vertexCount = graph.vertexCount();
+        int tableSize = GraphSnapshot.tableSize(vertexCount);
+
+        long edgeCount = 0;
+        int maxDegree = 0;
+        for (int id = 0; id < vertexCount; id++) {
+            edgeCount += graph.outDegree(id);
+            maxDegree = Math.max(maxDegree, Math.max(graph.outDegree(id), graph.inDegree(id)));
+        }
+
+        long labelOffsetsStart = HEADER_BYTES;
+        long downstreamOffsetsStart = align(labelOffsetsStart + 8L * (vertexCount + 1));
+        long downstreamTargetsStart = align(downstreamOffsetsStart + 8L * (vertexCount + 1));
+        long upstreamOffsetsStart = align(downstreamTargetsStart + 4 * edgeCount);
+        long upstreamTargetsStart = align(upstreamOffsetsStart + 8L * (vertexCount + 1));
+        long tableStart = align(upstreamTargetsStart + 4 * edgeCount);
+        long labelBytesStart = align(tableStart + 4L * tableSize);
+
+        buffer.putInt(0, GraphSnapshot.MAGIC);
+        buffer.putInt(4, LARGE_VERSION);
+        buffer.putInt(8, vertexCount);
+        buffer.putInt(12, tableSize);
+        buffer.putLong(16, edgeCount);
+        buffer.putLong(24, buffer.size() - labelBytesStart);
+        buffer.putLong(SOURCE_START, source.getLength());
+        buffer.putLong(SOURCE_START + 8, source.getLastModified());
+        buffer.putLong(SOURCE_START + 16, source.getBytesLoaded());
+        buffer.putLong(SOURCE_START + 24, source.getFingerprint());
+
+        // labels, their offsets and the hash table
+        long offset = 0;
+        buffer.putLong(labelOffsetsStart, offset);
+        for (int id = 0; id < vertexCount; id++) {
+            byte[] label = graph.vertexAt(id).getLabel().getBytes(StandardCharsets.UTF_8);
+            for (byte b : label) {
+                buffer.put(labelBytesStart + offset++, b);
+            }
+            buffer.putLong(labelOffsetsStart + 8L * (id + 1), offset);
+
+            int slot = GraphSnapshot.hash(label, 0, label.length) & (tableSize - 1);
+            while (buffer.getInt(tableStart + 4L * slot) != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            buffer.putInt(tableStart + 4L * slot, id + 1);
+        }
+
+        int[] neighbors = new int[maxDegree];
+        writeAdjacency(buffer, graph, neighbors, downstreamOffsetsStart, downstreamTargetsStart, true);
+        writeAdjacency(buffer, graph, neighbors, upstreamOffsetsStart, upstreamTargetsStart, false);
+    }
+
+    /**
+     * Write the offsets and targets of one direction of the graph.
+     */
+    private static void writeAdjacency(LargeBuffer buffer, IndexedGraph graph, int[] neighbors, long offsetsStart,
+            long targetsStart, boolean downstream) {
+        long offset = 0;
+        buffer.putLong(offsetsStart, offset);
+        for (int id = 0; id < graph.vertexCount(); id++) {
+            int degree = downstream ? graph.getDownstreamIds(id, neighbors) : graph.getUpstreamIds(id, neighbors);
+            for (int k = 0; k < degree; k++) {
+                buffer.putInt(targetsStart + 4 * offset++, neighbors[k]);
+            }
+            buffer.putLong(offsetsStart + 8L * (id + 1), offset);
+        }
+    }
+
+    /**
+     * @return position rounded up to a multiple of 8
+     */
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Read-only list of the count vertices whose ids are stored from index
+     * from of the targets section starting at byte targetsStart.
+     */
+    private class NeighborList extends AbstractList<Vertex> {
+        private final long targetsStart;
+        private final long from;
+        private final int count;
+
+        NeighborList(long targetsStart, long from, int count) {
+            this.targetsStart = targetsStart;
+            this.from = from;
+            this.count = count;
+        }
+
+        @Override
+        public Vertex get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+            }
+            return vertexAt(buffer.getInt(targetsStart + 4 * (from + index)));
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * One published version of an IncrementalGraph: an immutable base graph plus
+ * the vertices and edges added since the base was built.
+ *
+ * Added vertices get the ids after the base's, so ids never change from one
+ * version to the next. The added neighbors of a vertex are kept as a sorted
+ * id array that holds no edge of the base, and getDownstreamIds and
+ * getUpstreamIds merge the two, so neighbor ids still come out in increasing
+ * order. Vertices that are not in a version have no neighbors and no edges
+ * in it, as in the base graphs.
+ *
+ * Versions are never changed once made, and apply makes the next version
+ * without copying what the versions before it added:
+ *
+ * - the added rows are a PersistentRows, so the next version copies only the
+ * paths to the rows the batch changes
+ *
+ * - the added vertices only ever grow, so every version made by apply from the
+ * same base shares one AddedVertices and reads only the ones it had when it
+ * was made
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class OverlayGraph implements IndexedGraph {
+
+    private final IndexedGraph base;
+    private final int baseVertexCount;
+    private final int version;
+
+    // vertices added since the base, with ids baseVertexCount and up; this
+    // version has the first addedVertexCount of them
+    private final AddedVertices addedVertices;
+    private final int addedVertexCount;
+
+    // added neighbor ids by vertex id, each array sorted
+    private final PersistentRows addedDownstream;
+    private final PersistentRows addedUpstream;
+    private final int addedEdgeCount;
+
+    /**
+     * A version with nothing added to the base.
+     */
+    OverlayGraph(IndexedGraph base, int version) {
+        this(base, version, new AddedVertices(version), 0, PersistentRows.EMPTY, PersistentRows.EMPTY, 0);
+    }
+
+    private OverlayGraph(IndexedGraph base, int version, AddedVertices addedVertices, int addedVertexCount,
+            PersistentRows addedDownstream, PersistentRows addedUpstream, int addedEdgeCount) {
+        this.base = base;
+        this.baseVertexCount = base.vertexCount();
+        this.version = version;
+        this.addedVertices = addedVertices;
+        this.addedVertexCount = addedVertexCount;
+        this.addedDownstream = addedDownstream;
+        this.addedUpstream = addedUpstream;
+        this.addedEdgeCount = addedEdgeCount;
+    }
+
+    /**
+     * Make the next version, with a batch of vertices and edges added.
+     * Vertices and edges already in the graph are ignored, and so are edges
+     * with an end that is neither in the graph nor in vertices.
+     *
+     * @param vertices
+     *            - the vertices to add
+     * @param sources
+     *            - the start of every edge to add
+     * @param targets
+     *            - the end of every edge to add, in the same order as sources
+     * @return the next version
+     * @throws IllegalStateException
+     *             if this is not the latest version made from its base
+     */
+    OverlayGraph apply(List<Vertex> vertices, List<Vertex> sources, List<Vertex> targets) {
+        if (!addedVertices.isLatest(version)) {
+            throw new IllegalStateException("Only the latest version can be changed");
+        }
+
+        for (Vertex v : vertices) {
+            if (base.indexOf(v) < 0 && addedVertices.idOf(v) < 0) {
+                addedVertices.add(v, baseVertexCount + addedVertices.size());
+            }
+        }
+
+        // pack every new edge into a long, source in the high half, so sorting
+        // groups the edges by source with the targets in order
+        long[] edges = new long[sources.size()];
+        int edgeCount = 0;
+        for (int k = 0; k < sources.size(); k++) {
+            int source = latestIdOf(sources.get(k));
+            int target = latestIdOf(targets.get(k));
+            if (source < 0 || target < 0) {
+                continue;
+            }
+            if (source < vertexCount() && target < vertexCount() && edgeExists(source, target)) {
+                continue;
+            }
+            edges[edgeCount++] = (long) source << 32 | target;
+        }
+        Arrays.sort(edges, 0, edgeCount);
+        edgeCount = unique(edges, edgeCount);
+
+        PersistentRows.Editor nextAddedDownstream = addedDownstream.edit();
+        addRows(nextAddedDownstream, edges, edgeCount);
+
+        // the same edges, target in the high half
+        for (int k = 0; k < edgeCount; k++) {
+            edges[k] = edges[k] << 32 | edges[k] >>> 32;
+        }
+        Arrays.sort(edges, 0, edgeCount);
+        PersistentRows.Editor nextAddedUpstream = addedUpstream.edit();
+        addRows(nextAddedUpstream, edges, edgeCount);
+
+        addedVertices.setLatest(version + 1);
+        return new OverlayGraph(base, version + 1, addedVertices, addedVertices.size(), nextAddedDownstream.build(),
+                nextAddedUpstream.build(), addedEdgeCount + edgeCount);
+    }
+
+    /**
+     * @return the same graph with everything added folded into a new
+     *         CompressedSparseRowGraph base
+     */
+    OverlayGraph compact() {
+        int vertexCount = vertexCount();
+        int edgeCount = edgeCount();
+
+        List<Vertex> vertices = new ArrayList<Vertex>(vertexCount);
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        int[] neighbors = new int[vertexCount];
+        int next = 0;
+
+        for (int id = 0; id < vertexCount; id++) {
+            vertices.add(vertexAt(id));
+            int degree = getDownstreamIds(id, neighbors);
+            for (int k = 0; k < degree; k++) {
+                sources[next] = id;
+                targets[next] = neighbors[k];
+                next++;
+            }
+        }
+
+        return new OverlayGraph(new CompressedSparseRowGraph(vertices, sources, targets, edgeCount), version);
+    }
+
+    /**
+     * @return the base graph
+     */
+    IndexedGraph getBase() {
+        return base;
+    }
+
+    /**
+     * @return the number of edges added since the base was built
+     */
+    int addedEdgeCount() {
+        return addedEdgeCount;
+    }
+
+    /**
+     * Versions are immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public void addVertex(Vertex v) {
+        throw new UnsupportedOperationException("Graph versions are immutable");
+    }
+
+    /**
+     * Versions are immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public void addEdge(Vertex v1, Vertex v2) {
+        throw new UnsupportedOperationException("Graph versions are immutable");
+    }
+
+    public boolean edgeExists(Vertex v1, Vertex v2) {
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        return from >= 0 && to >= 0 && edgeExists(from, to);
+    }
+
+    public boolean edgeExists(int from, int to) {
+        if (from < baseVertexCount && to < baseVertexCount && base.edgeExists(from, to)) {
+            return true;
+        }
+        int[] added = addedDownstream.get(from);
+        return added != null && Arrays.binarySearch(added, to) >= 0;
+    }
+
+    public List<Vertex> getDownstreamNeighbors(Vertex v) {
+        int id = indexOf(v);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        int[] neighbors = new int[outDegree(id)];
+        return new NeighborList(neighbors, getDownstreamIds(id, neighbors));
+    }
+
+    public List<Vertex> getUpstreamNeighbors(Vertex v) {
+        int id = indexOf(v);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        int[] neighbors = new int[inDegree(id)];
+        return new NeighborList(neighbors, getUpstreamIds(id, neighbors));
+    }
+
+    public List<Vertex> getVertices() {
+        return new AbstractList<Vertex>() {
+            @Override
+            public Vertex get(int index) {
+                if (index < 0 || index >= vertexCount()) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + vertexCount());
+                }
+                return vertexAt(index);
+            }
+
+            @Override
+            public int size() {
+                return vertexCount();
+            }
+        };
+    }
+
+    public int modificationCount() {
+        return version;
+    }
+
+    public int vertexCount() {
+        return baseVertexCount + addedVertexCount;
+    }
+
+    public int edgeCount() {
+        return base.edgeCount() + addedEdgeCount;
+    }
+
+    public int indexOf(Vertex v) {
+        int id = base.indexOf(v);
+        if (id >= 0) {
+            return id;
+        }
+        // later versions may have added more
+        int addedId = addedVertices.idOf(v);
+        return addedId < vertexCount() ? addedId : -1;
+    }
+
+    public Vertex vertexAt(int id) {
+        return id < baseVertexCount ? base.vertexAt(id) : addedVertices.get(id - baseVertexCount);
+    }
+
+    public int outDegree(int id) {
+        return (id < baseVertexCount ? base.outDegree(id) : 0) + length(addedDownstream.get(id));
+    }
+
+    public int inDegree(int id) {
+        return (id < baseVertexCount ? base.inDegree(id) : 0) + length(addedUpstream.get(id));
+    }
+
+    public int getDownstreamIds(int id, int[] dest) {
+        int count = id < baseVertexCount ? base.getDownstreamIds(id, dest) : 0;
+        return mergeInto(dest, count, addedDownstream.get(id));
+    }
+
+    public int getUpstreamIds(int id, int[] dest) {
+        int count = id < baseVertexCount ? base.getUpstreamIds(id, dest) : 0;
+        return mergeInto(dest, count, addedUpstream.get(id));
+    }
+
+    /**
+     * @return the id of v in this version or among the vertices about to be
+     *         added, or -1 if it is in neither
+     */
+    private int latestIdOf(Vertex v) {
+        int id = base.indexOf(v);
+        return id >= 0 ? id : addedVertices.idOf(v);
+    }
+
+    /**
+     * Merge the sorted added ids into the sorted first count ids of dest,
+     * working from the back so nothing is overwritten before it is moved.
+     *
+     * @return the number of ids in dest afterwards
+     */
+    private static int mergeInto(int[] dest, int count, int[] added) {
+        if (added == null) {
+            return count;
+        }
+
+        int i = count - 1;
+        int j = added.length - 1;
+        int k = count + added.length - 1;
+        while (j >= 0) {
+            if (i >= 0 && dest[i] > added[j]) {
+                dest[k--] = dest[i--];
+            } else {
+                dest[k--] = added[j--];
+            }
+        }
+        return count + added.length;
+    }
+
+    /**
+     * Add sorted packed edges to rows, one merged row per value of the high
+     * half.
+     */
+    private static void addRows(PersistentRows.Editor rows, long[] edges, int edgeCount) {
+        int start = 0;
+        while (start < edgeCount) {
+            int row = (int) (edges[start] >>> 32);
+            int end = start;
+            while (end < edgeCount && (int) (edges[end] >>> 32) == row) {
+                end++;
+            }
+
+            // the new ids go first, then the old row is merged in; the two
+            // are sorted and share no id
+            int[] old = rows.get(row);
+            int[] merged = new int[length(old) + end - start];
+            for (int k = start; k < end; k++) {
+                merged[k - start] = (int) edges[k];
+            }
+            mergeInto(merged, end - start, old);
+            rows.put(row, merged);
+
+            start = end;
+        }
+    }
+
+    /**
+     * Squeeze repeats out of the sorted first count values.
+     *
+     * @return the number of distinct values
+     */
+    private static int unique(long[] values, int count) {
+        int size = 0;
+        for (int k = 0; k < count; k++) {
+            if (k == 0 || values[k] != values[k - 1]) {
+                values[size++] = values[k];
+            }
+        }
+        return size;
+    }
+
+    private static int length(int[] ids) {
+        return ids == null ? 0 : ids.length;
+    }
+
+    /**
+     * The vertices added to one base, shared by the versions apply makes from
+     * it. Only the latest version adds to it, and only at the end, so the
+     * first vertices a version knows about never change.
+     */
+    private static class AddedVertices {
+        private final Map<Vertex, Integer> ids = new ConcurrentHashMap<Vertex, Integer>();
+        // replaced by a longer copy when full, so a reader always sees every
+        // vertex its version had
+        private volatile Vertex[] vertices = new Vertex[16];
+        private int size;
+        // the version that may add more
+        private int latestVersion;
+
+        AddedVertices(int latestVersion) {
+            this.latestVersion = latestVersion;
+        }
+
+        boolean isLatest(int version) {
+            return version == latestVersion;
+        }
+
+        void setLatest(int version) {
+            latestVersion = version;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Vertex get(int index) {
+            return vertices[index];
+        }
+
+        /**
+         * @return the id of v, or -1 if it has not been added
+         */
+        int idOf(Vertex v) {
+            Integer id = ids.get(v);
+            return id == null ? -1 : id;
+        }
+
+        void add(Vertex v, int id) {
+            if (size == vertices.length) {
+                vertices = Arrays.copyOf(vertices, 2 * size);
+            }
+            vertices[size++] = v;
+            ids.put(v, id);
+        }
+    }
+
+    /**
+     * Read-only list of the vertices with the first size ids of ids.
+     */
+    private class NeighborList extends AbstractList<Vertex> {
+        private final int[] ids;
+        private final int size;
+
+        NeighborList(int[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        @Override
+        public Vertex get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return vertexAt(ids[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
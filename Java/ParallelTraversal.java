@@ -0,0 +1,230 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * Runs the breadth first and depth first traversal from every vertex of a
+ * graph in parallel. The traversals from different start vertices do not
+ * depend on each other, so the start vertices are split into chunks. One
+ * task per thread of the executor takes chunks off a shared counter until
+ * none are left. Each task keeps its own visited bitset and queue/stack and
+ * reuses them for every start vertex it traverses from.
+ *
+ * Every traversal visits neighbors in the order the graph returns them, so
+ * the result is the same as Algorithms.breadthFirstSearch(g) and
+ * Algorithms.depthFirstSearch(g).
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class ParallelTraversal {
+
+    // number of chunks per worker, so that a slow chunk does not leave the
+    // other workers idle at the end
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private static final int WORD_SIZE = 64;
+
+    private final Graph graph;
+    private final Vertex[] vertices;
+    private final Map<Vertex, Integer> ids;
+
+    private ParallelTraversal(Graph graph) {
+        this.graph = graph;
+
+        List<Vertex> graphVertices = graph.getVertices();
+        vertices = graphVertices.toArray(new Vertex[graphVertices.size()]);
+        ids = new HashMap<Vertex, Integer>(2 * vertices.length);
+        for (int id = 0; id < vertices.length; id++) {
+            ids.put(vertices[id], id);
+        }
+    }
+
+    /**
+     * Breadth first search from every vertex of g, run on executor.
+     *
+     * @requires g is not changed until this method returns
+     */
+    static Set<List<Vertex>> breadthFirstSearch(Graph g, ExecutorService executor) {
+        return new ParallelTraversal(g).traverseAll(executor, true);
+    }
+
+    /**
+     * Depth first search from every vertex of g, run on executor.
+     *
+     * @requires g is not changed until this method returns
+     */
+    static Set<List<Vertex>> depthFirstSearch(Graph g, ExecutorService executor) {
+        return new ParallelTraversal(g).traverseAll(executor, false);
+    }
+
+    private Set<List<Vertex>> traverseAll(ExecutorService executor, boolean breadthFirst) {
+        int workers = Math.max(1, Math.min(vertices.length, parallelism(executor)));
+        int chunks = Math.max(1, Math.min(vertices.length, CHUNKS_PER_WORKER * workers));
+        int chunkSize = (vertices.length + chunks - 1) / chunks;
+
+        // start one worker per executor thread; they share out the chunks of
+        // start vertices between them
+        AtomicInteger nextStart = new AtomicInteger();
+        List<Future<List<List<Vertex>>>> results = new ArrayList<Future<List<List<Vertex>>>>();
+        for (int worker = 0; worker < workers; worker++) {
+            results.add(executor.submit(new Worker(nextStart, chunkSize, breadthFirst)));
+        }
+
+        // collect the paths in a set, as the sequential searches do
+        Set<List<Vertex>> searchResult = new HashSet<List<Vertex>>();
+        try {
+            for (Future<List<List<Vertex>>> result : results) {
+                searchResult.addAll(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        return Collections.unmodifiableSet(searchResult);
+    }
+
+    /**
+     * @return the number of tasks executor runs at once: the parallelism of
+     *         a ForkJoinPool, the largest size of a bounded ThreadPoolExecutor,
+     *         and the number of processors for any other executor
+     */
+    static int parallelism(ExecutorService executor) {
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        }
+        if (executor instanceof ThreadPoolExecutor
+                && ((ThreadPoolExecutor) executor).getMaximumPoolSize() < Integer.MAX_VALUE) {
+            return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Takes chunks of chunkSize start vertices off nextStart, and traverses
+     * from every vertex in them, until there are none left.
+     */
+    private class Worker implements Callable<List<List<Vertex>>> {
+        private final AtomicInteger nextStart;
+        private final int chunkSize;
+        private final boolean breadthFirst;
+
+        // scratch space, reused for every start vertex
+        // a vertex is discovered once it has been added to toVisit
+        private final long[] discovered = new long[(vertices.length + WORD_SIZE - 1) / WORD_SIZE];
+        // queue (breadth first) or stack (depth first) of vertex ids; each
+        // vertex is added at most once per traversal
+        private final int[] toVisit = new int[vertices.length];
+
+        Worker(AtomicInteger nextStart, int chunkSize, boolean breadthFirst) {
+            this.nextStart = nextStart;
+            this.chunkSize = chunkSize;
+            this.breadthFirst = breadthFirst;
+        }
+
+        @Override
+        public List<List<Vertex>> call() {
+            List<List<Vertex>> paths = new ArrayList<List<Vertex>>();
+
+            int from;
+            while ((from = nextStart.getAndAdd(chunkSize)) < vertices.length) {
+                traverseChunk(from, Math.min(from + chunkSize, vertices.length), paths);
+            }
+
+            return paths;
+        }
+
+        /**
+         * Traverse from every start vertex with an id in [from, to), adding
+         * the paths to paths.
+         */
+        private void traverseChunk(int from, int to, List<List<Vertex>> paths) {
+            for (int startId = from; startId < to; startId++) {
+                List<Vertex> visitedVertices = breadthFirst ? breadthFirst(startId) : depthFirst(startId);
+                paths.add(Collections.unmodifiableList(visitedVertices));
+
+                // only clear the bits this traversal set
+                for (Vertex v : visitedVertices) {
+                    int id = ids.get(v);
+                    discovered[id / WORD_SIZE] &= ~(1L << id);
+                }
+            }
+        }
+
+        private List<Vertex> breadthFirst(int startId) {
+            List<Vertex> visitedVertices = new ArrayList<Vertex>();
+            int head = 0;
+            int tail = 0;
+
+            discover(startId);
+            toVisit[tail++] = startId;
+
+            while (head < tail) {
+                Vertex currentVertex = vertices[toVisit[head++]];
+                visitedVertices.add(currentVertex);
+
+                for (Vertex downstairsVertex : graph.getDownstreamNeighbors(currentVertex)) {
+                    int id = ids.get(downstairsVertex);
+                    if (discover(id)) {
+                        toVisit[tail++] = id;
+                    }
+                }
+            }
+
+            return visitedVertices;
+        }
+
+        private List<Vertex> depthFirst(int startId) {
+            List<Vertex> visitedVertices = new ArrayList<Vertex>();
+            int top = 0;
+
+            discover(startId);
+            toVisit[top++] = startId;
+
+            while (top > 0) {
+                Vertex currentVertex = vertices[toVisit[--top]];
+                visitedVertices.add(currentVertex);
+
+                for (Vertex downstairsVertex : graph.getDownstreamNeighbors(currentVertex)) {
+                    int id = ids.get(downstairsVertex);
+                    if (discover(id)) {
+                        toVisit[top++] = id;
+                    }
+                }
+            }
+
+            return visitedVertices;
+        }
+
+        /**
+         * Mark a vertex as discovered.
+         *
+         * @return true if it was not discovered before
+         */
+        private boolean discover(int id) {
+            long bit = 1L << id;
+            if ((discovered[id / WORD_SIZE] & bit) != 0) {
+                return false;
+            }
+            discovered[id / WORD_SIZE] |= bit;
+            return true;
+        }
+    }
+}
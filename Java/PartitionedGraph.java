@@ -0,0 +1,205 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * A graph split into shards by a hash of each vertex label, as a step
+ * towards spreading a graph over several machines.
+ *
+ * Every shard is its own CompressedSparseRowGraph. Its first localCount(shard)
+ * ids are the vertices it owns, in the order of the original graph, and hold
+ * all of their downstream edges. An edge to a vertex owned by another shard
+ * goes to a ghost: a copy of that vertex, with an id after the local ones,
+ * that only records which shard owns it and its id there. A search that
+ * reaches a ghost has to hand it to the owner; see PartitionedSearch.
+ *
+ * The graph can not be changed once it is built.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class PartitionedGraph {
+
+    private final IndexedGraph[] shards;
+    private final int[] localCounts;
+    // owner shard, and id in the owner, of every ghost of every shard, as
+    // [shard][ghost id - localCount(shard)]
+    private final int[][] ghostOwners;
+    private final int[][] ghostIds;
+    private final int vertexCount;
+    private final long ghostEdgeCount;
+
+    /**
+     * Split a graph into shards.
+     *
+     * @param g
+     *            - the graph to split. If it is not an IndexedGraph it is
+     *            first copied into a CompressedSparseRowGraph.
+     * @param shardCount
+     *            - the number of shards, at least 1
+     */
+    public PartitionedGraph(Graph g, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        }
+        IndexedGraph graph = g instanceof IndexedGraph ? (IndexedGraph) g : new CompressedSparseRowGraph(g);
+        vertexCount = graph.vertexCount();
+
+        // owner and id in the owner of every vertex of graph
+        int[] owners = new int[vertexCount];
+        int[] localIds = new int[vertexCount];
+        localCounts = new int[shardCount];
+        for (int id = 0; id < vertexCount; id++) {
+            owners[id] = shardOf(graph.vertexAt(id), shardCount);
+            localIds[id] = localCounts[owners[id]]++;
+        }
+
+        // the ids in graph of the vertices every shard owns
+        int[][] members = new int[shardCount][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            members[shard] = new int[localCounts[shard]];
+        }
+        for (int id = 0; id < vertexCount; id++) {
+            members[owners[id]][localIds[id]] = id;
+        }
+
+        shards = new IndexedGraph[shardCount];
+        ghostOwners = new int[shardCount][];
+        ghostIds = new int[shardCount][];
+        // ghost id + 1 of every vertex of graph in the shard being built, or 0
+        int[] ghosts = new int[vertexCount];
+        int[] neighbors = new int[Math.max(1, vertexCount)];
+        long ghostEdges = 0;
+
+        for (int shard = 0; shard < shardCount; shard++) {
+            int localCount = localCounts[shard];
+            List<Vertex> vertices = new ArrayList<Vertex>(localCount);
+            List<Integer> ghostVertices = new ArrayList<Integer>();
+
+            int edgeCount = 0;
+            for (int id : members[shard]) {
+                vertices.add(graph.vertexAt(id));
+                edgeCount += graph.outDegree(id);
+            }
+            int[] sources = new int[edgeCount];
+            int[] targets = new int[edgeCount];
+
+            int edge = 0;
+            for (int local = 0; local < localCount; local++) {
+                int degree = graph.getDownstreamIds(members[shard][local], neighbors);
+                for (int k = 0; k < degree; k++) {
+                    int target = neighbors[k];
+                    sources[edge] = local;
+                    if (owners[target] == shard) {
+                        targets[edge] = localIds[target];
+                    } else {
+                        if (ghosts[target] == 0) {
+                            ghostVertices.add(target);
+                            ghosts[target] = ghostVertices.size();
+                        }
+                        targets[edge] = localCount + ghosts[target] - 1;
+                        ghostEdges++;
+                    }
+                    edge++;
+                }
+            }
+
+            ghostOwners[shard] = new int[ghostVertices.size()];
+            ghostIds[shard] = new int[ghostVertices.size()];
+            for (int k = 0; k < ghostVertices.size(); k++) {
+                int target = ghostVertices.get(k);
+                vertices.add(graph.vertexAt(target));
+                ghostOwners[shard][k] = owners[target];
+                ghostIds[shard][k] = localIds[target];
+                ghosts[target] = 0;
+            }
+
+            shards[shard] = new CompressedSparseRowGraph(vertices, sources, targets, edgeCount);
+        }
+        ghostEdgeCount = ghostEdges;
+    }
+
+    /**
+     * @return the shard that owns v in a graph of shardCount shards
+     */
+    public static int shardOf(Vertex v, int shardCount) {
+        int hash = v.getLabel().hashCode();
+        // mix the high bits into the low ones before taking the remainder
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @requires 0 <= shard < shardCount()
+     *
+     * @return the graph of the shard: the vertices it owns, then its ghosts
+     */
+    public IndexedGraph getShard(int shard) {
+        return shards[shard];
+    }
+
+    /**
+     * @requires 0 <= shard < shardCount()
+     *
+     * @return the number of vertices the shard owns. Ids from this number on
+     *         are ghosts.
+     */
+    public int localCount(int shard) {
+        return localCounts[shard];
+    }
+
+    /**
+     * @requires 0 <= shard < shardCount() and localCount(shard) <= ghost <
+     *           getShard(shard).vertexCount()
+     *
+     * @return the shard that owns the vertex of a ghost
+     */
+    public int ghostOwner(int shard, int ghost) {
+        return ghostOwners[shard][ghost - localCounts[shard]];
+    }
+
+    /**
+     * @requires 0 <= shard < shardCount() and localCount(shard) <= ghost <
+     *           getShard(shard).vertexCount()
+     *
+     * @return the id of the vertex of a ghost in the shard that owns it
+     */
+    public int ghostId(int shard, int ghost) {
+        return ghostIds[shard][ghost - localCounts[shard]];
+    }
+
+    /**
+     * @return the shard that owns v, and the id of v there, as {shard, id},
+     *         or null if v is not in the graph
+     */
+    public int[] locate(Vertex v) {
+        int shard = shardOf(v, shards.length);
+        int id = shards[shard].indexOf(v);
+        if (id < 0 || id >= localCounts[shard]) {
+            return null;
+        }
+        return new int[] { shard, id };
+    }
+
+    /**
+     * @return the number of vertices in the graph, not counting ghosts
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * @return the number of edges between vertices of different shards
+     */
+    public long ghostEdgeCount() {
+        return ghostEdgeCount;
+    }
+}
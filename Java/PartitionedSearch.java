@@ -0,0 +1,422 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.TraversalEvent;
+import metrics.TraversalStats;
+/**
+ * Breadth first search over a PartitionedGraph, one level at a time, with
+ * every shard working only on its own vertices the way separate machines
+ * would.
+ *
+ * Every level has two steps, each run for all shards at once on an
+ * executor:
+ *
+ * - expand: every shard follows the downstream edges of its frontier. Newly
+ * reached vertices of its own go into its next frontier; newly reached ghosts
+ * are batched up per owner shard and sent to the owner's message queue.
+ *
+ * - receive: every shard takes the batches off its queue and adds the
+ * vertices it has not reached yet to its next frontier.
+ *
+ * Shards share nothing but the queues, which hold plain int[] batches of ids
+ * in the receiving shard, so the queues could be replaced by sockets between
+ * processes without changing the search. The number of ids and batches sent
+ * at every level is reported in the Result.
+ *
+ * A search only reads the graph, so several searches may run at once. The
+ * shards' search state is kept for the next search when a search ends, so
+ * searches in steady state allocate little more than their messages.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class PartitionedSearch {
+
+    // most ids in one message
+    private static final int BATCH_SIZE = 1 << 10;
+
+    private static final TraversalStats SEARCH = Metrics.traversal("shortestDistancePartitioned");
+    private static final LongAdder CROSS_SHARD_IDS = Metrics.counter("partitioned.crossShardIds");
+    private static final Histogram CROSS_SHARD_IDS_PER_LEVEL = Metrics.histogram("partitioned.crossShardIdsPerLevel");
+
+    private final PartitionedGraph graph;
+    private final ExecutorService executor;
+    // search state of every shard left by finished searches, for the next
+    // ones to take; one set per search running at once
+    private final Queue<Shard[]> idleShards = new ConcurrentLinkedQueue<Shard[]>();
+
+    /**
+     * @param graph
+     *            - the graph to search
+     * @param executor
+     *            - the executor to run the shards on. It is not shut down.
+     */
+    public PartitionedSearch(PartitionedGraph graph, ExecutorService executor) {
+        this.graph = graph;
+        this.executor = executor;
+    }
+
+    /**
+     * Find the length of the shortest path from a to b.
+     *
+     * @throws NoPathException
+     *             if there is no path from a to b, or a or b is not in the
+     *             graph
+     */
+    public int shortestDistance(Vertex a, Vertex b) throws NoPathException {
+        if (graph.locate(a) == null) {
+            throw new NoPathException();
+        }
+        int distance = search(a, b).getDistance();
+        if (distance < 0) {
+            throw new NoPathException();
+        }
+        return distance;
+    }
+
+    /**
+     * Search the graph from source, until target is reached or every vertex
+     * reachable from source has been.
+     *
+     * @requires source is a vertex in the graph
+     *
+     * @param source
+     *            - the vertex to start from
+     * @param target
+     *            - the vertex to stop at, or null to reach every vertex
+     *            reachable from source
+     * @return the distance to target and the work done by the search
+     */
+    public Result search(Vertex source, Vertex target) {
+        int[] from = graph.locate(source);
+        if (from == null) {
+            throw new IllegalArgumentException("Vertex is not in the graph: " + source);
+        }
+        int[] to = target == null ? null : graph.locate(target);
+        List<Long> idsSent = new ArrayList<Long>();
+        List<Long> batchesSent = new ArrayList<Long>();
+        if (target != null && to == null) {
+            return new Result(-1, 0, idsSent, batchesSent);
+        }
+
+        TraversalEvent event = SEARCH.start();
+        final Shard[] shards = takeShards();
+        shards[from[0]].start(from[1]);
+
+        List<Callable<Void>> expand = new ArrayList<Callable<Void>>(shards.length);
+        List<Callable<Void>> receive = new ArrayList<Callable<Void>>(shards.length);
+        for (final Shard shard : shards) {
+            expand.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    shard.expand(shards);
+                    return null;
+                }
+            });
+            receive.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    shard.receive();
+                    return null;
+                }
+            });
+        }
+
+        int distance = -1;
+        int level = 0;
+        while (true) {
+            // every vertex at distance level or less has been reached
+            if (to != null && shards[to[0]].visited.isMarked(to[1])) {
+                distance = level;
+                break;
+            }
+            if (frontierSize(shards) == 0) {
+                break;
+            }
+
+            runAll(expand);
+            long levelIds = 0;
+            long levelBatches = 0;
+            for (Shard shard : shards) {
+                levelIds += shard.idsSent;
+                levelBatches += shard.batchesSent;
+            }
+            idsSent.add(levelIds);
+            batchesSent.add(levelBatches);
+            CROSS_SHARD_IDS.add(levelIds);
+            CROSS_SHARD_IDS_PER_LEVEL.record(levelIds);
+
+            runAll(receive);
+            level++;
+        }
+
+        long reached = 0;
+        long edges = 0;
+        for (Shard shard : shards) {
+            reached += shard.reached;
+            edges += shard.edgesFollowed;
+        }
+        SEARCH.stop(event, reached, edges);
+        // only a search that ran to the end leaves the shards ready for the
+        // next one
+        idleShards.add(shards);
+        return new Result(distance, reached, idsSent, batchesSent);
+    }
+
+    /**
+     * @return the search state of every shard, left by an earlier search or
+     *         new, with nothing reached
+     */
+    private Shard[] takeShards() {
+        Shard[] shards = idleShards.poll();
+        if (shards == null) {
+            shards = new Shard[graph.shardCount()];
+            for (int shard = 0; shard < shards.length; shard++) {
+                shards[shard] = new Shard(shard);
+            }
+        }
+        for (Shard shard : shards) {
+            shard.reset();
+        }
+        return shards;
+    }
+
+    private static long frontierSize(Shard[] shards) {
+        long size = 0;
+        for (Shard shard : shards) {
+            size += shard.frontierSize;
+        }
+        return size;
+    }
+
+    /**
+     * Run one step for every shard and wait for all of them, so that the
+     * next step sees everything this one did.
+     */
+    private void runAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * The search state of one shard. Only the steps of that shard touch it,
+     * apart from its inbox. After a search every outbox and the inbox are
+     * empty, so reset only has to forget what was reached.
+     */
+    private class Shard {
+        private final int shard;
+        private final IndexedGraph g;
+        private final int localCount;
+
+        // reached vertices, and ghosts already sent to their owner
+        final SearchScratch.EpochMarks visited = new SearchScratch.EpochMarks();
+        private int[] frontier;
+        int frontierSize;
+        private int[] next;
+        private int nextSize;
+        // as long as the highest out-degree in the shard
+        private final int[] neighbors;
+
+        // batches being filled for every other shard
+        private final int[][] outboxes;
+        private final int[] outboxSizes;
+        private final Queue<int[]> inbox = new ConcurrentLinkedQueue<int[]>();
+
+        // work done, sent in the last expand step, and in the whole search
+        long idsSent;
+        long batchesSent;
+        long reached;
+        long edgesFollowed;
+
+        Shard(int shard) {
+            this.shard = shard;
+            g = graph.getShard(shard);
+            localCount = graph.localCount(shard);
+            visited.ensureCapacity(g.vertexCount());
+            frontier = new int[localCount];
+            next = new int[localCount];
+            int maxDegree = 0;
+            for (int id = 0; id < localCount; id++) {
+                maxDegree = Math.max(maxDegree, g.outDegree(id));
+            }
+            neighbors = new int[maxDegree];
+            outboxes = new int[graph.shardCount()][BATCH_SIZE];
+            outboxSizes = new int[graph.shardCount()];
+        }
+
+        void reset() {
+            visited.clear();
+            frontierSize = 0;
+            reached = 0;
+            edgesFollowed = 0;
+        }
+
+        void start(int id) {
+            visited.mark(id);
+            frontier[frontierSize++] = id;
+            reached++;
+        }
+
+        void expand(Shard[] shards) {
+            idsSent = 0;
+            batchesSent = 0;
+
+            for (int i = 0; i < frontierSize; i++) {
+                int degree = g.getDownstreamIds(frontier[i], neighbors);
+                edgesFollowed += degree;
+                for (int k = 0; k < degree; k++) {
+                    int id = neighbors[k];
+                    if (!visited.mark(id)) {
+                        continue;
+                    }
+                    if (id < localCount) {
+                        next[nextSize++] = id;
+                        reached++;
+                    } else {
+                        send(shards, graph.ghostOwner(shard, id), graph.ghostId(shard, id));
+                    }
+                }
+            }
+
+            for (int owner = 0; owner < shards.length; owner++) {
+                if (outboxSizes[owner] > 0) {
+                    flush(shards, owner);
+                }
+            }
+        }
+
+        private void send(Shard[] shards, int owner, int id) {
+            outboxes[owner][outboxSizes[owner]++] = id;
+            if (outboxSizes[owner] == BATCH_SIZE) {
+                flush(shards, owner);
+            }
+        }
+
+        private void flush(Shard[] shards, int owner) {
+            shards[owner].inbox.add(Arrays.copyOf(outboxes[owner], outboxSizes[owner]));
+            idsSent += outboxSizes[owner];
+            batchesSent++;
+            outboxSizes[owner] = 0;
+        }
+
+        void receive() {
+            int[] batch;
+            while ((batch = inbox.poll()) != null) {
+                for (int id : batch) {
+                    if (visited.mark(id)) {
+                        next[nextSize++] = id;
+                        reached++;
+                    }
+                }
+            }
+
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            frontierSize = nextSize;
+            nextSize = 0;
+        }
+    }
+
+    /**
+     * The outcome of one search, with the number of ids and batches the
+     * shards sent each other at every level.
+     */
+    public static class Result {
+        private final int distance;
+        private final long reached;
+        private final long[] idsSent;
+        private final long[] batchesSent;
+
+        Result(int distance, long reached, List<Long> idsSent, List<Long> batchesSent) {
+            this.distance = distance;
+            this.reached = reached;
+            this.idsSent = new long[idsSent.size()];
+            this.batchesSent = new long[batchesSent.size()];
+            for (int level = 0; level < this.idsSent.length; level++) {
+                this.idsSent[level] = idsSent.get(level);
+                this.batchesSent[level] = batchesSent.get(level);
+            }
+        }
+
+        /**
+         * @return the distance from the source to the target, or -1 if the
+         *         target was not reached or none was given
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * @return the number of vertices reached, including the source
+         */
+        public long getVerticesReached() {
+            return reached;
+        }
+
+        /**
+         * @return the number of levels expanded
+         */
+        public int getLevelCount() {
+            return idsSent.length;
+        }
+
+        /**
+         * @requires 0 <= level < getLevelCount()
+         *
+         * @return the number of vertex ids sent between shards while
+         *         expanding level
+         */
+        public long getIdsSent(int level) {
+            return idsSent[level];
+        }
+
+        /**
+         * @requires 0 <= level < getLevelCount()
+         *
+         * @return the number of batches sent between shards while expanding
+         *         level
+         */
+        public long getBatchesSent(int level) {
+            return batchesSent[level];
+        }
+
+        /**
+         * @return the number of vertex ids sent between shards in the whole
+         *         search
+         */
+        public long getTotalIdsSent() {
+            long total = 0;
+            for (long ids : idsSent) {
+                total += ids;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            return "distance " + distance + ", reached " + reached + ", ids sent per level "
+                    + Arrays.toString(idsSent) + ", batches sent per level " + Arrays.toString(batchesSent);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+/**
+ * An immutable map from vertex ids to rows of neighbor ids, kept as a trie of
+ * 32-way nodes indexed by five bits of the id at a time.
+ *
+ * A new version with some rows changed is made with an Editor, which copies
+ * only the nodes on the paths to those rows and shares every other node with
+ * the old version. Changing k rows therefore costs O(k log32 n), however many
+ * rows the map holds.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class PersistentRows {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    static final PersistentRows EMPTY = new PersistentRows(new Object[WIDTH], 0);
+
+    // the top node and the shift of the id bits that pick its slot. Nodes
+    // below the top hold nodes, down to the leaves, which hold rows.
+    private final Object[] root;
+    private final int shift;
+
+    private PersistentRows(Object[] root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+    /**
+     * @return the row of id, or null if it has none
+     */
+    int[] get(int id) {
+        return get(root, shift, id);
+    }
+
+    /**
+     * @return an Editor that starts from this version
+     */
+    Editor edit() {
+        return new Editor(root, shift);
+    }
+
+    private static int[] get(Object[] root, int shift, int id) {
+        if (id < 0 || !fits(id, shift)) {
+            return null;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(id >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (int[]) node[id & MASK];
+    }
+
+    /**
+     * @return true if a trie whose top node has the given shift has a slot
+     *         for id
+     */
+    private static boolean fits(int id, int shift) {
+        return shift + BITS >= Integer.SIZE || id >>> (shift + BITS) == 0;
+    }
+
+    /**
+     * Makes a new version of a PersistentRows. Every node it copies is copied
+     * once and then changed in place until build is called, so a batch of
+     * changes to rows that share a path copies that path once.
+     */
+    static class Editor {
+        private Object[] root;
+        private int shift;
+        // the nodes made by this editor, which no version shares yet
+        private final Set<Object[]> owned = Collections.newSetFromMap(new IdentityHashMap<Object[], Boolean>());
+
+        private Editor(Object[] root, int shift) {
+            this.root = root;
+            this.shift = shift;
+        }
+
+        /**
+         * @return the row of id, or null if it has none
+         */
+        int[] get(int id) {
+            return PersistentRows.get(root, shift, id);
+        }
+
+        /**
+         * Set the row of id.
+         *
+         * @requires id >= 0
+         */
+        void put(int id, int[] row) {
+            // add levels on top until there is a slot for id
+            while (!fits(id, shift)) {
+                Object[] top = newNode();
+                top[0] = root;
+                root = top;
+                shift += BITS;
+            }
+
+            root = own(root);
+            Object[] node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                int slot = (id >>> level) & MASK;
+                Object[] child = (Object[]) node[slot];
+                child = child == null ? newNode() : own(child);
+                node[slot] = child;
+                node = child;
+            }
+            node[id & MASK] = row;
+        }
+
+        /**
+         * @return the version with every change made so far. Later changes
+         *         do not affect it.
+         */
+        PersistentRows build() {
+            owned.clear();
+            return new PersistentRows(root, shift);
+        }
+
+        private Object[] newNode() {
+            Object[] node = new Object[WIDTH];
+            owned.add(node);
+            return node;
+        }
+
+        /**
+         * @return node if this editor made it, otherwise a copy of it that
+         *         this editor owns
+         */
+        private Object[] own(Object[] node) {
+            if (owned.contains(node)) {
+                return node;
+            }
+            Object[] copy = node.clone();
+            owned.add(copy);
+            return copy;
+        }
+    }
+}
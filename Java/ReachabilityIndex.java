@@ -0,0 +1,314 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Metrics;
+import metrics.PhaseEvent;
+import metrics.PhaseTimer;
+/**
+ * A precomputed index that tells, without searching, that most pairs of
+ * vertices with no path between them have none.
+ *
+ * The graph is first condensed: every strongly connected component (see
+ * Components) becomes one vertex of a directed acyclic graph. Every component then gets
+ *
+ * - its position in a topological order, and its level: the number of edges
+ * on the longest path from it to a component with no downstream neighbors. A
+ * component can only reach components later in the order and at a lower
+ * level.
+ *
+ * - one interval per traversal for TRAVERSALS randomized depth first
+ * traversals of the condensed graph: [the lowest post-order rank below the
+ * component, the component's own post-order rank]. A component's interval
+ * contains the intervals of every component it can reach.
+ *
+ * mayReach(a, b) is false only if one of these conditions rules a path out,
+ * so false is always right. True is always right for vertices of the same
+ * component; for others it means a search is needed to find out. Building
+ * the index takes O(TRAVERSALS * (V + E)) time and O(V + E) memory, and every
+ * query takes O(TRAVERSALS).
+ *
+ * The graph must not change while the index is used; build a new index for
+ * a new version of the graph. The index never changes once built, so it may
+ * be queried from several threads at once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class ReachabilityIndex {
+
+    // number of randomized interval labels per component
+    private static final int TRAVERSALS = 4;
+    // seed for the traversal orders, so that an index is the same every run
+    private static final long SEED = 221;
+
+    private static final PhaseTimer BUILD = Metrics.timer("index.reachability");
+
+    private final IndexedGraph graph;
+
+    // component of every vertex id. Components are numbered in reverse
+    // topological order: a component only reaches components with lower
+    // numbers.
+    private final int[] components;
+    private final int componentCount;
+    // level of every component
+    private final int[] levels;
+    // interval of every component in every traversal, as
+    // [traversal * componentCount + component]
+    private final int[] lowRanks;
+    private final int[] ranks;
+
+    /**
+     * Build the index.
+     *
+     * @param graph
+     *            - the graph to index. Must not change while the index is
+     *            used.
+     */
+    public ReachabilityIndex(IndexedGraph graph) {
+        PhaseEvent event = BUILD.start();
+        this.graph = graph;
+
+        int vertexCount = graph.vertexCount();
+        int[] offsets = new int[vertexCount + 1];
+        int[] targets = Components.downstreamRows(graph, offsets);
+
+        components = new int[vertexCount];
+        componentCount = Components.stronglyConnected(offsets, targets, components);
+
+        int[] componentOffsets = new int[componentCount + 1];
+        int[] componentTargets = condense(offsets, targets, componentOffsets);
+
+        levels = levels(componentOffsets, componentTargets);
+        lowRanks = new int[TRAVERSALS * componentCount];
+        ranks = new int[TRAVERSALS * componentCount];
+        Random random = new Random(SEED);
+        for (int traversal = 0; traversal < TRAVERSALS; traversal++) {
+            label(componentOffsets, componentTargets, traversal, random);
+        }
+
+        BUILD.stop(event, vertexCount);
+    }
+
+    /**
+     * @return the graph this index was built for
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Check whether there may be a path from a to b.
+     *
+     * @return false if there is certainly no path from a to b, or a or b is
+     *         not in the graph
+     * @return true if a and b are in the same strongly connected component, so
+     *         there is a path, or if the index can not rule a path out
+     */
+    public boolean mayReach(Vertex a, Vertex b) {
+        int source = graph.indexOf(a);
+        int target = graph.indexOf(b);
+        if (source < 0 || target < 0) {
+            return false;
+        }
+        return mayReach(source, target);
+    }
+
+    /**
+     * Check whether there may be a path from the vertex with id source to the
+     * one with id target. See mayReach(Vertex, Vertex).
+     *
+     * @requires source and target are valid ids of the graph
+     */
+    public boolean mayReach(int source, int target) {
+        int from = components[source];
+        int to = components[target];
+        if (from == to) {
+            return true;
+        }
+
+        // a path leads to a later component in topological order, which is a
+        // lower component number, at a lower level
+        if (to > from || levels[to] >= levels[from]) {
+            return false;
+        }
+
+        // and every interval of from contains the one of to
+        for (int traversal = 0; traversal < TRAVERSALS; traversal++) {
+            int offset = traversal * componentCount;
+            if (lowRanks[offset + to] < lowRanks[offset + from] || ranks[offset + to] > ranks[offset + from]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @requires id is a valid id of the graph
+     *
+     * @return the strongly connected component of the vertex with id id.
+     *         Components are numbered from 0 in reverse topological order, so
+     *         a path only ever leads to a component with the same or a lower
+     *         number.
+     */
+    public int componentOf(int id) {
+        return components[id];
+    }
+
+    /**
+     * @return the number of strongly connected components
+     */
+    public int componentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Build the condensed graph: an edge from component c to component d for
+     * every edge of the graph between them, without repeats.
+     *
+     * @param componentOffsets
+     *            - filled in so that the downstream components of c are at
+     *            [componentOffsets[c], componentOffsets[c + 1]) of the result
+     * @return the downstream components of all components, in component order
+     */
+    private int[] condense(int[] offsets, int[] targets, int[] componentOffsets) {
+        int vertexCount = components.length;
+
+        // the vertices of every component, grouped with a counting sort
+        int[] memberOffsets = new int[componentCount + 1];
+        for (int id = 0; id < vertexCount; id++) {
+            memberOffsets[components[id] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        int[] members = new int[vertexCount];
+        int[] fill = Arrays.copyOf(memberOffsets, componentCount);
+        for (int id = 0; id < vertexCount; id++) {
+            members[fill[components[id]]++] = id;
+        }
+
+        // lastSource[d] == c + 1 once the edge c -> d has been added
+        int[] lastSource = new int[componentCount];
+        int[] componentTargets = new int[targets.length];
+        int edgeCount = 0;
+
+        for (int c = 0; c < componentCount; c++) {
+            componentOffsets[c] = edgeCount;
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                int id = members[m];
+                for (int k = offsets[id]; k < offsets[id + 1]; k++) {
+                    int d = components[targets[k]];
+                    if (d != c && lastSource[d] != c + 1) {
+                        lastSource[d] = c + 1;
+                        componentTargets[edgeCount++] = d;
+                    }
+                }
+            }
+        }
+        componentOffsets[componentCount] = edgeCount;
+
+        return Arrays.copyOf(componentTargets, edgeCount);
+    }
+
+    /**
+     * @return the level of every component: 0 for a component with no
+     *         downstream neighbors, otherwise one more than the highest level
+     *         of its downstream neighbors
+     */
+    private int[] levels(int[] componentOffsets, int[] componentTargets) {
+        int[] componentLevels = new int[componentCount];
+
+        // downstream components have lower numbers, so they come first
+        for (int c = 0; c < componentCount; c++) {
+            int level = 0;
+            for (int k = componentOffsets[c]; k < componentOffsets[c + 1]; k++) {
+                level = Math.max(level, componentLevels[componentTargets[k]] + 1);
+            }
+            componentLevels[c] = level;
+        }
+
+        return componentLevels;
+    }
+
+    /**
+     * Label every component with its interval for one depth first traversal
+     * of the condensed graph. The traversal starts from the components in a
+     * random order, and follows the edges of every component starting from a
+     * random one, so that different traversals rule out different pairs.
+     */
+    private void label(int[] componentOffsets, int[] componentTargets, int traversal, Random random) {
+        int offset = traversal * componentCount;
+
+        // a random order to start from
+        int[] roots = new int[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            roots[c] = c;
+        }
+        for (int c = componentCount - 1; c > 0; c--) {
+            int swap = random.nextInt(c + 1);
+            int root = roots[c];
+            roots[c] = roots[swap];
+            roots[swap] = root;
+        }
+
+        boolean[] visited = new boolean[componentCount];
+        int[] callStack = new int[componentCount];
+        // first edge followed, and number of edges followed, of every
+        // component on the search path
+        int[] firstEdge = new int[componentCount];
+        int[] edgesFollowed = new int[componentCount];
+        int nextRank = 0;
+
+        for (int root : roots) {
+            if (visited[root]) {
+                continue;
+            }
+
+            int callStackSize = 0;
+            callStack[callStackSize++] = start(root, componentOffsets, visited, firstEdge, edgesFollowed, random);
+
+            while (callStackSize > 0) {
+                int c = callStack[callStackSize - 1];
+                int degree = componentOffsets[c + 1] - componentOffsets[c];
+
+                if (edgesFollowed[c] < degree) {
+                    int k = componentOffsets[c] + (firstEdge[c] + edgesFollowed[c]) % degree;
+                    edgesFollowed[c]++;
+                    int d = componentTargets[k];
+                    if (!visited[d]) {
+                        callStack[callStackSize++] = start(d, componentOffsets, visited, firstEdge, edgesFollowed,
+                                random);
+                    }
+                    continue;
+                }
+
+                // every downstream component of c is labelled, since the
+                // condensed graph has no cycles
+                callStackSize--;
+                int rank = nextRank++;
+                int lowRank = rank;
+                for (int k = componentOffsets[c]; k < componentOffsets[c + 1]; k++) {
+                    lowRank = Math.min(lowRank, lowRanks[offset + componentTargets[k]]);
+                }
+                ranks[offset + c] = rank;
+                lowRanks[offset + c] = lowRank;
+            }
+        }
+    }
+
+    /**
+     * Mark component c visited and pick the first edge to follow from it.
+     *
+     * @return c
+     */
+    private static int start(int c, int[] componentOffsets, boolean[] visited, int[] firstEdge, int[] edgesFollowed,
+            Random random) {
+        visited[c] = true;
+        int degree = componentOffsets[c + 1] - componentOffsets[c];
+        firstEdge[c] = degree > 1 ? random.nextInt(degree) : 0;
+        edgesFollowed[c] = 0;
+        return c;
+    }
+}
@@ -0,0 +1,207 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * Per-thread working space for the id based searches, kept between calls so
+ * that a search in steady state allocates nothing, as
+ * benchmarks.ScratchAllocationCheck checks.
+ *
+ * Every buffer is sized by the caller that uses it, when it uses it: the
+ * vertex sets and distances grow to the largest graph the thread has searched,
+ * and the neighbor buffers only to the largest degree it has looked up. They
+ * are never cleared: a mark set is emptied by starting a new epoch, and
+ * distances are only read for marked vertices.
+ *
+ * The cached DirectionOptimizingSearch is only softly reachable, so it and the
+ * graph it searched can be collected when memory runs low. A thread that is
+ * done searching can drop all of its space with release.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+final class SearchScratch {
+
+    // largest array the JVM can always allocate
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private static final ThreadLocal<SearchScratch> SCRATCH = new ThreadLocal<SearchScratch>() {
+        @Override
+        protected SearchScratch initialValue() {
+            return new SearchScratch();
+        }
+    };
+
+    // vertices reached by a search, and the targets it is looking for
+    private final EpochMarks visited = new EpochMarks();
+    private final EpochMarks targets = new EpochMarks();
+    // vertices whose distance is final, for best first searches
+    private final EpochMarks settled = new EpochMarks();
+    // distance of every vertex marked visited
+    private int[] distances = new int[0];
+    final IntRingQueue queue = new IntRingQueue();
+    final LongMinHeap heap = new LongMinHeap();
+
+    // neighbor ids of two vertices, and what they have in common
+    private int[] neighbors = new int[0];
+    private int[] otherNeighbors = new int[0];
+    private int[] common = new int[0];
+
+    private SoftReference<DirectionOptimizingSearch> search;
+
+    private SearchScratch() {
+    }
+
+    /**
+     * @return the calling thread's scratch space
+     */
+    static SearchScratch get() {
+        return SCRATCH.get();
+    }
+
+    /**
+     * Drop the calling thread's scratch space, so that it and the last graph
+     * it searched can be collected. The next call to get starts a new one.
+     */
+    static void release() {
+        SCRATCH.remove();
+    }
+
+    /**
+     * @return the set of visited vertices, with room for vertexCount ids
+     */
+    EpochMarks visited(int vertexCount) {
+        visited.ensureCapacity(vertexCount);
+        return visited;
+    }
+
+    /**
+     * @return the set of target vertices, with room for vertexCount ids
+     */
+    EpochMarks targets(int vertexCount) {
+        targets.ensureCapacity(vertexCount);
+        return targets;
+    }
+
+    /**
+     * @return the set of settled vertices, with room for vertexCount ids
+     */
+    EpochMarks settled(int vertexCount) {
+        settled.ensureCapacity(vertexCount);
+        return settled;
+    }
+
+    /**
+     * @return an array of distances with room for vertexCount ids
+     */
+    int[] distances(int vertexCount) {
+        if (distances.length < vertexCount) {
+            distances = new int[vertexCount];
+        }
+        return distances;
+    }
+
+    /**
+     * @return a buffer for the neighbor ids of a vertex of the given degree
+     */
+    int[] neighbors(int degree) {
+        if (neighbors.length < degree) {
+            neighbors = grow(neighbors, degree);
+        }
+        return neighbors;
+    }
+
+    /**
+     * @return a second buffer, besides neighbors, for the neighbor ids of a
+     *         vertex of the given degree
+     */
+    int[] otherNeighbors(int degree) {
+        if (otherNeighbors.length < degree) {
+            otherNeighbors = grow(otherNeighbors, degree);
+        }
+        return otherNeighbors;
+    }
+
+    /**
+     * @return a buffer with room for size ids in common between two neighbor
+     *         lists
+     */
+    int[] common(int size) {
+        if (common.length < size) {
+            common = grow(common, size);
+        }
+        return common;
+    }
+
+    /**
+     * @return a direction optimizing search engine for g, reused while the
+     *         thread keeps searching the same unchanged graph and memory
+     *         allows
+     */
+    DirectionOptimizingSearch directionOptimizingSearch(IndexedGraph g) {
+        DirectionOptimizingSearch cached = search == null ? null : search.get();
+        if (cached == null || !cached.isFor(g)) {
+            cached = new DirectionOptimizingSearch(g);
+            search = new SoftReference<DirectionOptimizingSearch>(cached);
+        }
+        return cached;
+    }
+
+    /**
+     * @return a new buffer, to replace buffer, with room for at least size
+     *         ids. Its contents are not copied. It is at least twice as long,
+     *         so that a run of increasing degrees grows it only a few times.
+     */
+    private static int[] grow(int[] buffer, int size) {
+        return new int[Math.max(size, (int) Math.min(2L * buffer.length, MAX_ARRAY_LENGTH))];
+    }
+
+    /**
+     * A set of vertex ids that is emptied in O(1): an id is in the set when
+     * its stamp equals the current epoch.
+     */
+    static final class EpochMarks {
+        private int[] stamps = new int[0];
+        private int epoch;
+
+        /**
+         * Empty the set.
+         */
+        void clear() {
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                // stamps from 2^31 epochs ago would look current again
+                Arrays.fill(stamps, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * Add id to the set.
+         *
+         * @return true if id was not in the set before
+         */
+        boolean mark(int id) {
+            if (stamps[id] == epoch) {
+                return false;
+            }
+            stamps[id] = epoch;
+            return true;
+        }
+
+        boolean isMarked(int id) {
+            return stamps[id] == epoch;
+        }
+
+        /**
+         * Make room for the ids below vertexCount.
+         */
+        void ensureCapacity(int vertexCount) {
+            if (stamps.length < vertexCount) {
+                // new stamps are 0, never the current epoch once clear was
+                // called
+                stamps = Arrays.copyOf(stamps, vertexCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * A read-only graph that answers every query straight from a buffer in the
+ * GraphSnapshot layout. Vertex objects are only made when a method has to
+ * return one.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class SnapshotGraph implements IndexedGraph {
+
+    private final ByteBuffer buffer;
+
+    private final int vertexCount;
+    private final int edgeCount;
+    private final int tableSize;
+
+    // byte positions of every section of the buffer
+    private final int labelOffsetsStart;
+    private final int downstreamOffsetsStart;
+    private final int downstreamTargetsStart;
+    private final int upstreamOffsetsStart;
+    private final int upstreamTargetsStart;
+    private final int tableStart;
+    private final int labelBytesStart;
+
+    /**
+     * @param buffer
+     *            - a buffer holding a snapshot, starting at index 0
+     * @throws IOException
+     *             if the buffer does not hold a snapshot of a supported
+     *             version
+     */
+    SnapshotGraph(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.limit() < 4 * GraphSnapshot.HEADER_INTS || buffer.getInt(0) != GraphSnapshot.MAGIC) {
+            throw new IOException("Not a graph snapshot");
+        }
+        if (buffer.getInt(4) != GraphSnapshot.VERSION) {
+            throw new IOException("Unsupported graph snapshot version " + buffer.getInt(4));
+        }
+
+        vertexCount = buffer.getInt(8);
+        edgeCount = buffer.getInt(12);
+        tableSize = buffer.getInt(16);
+
+        // everything but the label bytes must be there before we read it
+        long labelBytesPosition = 4L * GraphSnapshot.HEADER_INTS + 12L * (vertexCount + 1) + 8L * edgeCount
+                + 4L * tableSize;
+        if (vertexCount < 0 || edgeCount < 0 || labelBytesPosition > buffer.limit()) {
+            throw new IOException("Graph snapshot is truncated or corrupt");
+        }
+        // indexOf probes the table until it finds an empty slot
+        if (!GraphSnapshot.isTableSize(tableSize, vertexCount)) {
+            throw new IOException("Graph snapshot has a bad label table size " + tableSize);
+        }
+
+        labelOffsetsStart = 4 * GraphSnapshot.HEADER_INTS;
+        downstreamOffsetsStart = labelOffsetsStart + 4 * (vertexCount + 1);
+        downstreamTargetsStart = downstreamOffsetsStart + 4 * (vertexCount + 1);
+        upstreamOffsetsStart = downstreamTargetsStart + 4 * edgeCount;
+        upstreamTargetsStart = upstreamOffsetsStart + 4 * (vertexCount + 1);
+        tableStart = upstreamTargetsStart + 4 * edgeCount;
+        labelBytesStart = tableStart + 4 * tableSize;
+
+        if (labelBytesStart + labelOffset(vertexCount) != buffer.limit()) {
+            throw new IOException("Graph snapshot is truncated or corrupt");
+        }
+    }
+
+    /**
+     * The graph is read-only.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public void addVertex(Vertex v) {
+        throw new UnsupportedOperationException("Snapshot graphs are read-only");
+    }
+
+    /**
+     * The graph is read-only.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public void addEdge(Vertex v1, Vertex v2) {
+        throw new UnsupportedOperationException("Snapshot graphs are read-only");
+    }
+
+    /**
+     * Check if there is an edge from v1 to v2.
+     *
+     * @return true if an edge from v1 connects to v2
+     * @return false otherwise, or if v1 or v2 is not in the graph
+     */
+    public boolean edgeExists(Vertex v1, Vertex v2) {
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        return from >= 0 && to >= 0 && edgeExists(from, to);
+    }
+
+    public boolean edgeExists(int from, int to) {
+        // rows are sorted, so binary search the row of from
+        int low = downstreamOffset(from);
+        int high = downstreamOffset(from + 1) - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int target = buffer.getInt(downstreamTargetsStart + 4 * middle);
+            if (target < to) {
+                low = middle + 1;
+            } else if (target > to) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return a list of size 0 if v has no downstream neighbors, or is not in
+     *         the graph
+     */
+    public List<Vertex> getDownstreamNeighbors(Vertex v) {
+        int id = indexOf(v);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new NeighborList(downstreamTargetsStart, downstreamOffset(id), downstreamOffset(id + 1));
+    }
+
+    /**
+     * @return a list of size 0 if v has no upstream neighbors, or is not in
+     *         the graph
+     */
+    public List<Vertex> getUpstreamNeighbors(Vertex v) {
+        int id = indexOf(v);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new NeighborList(upstreamTargetsStart, upstreamOffset(id), upstreamOffset(id + 1));
+    }
+
+    public List<Vertex> getVertices() {
+        return new AbstractList<Vertex>() {
+            @Override
+            public Vertex get(int index) {
+                if (index < 0 || index >= vertexCount) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + vertexCount);
+                }
+                return vertexAt(index);
+            }
+
+            @Override
+            public int size() {
+                return vertexCount;
+            }
+        };
+    }
+
+    public int modificationCount() {
+        // the graph never changes
+        return 0;
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    public int indexOf(Vertex v) {
+        byte[] label = v.getLabel().getBytes(StandardCharsets.UTF_8);
+        int slot = GraphSnapshot.hash(label, 0, label.length) & (tableSize - 1);
+
+        // probe until we find the label or an empty slot
+        while (true) {
+            int entry = buffer.getInt(tableStart + 4 * slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (labelEquals(entry - 1, label)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & (tableSize - 1);
+        }
+    }
+
+    public Vertex vertexAt(int id) {
+        int from = labelOffset(id);
+        byte[] label = new byte[labelOffset(id + 1) - from];
+        for (int k = 0; k < label.length; k++) {
+            label[k] = buffer.get(labelBytesStart + from + k);
+        }
+        return new Vertex(new String(label, StandardCharsets.UTF_8));
+    }
+
+    public int outDegree(int id) {
+        return downstreamOffset(id + 1) - downstreamOffset(id);
+    }
+
+    public int inDegree(int id) {
+        return upstreamOffset(id + 1) - upstreamOffset(id);
+    }
+
+    public int getDownstreamIds(int id, int[] dest) {
+        return copyIds(downstreamTargetsStart, downstreamOffset(id), downstreamOffset(id + 1), dest);
+    }
+
+    public int getUpstreamIds(int id, int[] dest) {
+        return copyIds(upstreamTargetsStart, upstreamOffset(id), upstreamOffset(id + 1), dest);
+    }
+
+    private int copyIds(int targetsStart, int from, int to, int[] dest) {
+        for (int k = from; k < to; k++) {
+            dest[k - from] = buffer.getInt(targetsStart + 4 * k);
+        }
+        return to - from;
+    }
+
+    private boolean labelEquals(int id, byte[] label) {
+        int from = labelOffset(id);
+        if (labelOffset(id + 1) - from != label.length) {
+            return false;
+        }
+        for (int k = 0; k < label.length; k++) {
+            if (buffer.get(labelBytesStart + from + k) != label[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int labelOffset(int id) {
+        return buffer.getInt(labelOffsetsStart + 4 * id);
+    }
+
+    private int downstreamOffset(int id) {
+        return buffer.getInt(downstreamOffsetsStart + 4 * id);
+    }
+
+    private int upstreamOffset(int id) {
+        return buffer.getInt(upstreamOffsetsStart + 4 * id);
+    }
+
+    /**
+     * Read-only list of the vertices whose ids are stored at indices [from,
+     * to) of the targets section starting at byte targetsStart.
+     */
+    private class NeighborList extends AbstractList<Vertex> {
+        private final int targetsStart;
+        private final int from;
+        private final int to;
+
+        NeighborList(int targetsStart, int from, int to) {
+            this.targetsStart = targetsStart;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Vertex get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return vertexAt(buffer.getInt(targetsStart + 4 * (from + index)));
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
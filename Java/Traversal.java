@@ -0,0 +1,212 @@
+package ca.ubc.ece.cpen221.mp3.graph;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * A breadth first or depth first traversal from one start vertex that yields
+ * the vertices lazily, one at a time, in the same order as
+ * Algorithms.breadthFirstSearch and Algorithms.depthFirstSearch visit them
+ * from that vertex.
+ *
+ * Nothing is searched until the vertices are asked for, and the neighbors of
+ * a vertex are only looked up when the vertex after it is asked for, so a
+ * caller that stops early pays only for what it used. The traversal can also
+ * stop on its own:
+ *
+ * - maxDepth: vertices deeper than this are not visited. The depth is the
+ * one onVisit is given, so for depth first it limits the depth in the search
+ * tree, not the distance from the start: a vertex first found down a long
+ * path is cut off even if a shorter path to it is found later, since depth
+ * first finds every vertex once, like Algorithms.depthFirstSearch.
+ *
+ * - maxVisits: at most this many vertices are yielded.
+ *
+ * - stopWhen: the first vertex matching the predicate is the last one
+ * yielded.
+ *
+ * onVisit gives a callback the depth of every vertex as it is yielded: its
+ * distance from the start for breadth first, and its depth in the search
+ * tree for depth first.
+ *
+ * Set the options first, then call iterator or stream; every call starts a
+ * new traversal. The graph must not change while a traversal is used.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class Traversal implements Iterable<Vertex> {
+
+    private final Graph graph;
+    private final Vertex start;
+    private final boolean breadthFirst;
+
+    private int maxDepth = Integer.MAX_VALUE;
+    private long maxVisits = Long.MAX_VALUE;
+    private Predicate<Vertex> stopWhen;
+    private ObjIntConsumer<Vertex> onVisit;
+
+    /**
+     * @param graph
+     *            - the graph to traverse
+     * @param start
+     *            - the vertex to start from. Must already be in the graph.
+     * @param breadthFirst
+     *            - true for breadth first, false for depth first
+     */
+    Traversal(Graph graph, Vertex start, boolean breadthFirst) {
+        this.graph = graph;
+        this.start = start;
+        this.breadthFirst = breadthFirst;
+    }
+
+    /**
+     * Do not visit vertices deeper than maxDepth: more than maxDepth edges
+     * from the start for breadth first, and more than maxDepth edges down the
+     * search tree for depth first, which may leave out vertices within
+     * maxDepth edges of the start. 0 visits only the start.
+     *
+     * @return this traversal
+     */
+    public Traversal maxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must not be negative");
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Yield at most maxVisits vertices.
+     *
+     * @return this traversal
+     */
+    public Traversal maxVisits(long maxVisits) {
+        if (maxVisits < 0) {
+            throw new IllegalArgumentException("maxVisits must not be negative");
+        }
+        this.maxVisits = maxVisits;
+        return this;
+    }
+
+    /**
+     * Stop after yielding the first vertex that matches the predicate. The
+     * predicate is tested after onVisit is called for the vertex.
+     *
+     * @return this traversal
+     */
+    public Traversal stopWhen(Predicate<Vertex> predicate) {
+        this.stopWhen = predicate;
+        return this;
+    }
+
+    /**
+     * Call visitor with every vertex and its depth, just before the vertex is
+     * yielded.
+     *
+     * @return this traversal
+     */
+    public Traversal onVisit(ObjIntConsumer<Vertex> visitor) {
+        this.onVisit = visitor;
+        return this;
+    }
+
+    /**
+     * @return an iterator over a new traversal. Does not support remove.
+     */
+    @Override
+    public Iterator<Vertex> iterator() {
+        return new TraversalIterator();
+    }
+
+    /**
+     * @return a sequential stream over a new traversal. Short-circuiting
+     *         operations such as anyMatch, findFirst and limit stop the
+     *         traversal too.
+     */
+    public Stream<Vertex> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    private class TraversalIterator implements Iterator<Vertex> {
+        // vertices found but not yet yielded: a queue for breadth first, a
+        // stack for depth first
+        private final Deque<Vertex> toVisit = new ArrayDeque<Vertex>();
+        // depth of every vertex found so far
+        private final Map<Vertex, Integer> depths = new HashMap<Vertex, Integer>();
+
+        // the last vertex yielded, whose neighbors are not looked up yet
+        private Vertex toExpand;
+        private long visits;
+        private boolean stopped;
+
+        TraversalIterator() {
+            toVisit.add(start);
+            depths.put(start, 0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (stopped || visits >= maxVisits) {
+                return false;
+            }
+            expand();
+            return !toVisit.isEmpty();
+        }
+
+        @Override
+        public Vertex next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Vertex currentVertex = breadthFirst ? toVisit.removeFirst() : toVisit.removeLast();
+            int depth = depths.get(currentVertex);
+            visits++;
+
+            if (onVisit != null) {
+                onVisit.accept(currentVertex, depth);
+            }
+            if (stopWhen != null && stopWhen.test(currentVertex)) {
+                stopped = true;
+            }
+
+            toExpand = currentVertex;
+            return currentVertex;
+        }
+
+        /**
+         * Add the unfound neighbors of the last vertex yielded.
+         */
+        private void expand() {
+            if (toExpand == null) {
+                return;
+            }
+
+            int depth = depths.get(toExpand);
+            if (depth < maxDepth) {
+                for (Vertex downstairsVertex : graph.getDownstreamNeighbors(toExpand)) {
+                    // a vertex is only ever added once, like in
+                    // breadthFirstSearch and depthFirstSearch
+                    if (!depths.containsKey(downstairsVertex)) {
+                        depths.put(downstairsVertex, depth + 1);
+                        toVisit.addLast(downstairsVertex);
+                    }
+                }
+            }
+            toExpand = null;
+        }
+    }
+}
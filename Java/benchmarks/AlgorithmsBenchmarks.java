@@ -0,0 +1,127 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.ubc.ece.cpen221.mp3.graph.Algorithms;
+import ca.ubc.ece.cpen221.mp3.graph.DistanceEstimate;
+import ca.ubc.ece.cpen221.mp3.graph.IndexedGraph;
+import ca.ubc.ece.cpen221.mp3.graph.LandmarkIndex;
+import ca.ubc.ece.cpen221.mp3.graph.NoPathException;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * Benchmarks of the pairwise queries in Algorithms. ListGraphBenchmarks runs
+ * the ones that search the graph itself on the list implementation.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AlgorithmsBenchmarks {
+
+    /**
+     * A landmark index of the CSR graph of a GraphState, built once per
+     * trial.
+     */
+    @State(Scope.Benchmark)
+    public static class LandmarkState {
+        @Param({ "4", "16" })
+        public int landmarks;
+
+        public IndexedGraph graph;
+        public LandmarkIndex index;
+
+        @Setup
+        public void setUp(GraphState state) {
+            graph = (IndexedGraph) GraphGenerators.build(GraphGenerators.CSR, state.edges);
+            ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            try {
+                index = new LandmarkIndex(graph, landmarks, executor);
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * The graph of a GraphState frozen into a CSR graph once per trial, for
+     * the engines that work on vertex ids.
+     */
+    @State(Scope.Benchmark)
+    public static class FrozenState {
+        public IndexedGraph graph;
+
+        @Setup
+        public void setUp(GraphState state) {
+            graph = (IndexedGraph) GraphGenerators.build(GraphGenerators.CSR, state.edges);
+        }
+    }
+
+    @Benchmark
+    public int shortestDistance(GraphState state, GraphState.Cursor cursor) {
+        try {
+            return Algorithms.shortestDistance(state.graph, cursor.next(), cursor.next());
+        } catch (NoPathException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public int shortestDistanceBidirectional(GraphState state, GraphState.Cursor cursor) {
+        try {
+            return Algorithms.shortestDistanceBidirectional(state.graph, cursor.next(), cursor.next());
+        } catch (NoPathException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public int shortestDistanceDirectionOptimizing(GraphState.Cursor cursor, FrozenState frozenState) {
+        try {
+            return Algorithms.shortestDistance(frozenState.graph, cursor.next(), cursor.next(), true);
+        } catch (NoPathException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public int shortestDistanceLandmarks(GraphState.Cursor cursor, LandmarkState landmarkState) {
+        try {
+            return Algorithms.shortestDistance(landmarkState.graph, cursor.next(), cursor.next(), landmarkState.index);
+        } catch (NoPathException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public DistanceEstimate estimateDistance(GraphState.Cursor cursor, LandmarkState landmarkState) {
+        return landmarkState.index.estimateDistance(cursor.next(), cursor.next());
+    }
+
+    @Benchmark
+    public List<Vertex> commonUpstreamVertices(GraphState state, GraphState.Cursor cursor) {
+        return Algorithms.commonUpstreamVertices(state.graph, cursor.next(), cursor.next());
+    }
+
+    @Benchmark
+    public List<Vertex> commonDownstreamVertices(GraphState state, GraphState.Cursor cursor) {
+        return Algorithms.commonDownstreamVertices(state.graph, cursor.next(), cursor.next());
+    }
+}
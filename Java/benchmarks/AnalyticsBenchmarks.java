@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.ubc.ece.cpen221.mp3.graph.Analytics;
+import ca.ubc.ece.cpen221.mp3.graph.IndexedGraph;
+/**
+ * Benchmarks of the whole-graph rankings in Analytics, on the CSR graph with
+ * 1 thread and with one thread per processor.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AnalyticsBenchmarks {
+
+    private static final int AVERAGE_DEGREE = 16;
+    private static final long SEED = 221;
+    private static final int TOP = 100;
+
+    @State(Scope.Benchmark)
+    public static class AnalyticsState {
+        @Param({ GraphGenerators.ERDOS_RENYI, GraphGenerators.RMAT })
+        public String generator;
+
+        @Param({ "100000", "1000000" })
+        public int vertices;
+
+        @Param({ "1", "0" })
+        public int threads;
+
+        public IndexedGraph graph;
+        public ExecutorService executor;
+
+        @Setup
+        public void setUp() {
+            graph = (IndexedGraph) GraphGenerators.build(GraphGenerators.CSR,
+                    GraphGenerators.generate(generator, vertices, AVERAGE_DEGREE, SEED));
+            // 0 threads means one per processor
+            executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        }
+
+        @TearDown
+        public void tearDown() {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int[] topByPageRank(AnalyticsState state) {
+        return Analytics.topK(Analytics.pageRank(state.graph, state.executor), TOP);
+    }
+
+    @Benchmark
+    public int[] topByInDegree(AnalyticsState state) {
+        return Analytics.topK(Analytics.inDegrees(state.graph), TOP);
+    }
+}
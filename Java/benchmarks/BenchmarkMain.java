@@ -0,0 +1,46 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+/**
+ * Runs the benchmarks with the GC profiler, so every result also reports the
+ * allocation rate and bytes allocated per operation.
+ *
+ * Any JMH command line option can be given, for example to run only the
+ * neighbor lookups on the CSR graph at one size:
+ *
+ * java -cp ... benchmarks.BenchmarkMain "GraphBenchmarks.*Neighbors" -p
+ * implementation=csr -p vertices=50000
+ *
+ * The pom.xml next to this class builds the benchmarks and the code they
+ * measure into target/benchmarks.jar, with this class as its main class. The
+ * course-provided staff classes are not in the repository, so the build is
+ * given a jar of them, which also goes on the class path:
+ *
+ * mvn -B package -Dstaff.jar=/path/to/staff.jar
+ *
+ * java -cp target/benchmarks.jar:/path/to/staff.jar benchmarks.BenchmarkMain
+ *
+ * The *Stress classes and ScratchAllocationCheck are plain programs that only
+ * need the project itself.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(new CommandLineOptions(args));
+        options.addProfiler(GCProfiler.class);
+
+        if (args.length == 0) {
+            options.include("benchmarks\\..*Benchmarks");
+        }
+
+        new Runner(options.build()).run();
+    }
+}
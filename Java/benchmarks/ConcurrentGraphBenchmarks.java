@@ -0,0 +1,124 @@
+package benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ca.ubc.ece.cpen221.mp3.graph.AdjacencyListGraph;
+import ca.ubc.ece.cpen221.mp3.graph.ConcurrentAdjacencyListGraph;
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * Throughput of a graph shared by many threads: ConcurrentAdjacencyListGraph
+ * against an AdjacencyListGraph behind one lock.
+ *
+ * The number of threads is set on the command line, so sweep it with for
+ * example
+ *
+ * for t in 1 2 4 8 16 32 64; do java -cp ... benchmarks.BenchmarkMain
+ * ConcurrentGraphBenchmarks -t $t; done
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConcurrentGraphBenchmarks {
+
+    public static final String CONCURRENT = "concurrent";
+    public static final String SYNCHRONIZED = "synchronized";
+
+    private static final int AVERAGE_DEGREE = 16;
+    private static final long SEED = 221;
+
+    @State(Scope.Benchmark)
+    public static class SharedGraph {
+        @Param({ CONCURRENT, SYNCHRONIZED })
+        public String implementation;
+
+        @Param({ "100000" })
+        public int vertices;
+
+        // percentage of the mixed operations that add an edge
+        @Param({ "10" })
+        public int writePercent;
+
+        public GraphGenerators.EdgeList edges;
+        public Graph graph;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            edges = GraphGenerators.generate(GraphGenerators.RMAT, vertices, AVERAGE_DEGREE, SEED);
+        }
+
+        /**
+         * Start every iteration from the vertices and half of the edges, so
+         * there are neighbors to read and edges left to add.
+         */
+        @Setup(Level.Iteration)
+        public void build() {
+            graph = implementation.equals(CONCURRENT) ? new ConcurrentAdjacencyListGraph()
+                    : new SynchronizedGraph(new AdjacencyListGraph());
+            for (Vertex v : edges.vertices) {
+                graph.addVertex(v);
+            }
+            for (int k = 0; k < edges.edgeCount() / 2; k++) {
+                graph.addEdge(edges.vertices.get(edges.sources[k]), edges.vertices.get(edges.targets[k]));
+            }
+        }
+
+        Vertex randomVertex() {
+            return edges.vertices.get(ThreadLocalRandom.current().nextInt(vertices));
+        }
+
+        void addRandomEdge() {
+            int k = ThreadLocalRandom.current().nextInt(edges.edgeCount());
+            graph.addEdge(edges.vertices.get(edges.sources[k]), edges.vertices.get(edges.targets[k]));
+        }
+    }
+
+    @Benchmark
+    public void addEdge(SharedGraph state) {
+        state.addRandomEdge();
+    }
+
+    @Benchmark
+    public void downstreamNeighbors(SharedGraph state, Blackhole blackhole) {
+        for (Vertex v : state.graph.getDownstreamNeighbors(state.randomVertex())) {
+            blackhole.consume(v);
+        }
+    }
+
+    /**
+     * writePercent of the operations add an edge; the rest read the
+     * downstream neighbors of a vertex or check an edge, half each.
+     */
+    @Benchmark
+    public void mixed(SharedGraph state, Blackhole blackhole) {
+        int dice = ThreadLocalRandom.current().nextInt(100);
+        if (dice < state.writePercent) {
+            state.addRandomEdge();
+        } else if ((dice & 1) == 0) {
+            for (Vertex v : state.graph.getDownstreamNeighbors(state.randomVertex())) {
+                blackhole.consume(v);
+            }
+        } else {
+            blackhole.consume(state.graph.edgeExists(state.randomVertex(), state.randomVertex()));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ca.ubc.ece.cpen221.mp3.graph.ConcurrentAdjacencyListGraph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * Stress check of ConcurrentAdjacencyListGraph. Writer threads add the same
+ * generated edges at once, each edge by two writers, while reader threads
+ * keep checking that neighbor views are stable and free of repeats. At the
+ * end the graph must hold exactly the generated edges.
+ *
+ * Usage: ConcurrentGraphStress [writers [readers [vertices]]]. Exits with
+ * status 1 if a check fails.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class ConcurrentGraphStress {
+
+    private static final int AVERAGE_DEGREE = 16;
+    private static final long SEED = 221;
+
+    public static void main(String[] args) throws InterruptedException {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int vertexCount = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+        final GraphGenerators.EdgeList edges = GraphGenerators.generate(GraphGenerators.RMAT, vertexCount,
+                AVERAGE_DEGREE, SEED);
+        final ConcurrentAdjacencyListGraph graph = new ConcurrentAdjacencyListGraph();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        // the vertices go in first, since addEdge requires them
+        for (Vertex v : edges.vertices) {
+            graph.addVertex(v);
+        }
+
+        List<Thread> writerThreads = new ArrayList<Thread>();
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            final int writerCount = writers;
+            writerThreads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    // edge k is added by writers k and k + 1 (mod writers),
+                    // so every edge is added twice, often at the same time
+                    for (int k = 0; k < edges.edgeCount(); k++) {
+                        int owner = k % writerCount;
+                        if (owner == writer || (owner + 1) % writerCount == writer) {
+                            graph.addEdge(edges.vertices.get(edges.sources[k]),
+                                    edges.vertices.get(edges.targets[k]));
+                        }
+                    }
+                }
+            }));
+        }
+
+        List<Thread> readerThreads = new ArrayList<Thread>();
+        for (int r = 0; r < readers; r++) {
+            readerThreads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    while (writing.get() && failure.get() == null) {
+                        Vertex v = edges.vertices.get(ThreadLocalRandom.current().nextInt(edges.vertices.size()));
+                        List<Vertex> downstream = graph.getDownstreamNeighbors(v);
+                        List<Vertex> upstream = graph.getUpstreamNeighbors(v);
+                        checkView(downstream, graph.getDownstreamNeighbors(v), "downstream of " + v, failure);
+                        checkView(upstream, graph.getUpstreamNeighbors(v), "upstream of " + v, failure);
+                    }
+                }
+            }));
+        }
+
+        long startTime = System.nanoTime();
+        for (Thread thread : writerThreads) {
+            thread.start();
+        }
+        for (Thread thread : readerThreads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : writerThreads) {
+            thread.join();
+        }
+        long writeNanos = System.nanoTime() - startTime;
+        writing.set(false);
+        for (Thread thread : readerThreads) {
+            thread.join();
+        }
+
+        if (failure.get() == null) {
+            checkFinalGraph(graph, edges, failure);
+        }
+
+        if (failure.get() != null) {
+            System.out.println("FAILED: " + failure.get());
+            System.exit(1);
+        }
+        System.out.println("OK: " + writers + " writers, " + readers + " readers, " + edges.edgeCount()
+                + " edges added twice in " + writeNanos / 1000000 + " ms.");
+    }
+
+    /**
+     * A view must hold no missing or repeated vertex and keep its elements
+     * while it is read, and a later view of the same list must start with the
+     * same elements.
+     */
+    private static void checkView(List<Vertex> view, List<Vertex> laterView, String name,
+            AtomicReference<String> failure) {
+        int size = view.size();
+        Vertex[] firstRead = new Vertex[size];
+        Set<Vertex> seen = new HashSet<Vertex>();
+        for (int k = 0; k < size; k++) {
+            firstRead[k] = view.get(k);
+            if (firstRead[k] == null || !seen.add(firstRead[k])) {
+                failure.compareAndSet(null, name + " has a missing or repeated vertex at " + k);
+                return;
+            }
+        }
+
+        if (view.size() != size || laterView.size() < size) {
+            failure.compareAndSet(null, name + " got shorter");
+            return;
+        }
+        for (int k = 0; k < size; k++) {
+            if (view.get(k) != firstRead[k] || laterView.get(k) != firstRead[k]) {
+                failure.compareAndSet(null, name + " changed at " + k);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The graph must hold exactly the generated edges, in both directions.
+     */
+    private static void checkFinalGraph(ConcurrentAdjacencyListGraph graph, GraphGenerators.EdgeList edges,
+            AtomicReference<String> failure) {
+        Map<Vertex, Set<Vertex>> downstream = new HashMap<Vertex, Set<Vertex>>();
+        Map<Vertex, Set<Vertex>> upstream = new HashMap<Vertex, Set<Vertex>>();
+        for (Vertex v : edges.vertices) {
+            downstream.put(v, new HashSet<Vertex>());
+            upstream.put(v, new HashSet<Vertex>());
+        }
+        for (int k = 0; k < edges.edgeCount(); k++) {
+            Vertex a = edges.vertices.get(edges.sources[k]);
+            Vertex b = edges.vertices.get(edges.targets[k]);
+            downstream.get(a).add(b);
+            upstream.get(b).add(a);
+            if (!graph.edgeExists(a, b)) {
+                failure.compareAndSet(null, "missing edge " + a + " -> " + b);
+                return;
+            }
+        }
+
+        if (graph.getVertices().size() != edges.vertices.size()) {
+            failure.compareAndSet(null, "expected " + edges.vertices.size() + " vertices, found "
+                    + graph.getVertices().size());
+            return;
+        }
+        for (Vertex v : edges.vertices) {
+            List<Vertex> down = graph.getDownstreamNeighbors(v);
+            List<Vertex> up = graph.getUpstreamNeighbors(v);
+            if (down.size() != downstream.get(v).size() || !downstream.get(v).equals(new HashSet<Vertex>(down))) {
+                failure.compareAndSet(null, "wrong downstream neighbors of " + v);
+                return;
+            }
+            if (up.size() != upstream.get(v).size() || !upstream.get(v).equals(new HashSet<Vertex>(up))) {
+                failure.compareAndSet(null, "wrong upstream neighbors of " + v);
+                return;
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import twitterAnalysis.TwitterDataLoader;
+/**
+ * A generated graph shared by all benchmark threads, plus a sample of its
+ * vertices that every thread queries in turn through its own Cursor.
+ *
+ * The subclasses pick the implementations and sizes, since not every
+ * implementation can be built at every size: see GraphState and
+ * ListGraphState.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@State(Scope.Benchmark)
+public abstract class GeneratedGraphState {
+
+    // number of edges per vertex before repeated edges are removed
+    private static final int AVERAGE_DEGREE = 16;
+    // number of sampled vertices; a power of two so next() can mask
+    private static final int SAMPLE_SIZE = 1024;
+    private static final long SEED = 221;
+    // largest graph the list implementation is built for
+    private static final int MAX_LIST_VERTICES = 10000;
+
+    @Param({ GraphGenerators.ERDOS_RENYI, GraphGenerators.RMAT, GraphGenerators.TWITTER })
+    public String generator;
+
+    public GraphGenerators.EdgeList edges;
+    public Graph graph;
+
+    private Vertex[] sample;
+    // the edges in the twitter.txt format, for the twitter generator
+    private File twitterFile;
+
+    /**
+     * @return the number of vertices to generate
+     */
+    protected abstract int vertexCount();
+
+    /**
+     * @return the graph implementation to build, see GraphGenerators.build
+     */
+    protected abstract String implementation();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (implementation().equals(GraphGenerators.LIST) && vertexCount() > MAX_LIST_VERTICES) {
+            throw new IllegalArgumentException("The " + GraphGenerators.LIST + " implementation is only built up to "
+                    + MAX_LIST_VERTICES + " vertices");
+        }
+        edges = GraphGenerators.generate(generator, vertexCount(), AVERAGE_DEGREE, SEED);
+        sample = GraphGenerators.sampleVertices(edges, SAMPLE_SIZE, SEED);
+
+        if (generator.equals(GraphGenerators.TWITTER)) {
+            twitterFile = File.createTempFile("twitter", ".txt");
+            GraphGenerators.writeTwitterFormat(edges, twitterFile);
+        }
+
+        graph = buildGraph();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (twitterFile != null) {
+            twitterFile.delete();
+        }
+    }
+
+    /**
+     * Build the graph from scratch: by parsing the twitter.txt format file
+     * for the twitter generator with the CSR implementation, and with
+     * GraphGenerators.build otherwise.
+     */
+    public Graph buildGraph() throws IOException {
+        if (twitterFile != null && implementation().equals(GraphGenerators.CSR)) {
+            return new TwitterDataLoader(Runtime.getRuntime().availableProcessors()).load(twitterFile);
+        }
+        return GraphGenerators.build(implementation(), edges);
+    }
+
+    /**
+     * The position of one benchmark thread in the sample of a state, so that
+     * threads never write to shared state between queries. Every subclass has
+     * its own Cursor state that starts it on the subclass.
+     */
+    public static class Cursor {
+        private Vertex[] sample;
+        private int next;
+
+        protected void start(GeneratedGraphState state) {
+            sample = state.sample;
+        }
+
+        /**
+         * @return the next sampled vertex for this thread
+         */
+        public Vertex next() {
+            next = (next + 1) & (SAMPLE_SIZE - 1);
+            return sample[next];
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * Benchmarks of the Graph operations: bulk loading, edgeExists, and neighbor
+ * lookups, for the implementations of GraphState. ListGraphBenchmarks runs
+ * the same ones on the list implementation.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GraphBenchmarks {
+
+    /**
+     * Add every vertex and edge with addVertex and addEdge (or the bulk
+     * loaders for CSR).
+     */
+    @Benchmark
+    public Graph bulkLoad(GraphState state) throws IOException {
+        return state.buildGraph();
+    }
+
+    @Benchmark
+    public boolean edgeExists(GraphState state, GraphState.Cursor cursor) {
+        return state.graph.edgeExists(cursor.next(), cursor.next());
+    }
+
+    @Benchmark
+    public void downstreamNeighbors(GraphState state, GraphState.Cursor cursor, Blackhole blackhole) {
+        // walk the list, since some implementations return lazy views
+        for (Vertex v : state.graph.getDownstreamNeighbors(cursor.next())) {
+            blackhole.consume(v);
+        }
+    }
+
+    @Benchmark
+    public void upstreamNeighbors(GraphState state, GraphState.Cursor cursor, Blackhole blackhole) {
+        for (Vertex v : state.graph.getUpstreamNeighbors(cursor.next())) {
+            blackhole.consume(v);
+        }
+    }
+}
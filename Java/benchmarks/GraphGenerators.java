@@ -0,0 +1,217 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ca.ubc.ece.cpen221.mp3.graph.AdjacencyListGraph;
+import ca.ubc.ece.cpen221.mp3.graph.AdjacencyMatrixGraph;
+import ca.ubc.ece.cpen221.mp3.graph.CompressedSparseRowGraph;
+import ca.ubc.ece.cpen221.mp3.graph.OffHeapGraph;
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * Synthetic graphs for the benchmarks. Every generator is seeded, so the same
+ * parameters always give the same graph.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class GraphGenerators {
+
+    /**
+     * Graph generator names, as used by the benchmark parameters.
+     */
+    public static final String ERDOS_RENYI = "erdosRenyi";
+    public static final String RMAT = "rmat";
+    public static final String TWITTER = "twitter";
+
+    /**
+     * Graph implementation names, as used by the benchmark parameters.
+     */
+    public static final String LIST = "list";
+    public static final String MATRIX = "matrix";
+    public static final String CSR = "csr";
+    public static final String OFF_HEAP = "offHeap";
+
+    private GraphGenerators() {
+    }
+
+    /**
+     * A list of edges between vertex ids 0 to vertexCount - 1. May contain
+     * repeated edges.
+     */
+    public static class EdgeList {
+        public final List<Vertex> vertices;
+        public final int[] sources;
+        public final int[] targets;
+
+        EdgeList(int vertexCount, int[] sources, int[] targets) {
+            vertices = new ArrayList<Vertex>(vertexCount);
+            for (int id = 0; id < vertexCount; id++) {
+                vertices.add(new Vertex("user" + id));
+            }
+            this.sources = sources;
+            this.targets = targets;
+        }
+
+        public int edgeCount() {
+            return sources.length;
+        }
+    }
+
+    /**
+     * Generate a graph by name.
+     *
+     * @param generator
+     *            - ERDOS_RENYI, RMAT or TWITTER
+     * @param vertexCount
+     *            - the number of vertices
+     * @param averageDegree
+     *            - the number of edges per vertex, before repeated edges are
+     *            removed
+     */
+    public static EdgeList generate(String generator, int vertexCount, int averageDegree, long seed) {
+        int edgeCount = vertexCount * averageDegree;
+
+        if (generator.equals(ERDOS_RENYI)) {
+            return erdosRenyi(vertexCount, edgeCount, seed);
+        } else if (generator.equals(RMAT)) {
+            return rmat(vertexCount, edgeCount, 0.57, 0.19, 0.19, seed);
+        } else if (generator.equals(TWITTER)) {
+            // follower graphs are more skewed on the followed side
+            return rmat(vertexCount, edgeCount, 0.45, 0.35, 0.10, seed);
+        }
+        throw new IllegalArgumentException("Unknown generator " + generator);
+    }
+
+    /**
+     * Erdos-Renyi G(n, m): every edge joins two vertices picked uniformly at
+     * random.
+     */
+    public static EdgeList erdosRenyi(int vertexCount, int edgeCount, long seed) {
+        Random random = new Random(seed);
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+
+        for (int k = 0; k < edgeCount; k++) {
+            sources[k] = random.nextInt(vertexCount);
+            targets[k] = random.nextInt(vertexCount);
+        }
+
+        return new EdgeList(vertexCount, sources, targets);
+    }
+
+    /**
+     * R-MAT: every edge picks one quadrant of the adjacency matrix with
+     * probabilities a, b, c and 1 - a - b - c, then recurses into it. Gives a
+     * power-law degree distribution like real follower graphs. Ids are
+     * shuffled afterwards so high-degree vertices are not all at the start.
+     */
+    public static EdgeList rmat(int vertexCount, int edgeCount, double a, double b, double c, long seed) {
+        Random random = new Random(seed);
+        int scale = 32 - Integer.numberOfLeadingZeros(Math.max(vertexCount - 1, 1));
+
+        int[] permutation = new int[vertexCount];
+        for (int id = 0; id < vertexCount; id++) {
+            permutation[id] = id;
+        }
+        for (int id = vertexCount - 1; id > 0; id--) {
+            int other = random.nextInt(id + 1);
+            int swap = permutation[id];
+            permutation[id] = permutation[other];
+            permutation[other] = swap;
+        }
+
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        for (int k = 0; k < edgeCount; k++) {
+            int source;
+            int target;
+            do {
+                source = 0;
+                target = 0;
+                for (int bit = 0; bit < scale; bit++) {
+                    double p = random.nextDouble();
+                    if (p >= a + b + c) {
+                        source |= 1 << bit;
+                        target |= 1 << bit;
+                    } else if (p >= a + b) {
+                        source |= 1 << bit;
+                    } else if (p >= a) {
+                        target |= 1 << bit;
+                    }
+                }
+            } while (source >= vertexCount || target >= vertexCount);
+
+            sources[k] = permutation[source];
+            targets[k] = permutation[target];
+        }
+
+        return new EdgeList(vertexCount, sources, targets);
+    }
+
+    /**
+     * Write an edge list in the twitter.txt format, one "a -> b" line per
+     * edge.
+     */
+    public static void writeTwitterFormat(EdgeList edges, File file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (int k = 0; k < edges.edgeCount(); k++) {
+                writer.write(edges.vertices.get(edges.sources[k]).getLabel() + " -> "
+                        + edges.vertices.get(edges.targets[k]).getLabel());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Build a graph of the named implementation with addVertex and addEdge
+     * calls, with the bulk constructor for CSR, or as an off-heap copy of the
+     * CSR graph for OFF_HEAP.
+     *
+     * @param implementation
+     *            - LIST, MATRIX, CSR or OFF_HEAP
+     */
+    public static Graph build(String implementation, EdgeList edges) {
+        if (implementation.equals(CSR)) {
+            return new CompressedSparseRowGraph(edges.vertices, edges.sources, edges.targets, edges.edgeCount());
+        }
+        if (implementation.equals(OFF_HEAP)) {
+            return OffHeapGraph.copyOf(build(CSR, edges));
+        }
+
+        Graph graph;
+        if (implementation.equals(LIST)) {
+            graph = new AdjacencyListGraph();
+        } else if (implementation.equals(MATRIX)) {
+            graph = new AdjacencyMatrixGraph();
+        } else {
+            throw new IllegalArgumentException("Unknown graph implementation " + implementation);
+        }
+
+        for (Vertex v : edges.vertices) {
+            graph.addVertex(v);
+        }
+        for (int k = 0; k < edges.edgeCount(); k++) {
+            graph.addEdge(edges.vertices.get(edges.sources[k]), edges.vertices.get(edges.targets[k]));
+        }
+        return graph;
+    }
+
+    /**
+     * @return count vertices of edges picked at random, to query in turn
+     */
+    public static Vertex[] sampleVertices(EdgeList edges, int count, long seed) {
+        Random random = new Random(seed);
+        Vertex[] sample = new Vertex[count];
+        for (int k = 0; k < count; k++) {
+            sample[k] = edges.vertices.get(random.nextInt(edges.vertices.size()));
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+/**
+ * The generated graphs of the implementations that scale: the matrix, CSR and
+ * off-heap graphs, at every size.
+ *
+ * The matrix implementation needs about vertices^2 / 4 bytes, so it is only
+ * practical up to a few tens of thousands of vertices. The list
+ * implementation is in ListGraphState, which stops at smaller sizes.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@State(Scope.Benchmark)
+public class GraphState extends GeneratedGraphState {
+
+    @Param({ "1000", "10000", "50000" })
+    public int vertices;
+
+    @Param({ GraphGenerators.MATRIX, GraphGenerators.CSR, GraphGenerators.OFF_HEAP })
+    public String implementation;
+
+    @Override
+    protected int vertexCount() {
+        return vertices;
+    }
+
+    @Override
+    protected String implementation() {
+        return implementation;
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor extends GeneratedGraphState.Cursor {
+        @Setup(Level.Trial)
+        public void setUp(GraphState state) {
+            start(state);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ca.ubc.ece.cpen221.mp3.graph.Algorithms;
+import ca.ubc.ece.cpen221.mp3.graph.NoPathException;
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * The benchmarks of GraphBenchmarks and the queries of AlgorithmsBenchmarks
+ * that run on the graph itself, for the list implementation, on the sizes
+ * of ListGraphState.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ListGraphBenchmarks {
+
+    @Benchmark
+    public Graph bulkLoad(ListGraphState state) throws IOException {
+        return state.buildGraph();
+    }
+
+    @Benchmark
+    public boolean edgeExists(ListGraphState state, ListGraphState.Cursor cursor) {
+        return state.graph.edgeExists(cursor.next(), cursor.next());
+    }
+
+    @Benchmark
+    public void downstreamNeighbors(ListGraphState state, ListGraphState.Cursor cursor, Blackhole blackhole) {
+        for (Vertex v : state.graph.getDownstreamNeighbors(cursor.next())) {
+            blackhole.consume(v);
+        }
+    }
+
+    @Benchmark
+    public void upstreamNeighbors(ListGraphState state, ListGraphState.Cursor cursor, Blackhole blackhole) {
+        for (Vertex v : state.graph.getUpstreamNeighbors(cursor.next())) {
+            blackhole.consume(v);
+        }
+    }
+
+    @Benchmark
+    public int shortestDistance(ListGraphState state, ListGraphState.Cursor cursor) {
+        try {
+            return Algorithms.shortestDistance(state.graph, cursor.next(), cursor.next());
+        } catch (NoPathException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public int shortestDistanceBidirectional(ListGraphState state, ListGraphState.Cursor cursor) {
+        try {
+            return Algorithms.shortestDistanceBidirectional(state.graph, cursor.next(), cursor.next());
+        } catch (NoPathException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public List<Vertex> commonUpstreamVertices(ListGraphState state, ListGraphState.Cursor cursor) {
+        return Algorithms.commonUpstreamVertices(state.graph, cursor.next(), cursor.next());
+    }
+
+    @Benchmark
+    public List<Vertex> commonDownstreamVertices(ListGraphState state, ListGraphState.Cursor cursor) {
+        return Algorithms.commonDownstreamVertices(state.graph, cursor.next(), cursor.next());
+    }
+}
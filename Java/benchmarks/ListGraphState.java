@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+/**
+ * The generated graphs of the list implementation. It checks every new edge
+ * against a linked list of the edges already there, so building it takes
+ * time quadratic in the vertex degrees, and one build of a skewed graph of
+ * 50000 vertices takes tens of seconds. It is only built for the smaller
+ * sizes.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@State(Scope.Benchmark)
+public class ListGraphState extends GeneratedGraphState {
+
+    @Param({ "1000", "10000" })
+    public int vertices;
+
+    @Override
+    protected int vertexCount() {
+        return vertices;
+    }
+
+    @Override
+    protected String implementation() {
+        return GraphGenerators.LIST;
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor extends GeneratedGraphState.Cursor {
+        @Setup(Level.Trial)
+        public void setUp(ListGraphState state) {
+            start(state);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ca.ubc.ece.cpen221.mp3.graph.Algorithms;
+import ca.ubc.ece.cpen221.mp3.graph.CompressedSparseRowGraph;
+import ca.ubc.ece.cpen221.mp3.graph.PartitionedGraph;
+import ca.ubc.ece.cpen221.mp3.graph.PartitionedSearch;
+/**
+ * Check of PartitionedSearch. The same generated graph is split into 1 to
+ * shards shards, and the distance between random pairs of vertices must
+ * match Algorithms.shortestDistance on the whole graph every time.
+ *
+ * Full searches from a few sources are checked against a breadth first
+ * search of the whole graph too: they must reach the same vertices in the
+ * same number of levels, and send exactly the expected ids between shards at
+ * every level. A shard sends a vertex of another shard once, at the level of
+ * its nearest in-neighbor that the shard owns.
+ *
+ * Usage: PartitionedSearchStress [shards [queries [vertices]]]. Exits with
+ * status 1 if a check fails.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class PartitionedSearchStress {
+
+    private static final int AVERAGE_DEGREE = 16;
+    private static final long SEED = 221;
+    // full searches checked per shard count
+    private static final int FULL_SEARCHES = 8;
+
+    public static void main(String[] args) {
+        int maxShards = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int vertexCount = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+        GraphGenerators.EdgeList edges = GraphGenerators.generate(GraphGenerators.RMAT, vertexCount, AVERAGE_DEGREE,
+                SEED);
+        CompressedSparseRowGraph graph = (CompressedSparseRowGraph) GraphGenerators.build(GraphGenerators.CSR, edges);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+            for (int shards = 1; shards <= maxShards; shards *= 2) {
+                PartitionedGraph partitioned = new PartitionedGraph(graph, shards);
+                PartitionedSearch search = new PartitionedSearch(partitioned, executor);
+
+                Random random = new Random(SEED);
+                long startTime = System.nanoTime();
+                for (int query = 0; query < queries; query++) {
+                    int a = random.nextInt(vertexCount);
+                    int b = random.nextInt(vertexCount);
+                    int expected = Algorithms.shortestDistance(graph, a, b);
+                    int found = search.search(graph.vertexAt(a), graph.vertexAt(b)).getDistance();
+                    if (found != expected) {
+                        System.out.println("FAILED: " + shards + " shards, distance from " + graph.vertexAt(a)
+                                + " to " + graph.vertexAt(b) + " is " + expected + ", found " + found);
+                        System.exit(1);
+                    }
+                }
+                long queryNanos = System.nanoTime() - startTime;
+
+                PartitionedSearch.Result result = null;
+                for (int k = 0; k < FULL_SEARCHES; k++) {
+                    int source = k == 0 ? 0 : random.nextInt(vertexCount);
+                    String failure = checkFullSearch(graph, shards, source, search.search(graph.vertexAt(source), null));
+                    if (failure != null) {
+                        System.out.println("FAILED: " + shards + " shards, full search from " + graph.vertexAt(source)
+                                + ": " + failure);
+                        System.exit(1);
+                    }
+                    if (k == 0) {
+                        result = search.search(graph.vertexAt(source), null);
+                    }
+                }
+
+                System.out.println("OK: " + shards + " shards, " + partitioned.ghostEdgeCount() + " cross-shard edges, "
+                        + queries + " queries in " + queryNanos / 1000000 + " ms. Full search from "
+                        + graph.vertexAt(0) + ": " + result);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Compare a full partitioned search from source with a breadth first
+     * search of the whole graph.
+     *
+     * @return what does not match, or null if everything does
+     */
+    private static String checkFullSearch(CompressedSparseRowGraph graph, int shards, int source,
+            PartitionedSearch.Result result) {
+        int vertexCount = graph.vertexCount();
+        int[] distances = distancesFrom(graph, source);
+        int[] owners = new int[vertexCount];
+        long reached = 0;
+        int maxDistance = 0;
+        for (int id = 0; id < vertexCount; id++) {
+            owners[id] = PartitionedGraph.shardOf(graph.vertexAt(id), shards);
+            if (distances[id] >= 0) {
+                reached++;
+                maxDistance = Math.max(maxDistance, distances[id]);
+            }
+        }
+
+        // every level down to the farthest vertex is expanded, and finds
+        // nothing new on the last one
+        if (result.getVerticesReached() != reached || result.getLevelCount() != maxDistance + 1) {
+            return "reached " + result.getVerticesReached() + " vertices in " + result.getLevelCount()
+                    + " levels, expected " + reached + " in " + (maxDistance + 1);
+        }
+
+        // the level at which each shard sends each vertex of another shard:
+        // the distance of its nearest in-neighbor in that shard
+        long[] expectedIds = new long[maxDistance + 1];
+        int[] sendLevels = new int[shards];
+        int[] neighbors = new int[vertexCount];
+        for (int id = 0; id < vertexCount; id++) {
+            Arrays.fill(sendLevels, Integer.MAX_VALUE);
+            int degree = graph.getUpstreamIds(id, neighbors);
+            for (int k = 0; k < degree; k++) {
+                int neighbor = neighbors[k];
+                if (distances[neighbor] >= 0 && owners[neighbor] != owners[id]) {
+                    sendLevels[owners[neighbor]] = Math.min(sendLevels[owners[neighbor]], distances[neighbor]);
+                }
+            }
+            for (int level : sendLevels) {
+                if (level != Integer.MAX_VALUE) {
+                    expectedIds[level]++;
+                }
+            }
+        }
+
+        for (int level = 0; level <= maxDistance; level++) {
+            if (result.getIdsSent(level) != expectedIds[level]) {
+                return "sent " + result.getIdsSent(level) + " ids at level " + level + ", expected "
+                        + expectedIds[level] + " (" + Arrays.toString(expectedIds) + " per level)";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the distance from source to every vertex id of graph, or -1
+     *         where there is no path
+     */
+    private static int[] distancesFrom(CompressedSparseRowGraph graph, int source) {
+        int[] distances = new int[graph.vertexCount()];
+        Arrays.fill(distances, -1);
+        int[] queue = new int[graph.vertexCount()];
+        int[] neighbors = new int[graph.vertexCount()];
+        int head = 0;
+        int tail = 0;
+
+        distances[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int id = queue[head++];
+            int degree = graph.getDownstreamIds(id, neighbors);
+            for (int k = 0; k < degree; k++) {
+                if (distances[neighbors[k]] < 0) {
+                    distances[neighbors[k]] = distances[id] + 1;
+                    queue[tail++] = neighbors[k];
+                }
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,133 @@
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import ca.ubc.ece.cpen221.mp3.graph.Algorithms;
+import ca.ubc.ece.cpen221.mp3.graph.IndexedGraph;
+import ca.ubc.ece.cpen221.mp3.graph.Intersections;
+import ca.ubc.ece.cpen221.mp3.graph.NoPathException;
+/**
+ * Check that the id based searches allocate nothing in steady state, once
+ * the thread's search space has grown to the graph: after a warm up, the
+ * bytes the thread allocates per query must stay below a small limit that
+ * does not depend on the size of the graph. The limit leaves room for the
+ * metrics event each search records, in case the JIT does not remove it.
+ *
+ * Needs a JVM whose ThreadMXBean counts allocated bytes, such as HotSpot.
+ *
+ * Usage: ScratchAllocationCheck [vertices [queries]]. Exits with status 1 if
+ * a check fails.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class ScratchAllocationCheck {
+
+    private static final int AVERAGE_DEGREE = 16;
+    private static final long SEED = 221;
+    // most bytes one query may allocate on average
+    private static final long BYTES_PER_QUERY_LIMIT = 256;
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    /**
+     * One kind of query, and the pairs of vertex ids to run it on.
+     */
+    private static abstract class Query {
+        final String name;
+        final int[] pairs;
+
+        Query(String name, int[] pairs) {
+            this.name = name;
+            this.pairs = pairs;
+        }
+
+        abstract int run(int a, int b);
+    }
+
+    public static void main(String[] args) {
+        int vertexCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        final IndexedGraph graph = (IndexedGraph) GraphGenerators.build(GraphGenerators.CSR,
+                GraphGenerators.generate(GraphGenerators.RMAT, vertexCount, AVERAGE_DEGREE, SEED));
+        final int[] common = new int[graph.vertexCount()];
+
+        // random pairs, and a pair with a path in place of each one without,
+        // for the queries that throw an exception when there is no path
+        final int[] pairs = new int[2 * queries];
+        final int[] connectedPairs = new int[2 * queries];
+        Random random = new Random(SEED);
+        int[] connected = { 0, 0 };
+        for (int k = 0; k < pairs.length; k += 2) {
+            pairs[k] = random.nextInt(graph.vertexCount());
+            pairs[k + 1] = random.nextInt(graph.vertexCount());
+            if (Algorithms.shortestDistance(graph, pairs[k], pairs[k + 1]) >= 0) {
+                connected[0] = pairs[k];
+                connected[1] = pairs[k + 1];
+            }
+            connectedPairs[k] = connected[0];
+            connectedPairs[k + 1] = connected[1];
+        }
+
+        Query[] checks = { new Query("shortestDistance", pairs) {
+            @Override
+            int run(int a, int b) {
+                return Algorithms.shortestDistance(graph, a, b);
+            }
+        }, new Query("shortestDistanceDirectionOptimizing", connectedPairs) {
+            @Override
+            int run(int a, int b) {
+                try {
+                    return Algorithms.shortestDistance(graph, graph.vertexAt(a), graph.vertexAt(b), true);
+                } catch (NoPathException e) {
+                    return -1;
+                }
+            }
+        }, new Query("commonDownstreamIds", pairs) {
+            @Override
+            int run(int a, int b) {
+                return Intersections.commonDownstreamIds(graph, a, b, common);
+            }
+        }, new Query("commonUpstreamIds", pairs) {
+            @Override
+            int run(int a, int b) {
+                return Intersections.commonUpstreamIds(graph, a, b, common);
+            }
+        } };
+
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("FAILED: this JVM does not count allocated bytes per thread");
+            System.exit(1);
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        long threadId = Thread.currentThread().getId();
+        boolean failed = false;
+        for (Query check : checks) {
+            // the first round grows the search space and warms up the JIT,
+            // the second is measured on the same pairs
+            long sum = 0;
+            for (int round = 0; round < 2; round++) {
+                long before = THREADS.getThreadAllocatedBytes(threadId);
+                for (int k = 0; k < check.pairs.length; k += 2) {
+                    sum += check.run(check.pairs[k], check.pairs[k + 1]);
+                }
+                long bytesPerQuery = (THREADS.getThreadAllocatedBytes(threadId) - before) / queries;
+
+                if (round == 1) {
+                    boolean ok = bytesPerQuery <= BYTES_PER_QUERY_LIMIT;
+                    failed |= !ok;
+                    System.out.println((ok ? "OK: " : "FAILED: ") + check.name + " allocates " + bytesPerQuery
+                            + " bytes per query (limit " + BYTES_PER_QUERY_LIMIT + ", checksum " + sum + ")");
+                }
+            }
+        }
+
+        Algorithms.releaseSearchSpace();
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
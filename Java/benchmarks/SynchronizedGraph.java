@@ -0,0 +1,48 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * A graph that makes another one thread-safe with a single lock, the simplest
+ * way to share a graph. Neighbor lists are copied while the lock is held, so
+ * they stay stable like the views of ConcurrentAdjacencyListGraph. Used as
+ * the baseline in the concurrent graph benchmarks.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class SynchronizedGraph implements Graph {
+
+    private final Graph graph;
+
+    public SynchronizedGraph(Graph graph) {
+        this.graph = graph;
+    }
+
+    public synchronized void addVertex(Vertex v) {
+        graph.addVertex(v);
+    }
+
+    public synchronized void addEdge(Vertex v1, Vertex v2) {
+        graph.addEdge(v1, v2);
+    }
+
+    public synchronized boolean edgeExists(Vertex v1, Vertex v2) {
+        return graph.edgeExists(v1, v2);
+    }
+
+    public synchronized List<Vertex> getDownstreamNeighbors(Vertex v) {
+        return Collections.unmodifiableList(new ArrayList<Vertex>(graph.getDownstreamNeighbors(v)));
+    }
+
+    public synchronized List<Vertex> getUpstreamNeighbors(Vertex v) {
+        return Collections.unmodifiableList(new ArrayList<Vertex>(graph.getUpstreamNeighbors(v)));
+    }
+
+    public synchronized List<Vertex> getVertices() {
+        return graph.getVertices();
+    }
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.ubc.ece.cpen221.mp3.graph.Algorithms;
+import ca.ubc.ece.cpen221.mp3.staff.Graph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * Benchmarks of the full breadth first and depth first traversals. These
+ * traverse from every vertex and return O(V^2) vertices in total, so they run
+ * on smaller graphs than the other benchmarks.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TraversalBenchmarks {
+
+    private static final int AVERAGE_DEGREE = 8;
+    private static final long SEED = 221;
+
+    @State(Scope.Benchmark)
+    public static class TraversalState {
+        @Param({ GraphGenerators.ERDOS_RENYI, GraphGenerators.RMAT, GraphGenerators.TWITTER })
+        public String generator;
+
+        @Param({ "250", "1000" })
+        public int vertices;
+
+        @Param({ GraphGenerators.LIST, GraphGenerators.MATRIX, GraphGenerators.CSR })
+        public String implementation;
+
+        public Graph graph;
+        public ExecutorService executor;
+
+        @Setup
+        public void setUp() {
+            graph = GraphGenerators.build(implementation,
+                    GraphGenerators.generate(generator, vertices, AVERAGE_DEGREE, SEED));
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+
+        @TearDown
+        public void tearDown() {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Set<List<Vertex>> breadthFirstSearch(TraversalState state) {
+        return Algorithms.breadthFirstSearch(state.graph);
+    }
+
+    @Benchmark
+    public Set<List<Vertex>> breadthFirstSearchDirectionOptimizing(TraversalState state) {
+        return Algorithms.breadthFirstSearch(state.graph, true);
+    }
+
+    @Benchmark
+    public Set<List<Vertex>> breadthFirstSearchParallel(TraversalState state) {
+        return Algorithms.breadthFirstSearch(state.graph, state.executor);
+    }
+
+    @Benchmark
+    public Set<List<Vertex>> depthFirstSearch(TraversalState state) {
+        return Algorithms.depthFirstSearch(state.graph);
+    }
+
+    @Benchmark
+    public Set<List<Vertex>> depthFirstSearchParallel(TraversalState state) {
+        return Algorithms.depthFirstSearch(state.graph, state.executor);
+    }
+}
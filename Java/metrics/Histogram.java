@@ -0,0 +1,128 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative long values with a fixed relative precision,
+ * in the style of HdrHistogram. Values below 128 have a bucket each; above
+ * that, every power of two is split into 64 buckets, so a value is known to
+ * within 1/64 (about 1.6%) of itself. The whole long range fits in 3712
+ * buckets, and recording a value is a few shifts and one atomic increment.
+ *
+ * All methods may be called from several threads at once. Reads taken while
+ * other threads record may be slightly out of date.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class Histogram {
+
+    // values below SUB_BUCKETS are counted exactly
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one value. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the values recorded
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return the largest value recorded, or 0 if there are none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the values recorded, or 0 if there are none
+     */
+    public double getMean() {
+        long currentCount = getCount();
+        return currentCount == 0 ? 0 : (double) getSum() / currentCount;
+    }
+
+    /**
+     * @param percentile
+     *            - between 0 and 100
+     * @return the smallest value v such that at least percentile percent of
+     *         the values recorded are at most v, to within the histogram's
+     *         precision. Returns 0 if there are no values.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long currentCount = getCount();
+        if (currentCount == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * currentCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(highestValue(bucket), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return the index of the bucket that value is counted in
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // keep the top SUB_BUCKET_BITS - 1 bits below the highest one bit
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) ((value >>> shift) - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * @return the largest value counted in the given bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,80 @@
+package metrics;
+
+import java.io.PrintStream;
+
+/**
+ * A leveled logger that writes to standard error. It is off unless a level is
+ * set with -Dlog.level=ERROR, WARN, INFO or DEBUG, and a message below the
+ * level is dropped before it is formatted.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class Log {
+
+    public enum Level {
+        OFF, ERROR, WARN, INFO, DEBUG
+    }
+
+    private static volatile Level level = parseLevel(System.getProperty("log.level"));
+    private static final PrintStream OUT = System.err;
+
+    private Log() {
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * @return true if messages at the given level are written
+     */
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel != Level.OFF && messageLevel.compareTo(level) <= 0;
+    }
+
+    public static void error(String format, Object... args) {
+        log(Level.ERROR, format, args);
+    }
+
+    public static void warn(String format, Object... args) {
+        log(Level.WARN, format, args);
+    }
+
+    public static void info(String format, Object... args) {
+        log(Level.INFO, format, args);
+    }
+
+    public static void debug(String format, Object... args) {
+        log(Level.DEBUG, format, args);
+    }
+
+    /**
+     * Write a message if its level is enabled.
+     *
+     * @param format
+     *            - a String.format format, or the message itself if there are
+     *            no args
+     */
+    public static void log(Level messageLevel, String format, Object... args) {
+        if (!isEnabled(messageLevel)) {
+            return;
+        }
+        String message = args.length == 0 ? format : String.format(format, args);
+        OUT.println("[" + messageLevel + "] " + message);
+    }
+
+    private static Level parseLevel(String name) {
+        if (name == null) {
+            return Level.OFF;
+        }
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.OFF;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The named counters, gauges, histograms, phase timers and traversal
+ * statistics of the program, and the summary report of all of them.
+ *
+ * Asking for the same name twice gives the same object, so classes keep what
+ * they record into in static final fields and pay no lookup per event.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class Metrics {
+
+    // kept sorted by name for the report
+    private static final ConcurrentMap<String, LongAdder> counters = new ConcurrentSkipListMap<String, LongAdder>();
+    private static final ConcurrentMap<String, AtomicLong> gauges = new ConcurrentSkipListMap<String, AtomicLong>();
+    private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentSkipListMap<String, Histogram>();
+    private static final ConcurrentMap<String, PhaseTimer> timers = new ConcurrentSkipListMap<String, PhaseTimer>();
+    private static final ConcurrentMap<String, TraversalStats> traversals = new ConcurrentSkipListMap<String, TraversalStats>();
+
+    private static final AtomicBoolean reportAtExit = new AtomicBoolean();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the counter with the given name, made the first time it is
+     *         asked for
+     */
+    public static LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @return the gauge with the given name, made the first time it is asked
+     *         for. A gauge holds the latest value of something, rather than a
+     *         running total.
+     */
+    public static AtomicLong gauge(String name) {
+        AtomicLong gauge = gauges.get(name);
+        if (gauge == null) {
+            AtomicLong created = new AtomicLong();
+            gauge = gauges.putIfAbsent(name, created);
+            if (gauge == null) {
+                gauge = created;
+            }
+        }
+        return gauge;
+    }
+
+    /**
+     * @return the histogram with the given name, made the first time it is
+     *         asked for
+     */
+    public static Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the phase timer with the given name, made the first time it is
+     *         asked for
+     */
+    public static PhaseTimer timer(String name) {
+        PhaseTimer timer = timers.get(name);
+        if (timer == null) {
+            PhaseTimer created = new PhaseTimer(name);
+            timer = timers.putIfAbsent(name, created);
+            if (timer == null) {
+                timer = created;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * @return the statistics of the traversal algorithm with the given name,
+     *         made the first time they are asked for
+     */
+    public static TraversalStats traversal(String algorithm) {
+        TraversalStats stats = traversals.get(algorithm);
+        if (stats == null) {
+            TraversalStats created = new TraversalStats(algorithm);
+            stats = traversals.putIfAbsent(algorithm, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Print the summary report when the program exits, unless
+     * -Dmetrics.report=false is set. Calling this more than once has no
+     * further effect.
+     */
+    public static void reportAtExit() {
+        if (!Boolean.parseBoolean(System.getProperty("metrics.report", "true"))) {
+            return;
+        }
+        if (reportAtExit.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    report(System.out);
+                }
+            }, "metrics-report"));
+        }
+    }
+
+    /**
+     * Print every counter and gauge, and every histogram, timer and traversal
+     * that has recorded something. Times are in microseconds.
+     */
+    public static void report(PrintStream out) {
+        StringBuilder report = new StringBuilder();
+        String newLine = System.lineSeparator();
+
+        report.append("Metrics summary").append(newLine);
+
+        report.append(String.format("%-32s %14s%n", "counter", "value"));
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            report.append(String.format("%-32s %14d%n", counter.getKey(), counter.getValue().sum()));
+        }
+        for (Map.Entry<String, AtomicLong> gauge : gauges.entrySet()) {
+            report.append(String.format("%-32s %14d%n", gauge.getKey(), gauge.getValue().get()));
+        }
+
+        report.append(newLine);
+        report.append(String.format("%-32s %9s %14s %14s %14s %14s%n", "histogram", "count", "mean", "p50", "p99",
+                "max"));
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format("%-32s %9d %14.1f %14d %14d %14d%n", entry.getKey(), histogram.getCount(),
+                    histogram.getMean(), histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                    histogram.getMax()));
+        }
+
+        report.append(newLine);
+        report.append(String.format("%-32s %9s %12s %14s %10s %10s %10s %10s %10s%n", "phase (us)", "runs", "items",
+                "items/s", "mean", "p50", "p99", "p99.9", "max"));
+        for (PhaseTimer timer : timers.values()) {
+            Histogram latency = timer.getLatency();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format("%-32s %9d %12d %14.0f %10.1f %10.1f %10.1f %10.1f %10.1f%n", timer.getName(),
+                    latency.getCount(), timer.getItems(), timer.getItemsPerSecond(), latency.getMean() / 1000,
+                    micros(latency, 50), micros(latency, 99), micros(latency, 99.9), latency.getMax() / 1000.0));
+        }
+
+        report.append(newLine);
+        report.append(String.format("%-32s %9s %10s %10s %12s %12s %12s %14s%n", "traversal", "runs", "mean us",
+                "p99 us", "avg vertices", "p99 vertices", "avg edges", "total edges"));
+        for (TraversalStats stats : traversals.values()) {
+            Histogram latency = stats.getLatency();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format("%-32s %9d %10.1f %10.1f %12.1f %12d %12.1f %14d%n", stats.getAlgorithm(),
+                    latency.getCount(), latency.getMean() / 1000, micros(latency, 99),
+                    stats.getVerticesVisited().getMean(), stats.getVerticesVisited().getValueAtPercentile(99),
+                    stats.getEdgesVisited().getMean(), stats.getEdgesVisited().getSum()));
+        }
+
+        out.print(report);
+        out.flush();
+    }
+
+    private static double micros(Histogram latency, double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,30 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one run of a timed phase, such as loading the
+ * graph, answering a query or writing a result. Returned by
+ * PhaseTimer.start and handed back to PhaseTimer.stop.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@Name("twitterAnalysis.Phase")
+@Label("Phase")
+@Category("Twitter Analysis")
+@StackTrace(false)
+public class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Items")
+    long items;
+
+    // when the phase started, for the histograms; not recorded
+    transient long startNanos;
+}
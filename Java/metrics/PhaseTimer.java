@@ -0,0 +1,95 @@
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times every run of one phase into a latency histogram and a flight
+ * recorder event, and counts the items the runs handle.
+ *
+ * Use as
+ *
+ * PhaseEvent event = timer.start(); ... timer.stop(event, items);
+ *
+ * All methods may be called from several threads at once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class PhaseTimer {
+
+    private final String name;
+    // nanoseconds per run
+    private final Histogram latency = new Histogram();
+    private final LongAdder items = new LongAdder();
+
+    PhaseTimer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Start one run of the phase.
+     *
+     * @return the event to pass to stop when the run is over
+     */
+    public PhaseEvent start() {
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    /**
+     * End a run of the phase that handled one item.
+     */
+    public void stop(PhaseEvent event) {
+        stop(event, 1);
+    }
+
+    /**
+     * End a run of the phase.
+     *
+     * @param event
+     *            - what start returned for this run
+     * @param runItems
+     *            - the number of items, such as edges or queries, the run
+     *            handled
+     */
+    public void stop(PhaseEvent event, long runItems) {
+        latency.record(System.nanoTime() - event.startNanos);
+        items.add(runItems);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = name;
+            event.items = runItems;
+            event.commit();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the histogram of run times in nanoseconds
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the number of items all runs handled
+     */
+    public long getItems() {
+        return items.sum();
+    }
+
+    /**
+     * @return the items handled per second of run time, or 0 if nothing has
+     *         been timed
+     */
+    public double getItemsPerSecond() {
+        long nanos = latency.getSum();
+        return nanos == 0 ? 0 : getItems() * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+}
@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one graph traversal. Returned by
+ * TraversalStats.start and handed back to TraversalStats.stop.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+@Name("twitterAnalysis.Traversal")
+@Label("Traversal")
+@Category("Twitter Analysis")
+@StackTrace(false)
+public class TraversalEvent extends Event {
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Vertices Visited")
+    long verticesVisited;
+
+    @Label("Edges Visited")
+    long edgesVisited;
+
+    // when the traversal started, for the histograms; not recorded
+    transient long startNanos;
+}
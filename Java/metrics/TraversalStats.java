@@ -0,0 +1,82 @@
+package metrics;
+
+/**
+ * Records how much of the graph every run of one traversal algorithm visits,
+ * into histograms and a flight recorder event.
+ *
+ * Use as
+ *
+ * TraversalEvent event = stats.start(); ... stats.stop(event, vertices,
+ * edges);
+ *
+ * All methods may be called from several threads at once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class TraversalStats {
+
+    private final String algorithm;
+    // nanoseconds per traversal
+    private final Histogram latency = new Histogram();
+    private final Histogram verticesVisited = new Histogram();
+    private final Histogram edgesVisited = new Histogram();
+
+    TraversalStats(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Start one traversal.
+     *
+     * @return the event to pass to stop when the traversal is over
+     */
+    public TraversalEvent start() {
+        TraversalEvent event = new TraversalEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    /**
+     * End a traversal.
+     *
+     * @param event
+     *            - what start returned for this traversal
+     * @param vertices
+     *            - the number of vertices the traversal visited
+     * @param edges
+     *            - the number of edges the traversal followed or checked
+     */
+    public void stop(TraversalEvent event, long vertices, long edges) {
+        latency.record(System.nanoTime() - event.startNanos);
+        verticesVisited.record(vertices);
+        edgesVisited.record(edges);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.algorithm = algorithm;
+            event.verticesVisited = vertices;
+            event.edgesVisited = edges;
+            event.commit();
+        }
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the histogram of traversal times in nanoseconds
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public Histogram getVerticesVisited() {
+        return verticesVisited;
+    }
+
+    public Histogram getEdgesVisited() {
+        return edgesVisited;
+    }
+}
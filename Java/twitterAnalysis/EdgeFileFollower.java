@@ -0,0 +1,227 @@
+package twitterAnalysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ca.ubc.ece.cpen221.mp3.graph.IncrementalGraph;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Histogram;
+import metrics.Log;
+import metrics.Metrics;
+import metrics.PhaseEvent;
+import metrics.PhaseTimer;
+/**
+ * Follows an append-only edge file, like tail -f, and adds every new
+ * "a -> b" line to an IncrementalGraph.
+ *
+ * Every poll reads what was appended since the last one, up to
+ * MAX_BATCH_BYTES, adds the complete lines as one batch and publishes it. A
+ * line that is still being written is left for a later poll. Lines that are
+ * not in the "a -> b" format are logged and skipped. If the file gets
+ * shorter, it is taken to have been replaced and is read again from the
+ * start; edges already in the graph are ignored.
+ *
+ * Ingest lag, the time from when a poll first sees new bytes to when they are
+ * published, is recorded in the ingest.lagMillis histogram. The
+ * ingest.bytesBehind gauge holds how much of the file is not yet published.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class EdgeFileFollower implements Runnable {
+
+    private static final String SEPARATOR = " -> ";
+    // most bytes read and published as one batch
+    private static final int MAX_BATCH_BYTES = 4 << 20;
+
+    private static final PhaseTimer INGEST_BATCH = Metrics.timer("ingest.batch");
+    private static final Histogram LAG_MILLIS = Metrics.histogram("ingest.lagMillis");
+    private static final AtomicLong BYTES_BEHIND = Metrics.gauge("ingest.bytesBehind");
+
+    private final IncrementalGraph graph;
+    private final File file;
+    private final long pollMillis;
+
+    // everything before offset has been published
+    private volatile long offset;
+    // when a poll first saw bytes that are not yet published, or 0
+    private long firstSeenNanos;
+    private volatile long edgesApplied;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param graph
+     *            - the graph to add the edges to
+     * @param file
+     *            - the edge file to follow
+     * @param offset
+     *            - where in the file to start reading, for example the size
+     *            of the file when it was loaded
+     * @param pollMillis
+     *            - how long to wait between polls when there is nothing new
+     */
+    EdgeFileFollower(IncrementalGraph graph, File file, long offset, long pollMillis) {
+        this.graph = graph;
+        this.file = file;
+        this.offset = offset;
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * Start following the file on a daemon thread.
+     */
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "edge-file-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop following the file, and wait for the current poll to finish.
+     */
+    synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        thread.join();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                // poll again straight away while there is a backlog
+                if (poll() == 0) {
+                    Thread.sleep(pollMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                Log.error("Could not read %s: %s", file, e.getMessage());
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read and publish one batch of what was appended since the last poll.
+     *
+     * @return the number of bytes published
+     */
+    int poll() throws IOException {
+        long size = file.length();
+        if (size < offset) {
+            Log.warn("%s got shorter; reading it again from the start.", file);
+            offset = 0;
+        }
+        BYTES_BEHIND.set(size - offset);
+        if (size == offset) {
+            return 0;
+        }
+
+        if (firstSeenNanos == 0) {
+            firstSeenNanos = System.nanoTime();
+        }
+
+        byte[] bytes = new byte[(int) Math.min(size - offset, MAX_BATCH_BYTES)];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            randomAccessFile.seek(offset);
+            randomAccessFile.readFully(bytes);
+        }
+
+        // only complete lines are read
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end == 0) {
+            return 0;
+        }
+
+        PhaseEvent event = INGEST_BATCH.start();
+        long edges = addLines(new String(bytes, 0, end, StandardCharsets.UTF_8));
+        graph.publish();
+        INGEST_BATCH.stop(event, edges);
+
+        offset += end;
+        edgesApplied += edges;
+        BYTES_BEHIND.set(size - offset);
+
+        LAG_MILLIS.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstSeenNanos));
+        if (offset == size) {
+            firstSeenNanos = 0;
+        }
+
+        return end;
+    }
+
+    /**
+     * @return where in the file the next poll starts reading
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the number of edge lines published so far, including repeated
+     *         ones
+     */
+    long getEdgesApplied() {
+        return edgesApplied;
+    }
+
+    /**
+     * Add every "a -> b" line of text to the graph's next batch.
+     *
+     * @return the number of edges added
+     */
+    private long addLines(String text) {
+        long edges = 0;
+        int lineStart = 0;
+
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            String line = text.substring(lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            int separator = line.indexOf(SEPARATOR);
+            if (separator < 0) {
+                Log.warn("Skipping line not of the form \"a -> b\": %s", line);
+                continue;
+            }
+
+            Vertex a = new Vertex(line.substring(0, separator));
+            Vertex b = new Vertex(line.substring(separator + SEPARATOR.length()));
+            graph.addVertex(a);
+            graph.addVertex(b);
+            graph.addEdge(a, b);
+            edges++;
+        }
+
+        return edges;
+    }
+}
@@ -0,0 +1,124 @@
+package twitterAnalysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Answers queries on a pool of worker threads and writes the results in the
+ * order of the queries.
+ *
+ * The queries come split into units of work, such as all the numRetweets
+ * queries from one source, and each unit is answered by one worker. Units are
+ * handed to the workers in the order of their first query, and at most
+ * queueDepth units are handed out ahead of the one whose results are being
+ * written. Every result is written as soon as it and all the results before
+ * it are ready, so the output is the same as answering the queries one after
+ * another.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class OrderedQueryRunner {
+
+    private final int workers;
+    private final int queueDepth;
+
+    /**
+     * @param workers
+     *            - the number of worker threads
+     * @param queueDepth
+     *            - the most units of work that may be in progress or waiting
+     *            to be written at once
+     */
+    OrderedQueryRunner(int workers, int queueDepth) {
+        if (workers < 1 || queueDepth < 1) {
+            throw new IllegalArgumentException("workers and queueDepth must be at least 1");
+        }
+        this.workers = workers;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Answer every query and write the results in order.
+     *
+     * @requires every query is in exactly one unit, and the units are in the
+     *           order of their first query
+     *
+     * @param queries
+     *            - the queries to answer, in output order
+     * @param units
+     *            - the queries split into units of work
+     * @param answerer
+     *            - gives the result text of every query of one unit. Called
+     *            from several threads at once.
+     * @param queryOutputWriter
+     *            - where to write the results. Only used by the calling
+     *            thread.
+     */
+    void run(List<Query> queries, List<List<Query>> units,
+            final Function<List<Query>, Map<Query, String>> answerer, BufferedWriter queryOutputWriter)
+            throws IOException {
+        // the unit of every query, and the last query of every unit, by
+        // position in queries
+        Map<Query, Integer> unitOf = new HashMap<Query, Integer>();
+        for (int unit = 0; unit < units.size(); unit++) {
+            for (Query query : units.get(unit)) {
+                unitOf.put(query, unit);
+            }
+        }
+        int[] lastQuery = new int[units.size()];
+        for (int position = 0; position < queries.size(); position++) {
+            lastQuery[unitOf.get(queries.get(position))] = position;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        // the results of every unit handed out and not yet fully written
+        List<Future<Map<Query, String>>> results = new ArrayList<Future<Map<Query, String>>>(units.size());
+
+        try {
+            for (int position = 0; position < queries.size(); position++) {
+                Query query = queries.get(position);
+                int unit = unitOf.get(query);
+
+                // keep up to queueDepth units handed out ahead of this one
+                while (results.size() < units.size() && results.size() <= unit + queueDepth - 1) {
+                    final List<Query> next = units.get(results.size());
+                    results.add(executor.submit(new Callable<Map<Query, String>>() {
+                        @Override
+                        public Map<Query, String> call() {
+                            return answerer.apply(next);
+                        }
+                    }));
+                }
+
+                QueryBatch.writeResult(queryOutputWriter, query, await(results.get(unit)).get(query));
+                if (lastQuery[unit] == position) {
+                    // let go of the results of a finished unit
+                    results.set(unit, null);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<Query, String> await(Future<Map<Query, String>> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
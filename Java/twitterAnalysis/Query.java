@@ -0,0 +1,123 @@
+package twitterAnalysis;
+
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * One line of the query input file: a query type and two users. Two queries
+ * are equal if they have the same type and the same users in the same order.
+ *
+ * A topInfluencers query has a ranking measure and a count in place of the
+ * two users, for example "topInfluencers pageRank 10 ?".
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class Query {
+
+    final static String COMMON_INFLUENCERS = "commonInfluencers";
+    final static String NUM_RETWEETS = "numRetweets";
+    final static String TOP_INFLUENCERS = "topInfluencers";
+
+    // the measures a topInfluencers query can rank users by
+    final static String PAGE_RANK = "pageRank";
+    final static String IN_DEGREE = "inDegree";
+    final static String OUT_DEGREE = "outDegree";
+
+    private final String type;
+    private final Vertex userA;
+    private final Vertex userB;
+
+    Query(String type, Vertex userA, Vertex userB) {
+        this.type = type;
+        this.userA = userA;
+        this.userB = userB;
+    }
+
+    /**
+     * Parse one line of the query input file. The format is as follows:
+     * - Column 1: query type
+     * - Column 2: user a
+     * - Column 3: user b
+     * - Column 4: question mark (may or may not be present)
+     *
+     * @param line
+     *            - the line to parse
+     * @return the query on the line, or null if the line is not a valid query
+     *         (it does not end with a question mark, or is a topInfluencers
+     *         query without a known measure and a count of at least 1)
+     */
+    static Query parse(String line) {
+        // Split the line into columns using the split( )
+        // method for Strings.
+        String[] columns = line.split(" ");
+
+        if (columns.length != 4 || !columns[3].equals("?")) {
+            return null;
+        }
+
+        if (columns[0].equals(TOP_INFLUENCERS)) {
+            if (!columns[1].equals(PAGE_RANK) && !columns[1].equals(IN_DEGREE) && !columns[1].equals(OUT_DEGREE)) {
+                return null;
+            }
+            try {
+                if (Integer.parseInt(columns[2]) < 1) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        return new Query(columns[0], new Vertex(columns[1]), new Vertex(columns[2]));
+    }
+
+    String getType() {
+        return type;
+    }
+
+    Vertex getUserA() {
+        return userA;
+    }
+
+    Vertex getUserB() {
+        return userB;
+    }
+
+    /**
+     * @requires this is a topInfluencers query
+     *
+     * @return the measure to rank users by
+     */
+    String getMeasure() {
+        return userA.getLabel();
+    }
+
+    /**
+     * @requires this is a topInfluencers query
+     *
+     * @return the number of users to find
+     */
+    int getCount() {
+        return Integer.parseInt(userB.getLabel());
+    }
+
+    /**
+     * @return the "query: ..." header line written before the result
+     */
+    @Override
+    public String toString() {
+        return "query: " + type + " " + userA.toString() + " " + userB.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Query)) {
+            return false;
+        }
+        Query query = (Query) other;
+        return type.equals(query.type) && userA.equals(query.userA) && userB.equals(query.userB);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * type.hashCode() + userA.hashCode()) + userB.hashCode();
+    }
+}
@@ -0,0 +1,430 @@
+package twitterAnalysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import ca.ubc.ece.cpen221.mp3.graph.Algorithms;
+import ca.ubc.ece.cpen221.mp3.graph.Analytics;
+import ca.ubc.ece.cpen221.mp3.graph.DistanceCache;
+import ca.ubc.ece.cpen221.mp3.graph.IndexedGraph;
+import ca.ubc.ece.cpen221.mp3.graph.ReachabilityIndex;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Metrics;
+import metrics.PhaseEvent;
+import metrics.PhaseTimer;
+/**
+ * A batch of queries that is read in full before any of them is answered.
+ *
+ * Repeated queries are dropped when they are added, so each one is answered
+ * once. The numRetweets queries are grouped by the user the search starts
+ * from, and each group is answered with one breadth first search that stops
+ * as soon as all of the group's targets are found. The results are written in
+ * the order the queries were added, also when the groups and other queries are
+ * answered on several threads.
+ *
+ * A topInfluencers query ranks every user by the query's measure the first
+ * time the measure is asked for; later queries reuse the ranking.
+ *
+ * If the batch is given a ReachabilityIndex, numRetweets queries that it shows
+ * have no path are answered Infinity. straight away, and only the others are
+ * searched for.
+ *
+ * If the batch is given a ResultStore, queries with a stored result are
+ * answered from it without any search, and every new result is stored for
+ * later runs.
+ *
+ * If the batch is given a DistanceCache, each numRetweets group takes the
+ * distances from its source to every user from the cache, searching the whole
+ * graph on a miss. Batches answered one after another on the same graph, as
+ * in follow mode when only the query input changed, then search each source
+ * once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class QueryBatch {
+
+    // time per commonInfluencers and topInfluencers query, per grouped
+    // numRetweets search, and per result written, see Metrics.report
+    private static final PhaseTimer COMMON_INFLUENCERS = Metrics.timer("query." + Query.COMMON_INFLUENCERS);
+    private static final PhaseTimer TOP_INFLUENCERS = Metrics.timer("query." + Query.TOP_INFLUENCERS);
+    private static final PhaseTimer NUM_RETWEETS_GROUP = Metrics.timer("query." + Query.NUM_RETWEETS + "Group");
+    private static final PhaseTimer WRITE_RESULT = Metrics.timer("output.writeResult");
+    // numRetweets queries answered by the reachability index without a search
+    private static final LongAdder UNREACHABLE_BY_INDEX = Metrics.counter("query.numRetweetsUnreachableByIndex");
+
+    private final IndexedGraph graph;
+    // index to rule out numRetweets queries with no path, or null
+    private final ReachabilityIndex reachabilityIndex;
+    // results kept from earlier runs, or null
+    private final ResultStore resultStore;
+    // distances from the sources of earlier batches on the graph, or null
+    private final DistanceCache distanceCache;
+
+    // the score of every user id by each measure asked for so far
+    private final Map<String, double[]> rankings = new HashMap<String, double[]>();
+
+    // the queries to answer, in input order, without repeats
+    private final List<Query> queries = new ArrayList<Query>();
+    private final Set<Query> seen = new HashSet<Query>();
+
+    /**
+     * @param graph
+     *            - the graph to answer the queries on
+     * @param reachabilityIndex
+     *            - an index of graph to rule out numRetweets queries with no
+     *            path before searching, or null
+     * @param resultStore
+     *            - the store to answer queries from and keep new results in,
+     *            or null. Must have been opened for the edge file graph was
+     *            loaded from.
+     * @param distanceCache
+     *            - the cache to take the distances from numRetweets sources
+     *            from, or null. Its current graph must be graph.
+     */
+    QueryBatch(IndexedGraph graph, ReachabilityIndex reachabilityIndex, ResultStore resultStore,
+            DistanceCache distanceCache) {
+        this.graph = graph;
+        this.reachabilityIndex = reachabilityIndex;
+        this.resultStore = resultStore;
+        this.distanceCache = distanceCache;
+    }
+
+    /**
+     * Add a query to the batch. Queries already in the batch and queries of
+     * an unknown type are ignored.
+     */
+    void add(Query query) {
+        if (!query.getType().equals(Query.COMMON_INFLUENCERS) && !query.getType().equals(Query.NUM_RETWEETS)
+                && !query.getType().equals(Query.TOP_INFLUENCERS)) {
+            return;
+        }
+        if (seen.add(query)) {
+            queries.add(query);
+        }
+    }
+
+    /**
+     * @return the queries in the batch, in the order they were added
+     */
+    List<Query> getQueries() {
+        return queries;
+    }
+
+    /**
+     * Answer every query in the batch.
+     *
+     * @return the text to write between <result> and </result> for every
+     *         query
+     */
+    Map<Query, String> answer() {
+        Map<Query, String> results = new HashMap<Query, String>();
+        for (List<Query> unit : units()) {
+            results.putAll(answer(unit));
+        }
+        return results;
+    }
+
+    /**
+     * Answer every query and write the results in input order.
+     */
+    void write(BufferedWriter queryOutputWriter) throws IOException {
+        Map<Query, String> results = answer();
+
+        for (Query query : queries) {
+            writeResult(queryOutputWriter, query, results.get(query));
+        }
+    }
+
+    /**
+     * Answer every query on a pool of worker threads and write the results in
+     * input order. Each worker answers a whole unit of work at a time, so the
+     * numRetweets queries from one source still share one search. The output
+     * is the same as write(queryOutputWriter).
+     *
+     * @param workers
+     *            - the number of worker threads
+     * @param queueDepth
+     *            - the most units of work that may be in progress or waiting
+     *            to be written at once
+     */
+    void write(BufferedWriter queryOutputWriter, int workers, int queueDepth) throws IOException {
+        new OrderedQueryRunner(workers, queueDepth).run(queries, units(),
+                new Function<List<Query>, Map<Query, String>>() {
+                    @Override
+                    public Map<Query, String> apply(List<Query> unit) {
+                        return answer(unit);
+                    }
+                }, queryOutputWriter);
+    }
+
+    /**
+     * Split the queries into units of work, in the order of their first
+     * query: the numRetweets queries from each user, and every other query on
+     * its own.
+     */
+    private List<List<Query>> units() {
+        List<List<Query>> units = new ArrayList<List<Query>>();
+
+        // numRetweets a b is the distance from b to a, so group by b
+        Map<Vertex, List<Query>> retweetGroups = new HashMap<Vertex, List<Query>>();
+
+        for (Query query : queries) {
+            if (!query.getType().equals(Query.NUM_RETWEETS)) {
+                units.add(Collections.singletonList(query));
+                continue;
+            }
+            List<Query> group = retweetGroups.get(query.getUserB());
+            if (group == null) {
+                group = new ArrayList<Query>();
+                retweetGroups.put(query.getUserB(), group);
+                units.add(group);
+            }
+            group.add(query);
+        }
+        return units;
+    }
+
+    /**
+     * Answer one unit of work from units(). Safe to call from several threads
+     * at once.
+     *
+     * @return the text to write between <result> and </result> for every
+     *         query of the unit
+     */
+    private Map<Query, String> answer(List<Query> unit) {
+        Map<Query, String> results = new HashMap<Query, String>();
+        if (!unit.get(0).getType().equals(Query.NUM_RETWEETS)) {
+            Query query = unit.get(0);
+            String stored = storedResult(query);
+            results.put(query, stored != null ? stored : compute(query));
+            return results;
+        }
+
+        PhaseEvent event = NUM_RETWEETS_GROUP.start();
+
+        List<Query> searched = new ArrayList<Query>();
+        List<Vertex> targets = new ArrayList<Vertex>();
+        for (Query query : unit) {
+            String stored = storedResult(query);
+            if (stored != null) {
+                results.put(query, stored);
+            } else {
+                searched.add(query);
+                if (mayHavePath(query)) {
+                    targets.add(query.getUserA());
+                }
+            }
+        }
+
+        // one search answers the whole group, and none is needed if no
+        // target can be reached
+        Map<Vertex, Integer> distances = new HashMap<Vertex, Integer>();
+        if (!targets.isEmpty()) {
+            distances = distances(unit.get(0).getUserB(), targets);
+        }
+
+        for (Query query : searched) {
+            Integer distance = distances.get(query.getUserA());
+            String result = numRetweets(distance);
+            store(query, result);
+            results.put(query, result);
+        }
+        NUM_RETWEETS_GROUP.stop(event, unit.size());
+        return results;
+    }
+
+    /**
+     * @return a map from every target that can be reached from source to its
+     *         distance from source, taken from the distance cache if there is
+     *         one that can hold the distances
+     */
+    private Map<Vertex, Integer> distances(Vertex source, List<Vertex> targets) {
+        if (distanceCache == null || !distanceCache.canCache()) {
+            return Algorithms.shortestDistances(graph, source, targets);
+        }
+
+        Map<Vertex, Integer> distances = new HashMap<Vertex, Integer>();
+        int from = graph.indexOf(source);
+        if (from < 0) {
+            return distances;
+        }
+        int[] sourceDistances = distanceCache.distancesFrom(from);
+        for (Vertex target : targets) {
+            int to = graph.indexOf(target);
+            if (to >= 0 && sourceDistances[to] >= 0) {
+                distances.put(target, sourceDistances[to]);
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Answer one commonInfluencers or topInfluencers query on the graph, and
+     * store the result.
+     *
+     * @return the text to write between <result> and </result>
+     */
+    private String compute(Query query) {
+        String result = search(query);
+        store(query, result);
+        return result;
+    }
+
+    /**
+     * Answer one commonInfluencers or topInfluencers query on the graph.
+     *
+     * @return the text to write between <result> and </result>
+     */
+    private String search(Query query) {
+        if (query.getType().equals(Query.COMMON_INFLUENCERS)) {
+            PhaseEvent event = COMMON_INFLUENCERS.start();
+            String result = commonInfluencers(query);
+            COMMON_INFLUENCERS.stop(event);
+            return result;
+        }
+
+        PhaseEvent event = TOP_INFLUENCERS.start();
+        String result = topInfluencers(query);
+        TOP_INFLUENCERS.stop(event);
+        return result;
+    }
+
+    /**
+     * @return the stored result of query, or null if there is no result store
+     *         or it does not have one
+     */
+    private String storedResult(Query query) {
+        if (resultStore == null) {
+            return null;
+        }
+        try {
+            return resultStore.get(query);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Keep the result of query in the result store, if there is one.
+     */
+    private void store(Query query, String result) {
+        if (resultStore == null) {
+            return;
+        }
+        try {
+            resultStore.put(query, result);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Write one query and its result.
+     */
+    static void writeResult(BufferedWriter queryOutputWriter, Query query, String result) throws IOException {
+        PhaseEvent event = WRITE_RESULT.start();
+        queryOutputWriter.write(query.toString());
+        queryOutputWriter.newLine();
+        queryOutputWriter.write("<result>");
+        queryOutputWriter.newLine();
+        queryOutputWriter.write(result);
+        queryOutputWriter.write("</result>");
+        queryOutputWriter.newLine();
+        queryOutputWriter.newLine();
+        WRITE_RESULT.stop(event);
+    }
+
+    /**
+     * @return the result text of a commonInfluencers query: one user per line,
+     *         or 0 if there are none. The users come in id order, which is
+     *         the order they first appear in the edge file, not the order of
+     *         the edges to them.
+     */
+    private String commonInfluencers(Query query) {
+        List<Vertex> common = new ArrayList<Vertex>();
+        if (graph.indexOf(query.getUserA()) >= 0 && graph.indexOf(query.getUserB()) >= 0) {
+            common = Algorithms.commonDownstreamVertices(graph, query.getUserA(), query.getUserB());
+        }
+
+        if (common.isEmpty()) {
+            return "0";
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (Vertex currentVertex : common) {
+            result.append(currentVertex.toString()).append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return the result text of a topInfluencers query: one user and its
+     *         score per line, highest score first
+     */
+    private String topInfluencers(Query query) {
+        double[] scores = ranking(query.getMeasure());
+        boolean wholeNumbers = !query.getMeasure().equals(Query.PAGE_RANK);
+
+        StringBuilder result = new StringBuilder();
+        for (int id : Analytics.topK(scores, query.getCount())) {
+            result.append(graph.vertexAt(id).toString()).append(' ');
+            if (wholeNumbers) {
+                result.append((long) scores[id]);
+            } else {
+                result.append(String.format(Locale.ROOT, "%.6g", scores[id]));
+            }
+            result.append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return the score of every user id by measure, ranking the users the
+     *         first time the measure is asked for
+     */
+    private synchronized double[] ranking(String measure) {
+        double[] scores = rankings.get(measure);
+        if (scores == null) {
+            if (measure.equals(Query.PAGE_RANK)) {
+                scores = Analytics.pageRank(graph, ForkJoinPool.commonPool());
+            } else if (measure.equals(Query.IN_DEGREE)) {
+                scores = Analytics.inDegrees(graph);
+            } else {
+                scores = Analytics.outDegrees(graph);
+            }
+            rankings.put(measure, scores);
+        }
+        return scores;
+    }
+
+    /**
+     * @return false if the reachability index shows there is no path from user
+     *         b to user a of a numRetweets query, true otherwise
+     */
+    private boolean mayHavePath(Query query) {
+        if (reachabilityIndex == null || reachabilityIndex.mayReach(query.getUserB(), query.getUserA())) {
+            return true;
+        }
+        UNREACHABLE_BY_INDEX.increment();
+        return false;
+    }
+
+    /**
+     * @return the result text of a numRetweets query with the given distance,
+     *         or Infinity. if there is no path
+     */
+    static String numRetweets(Integer distance) {
+        return (distance == null ? "Infinity." : String.valueOf(distance)) + System.lineSeparator();
+    }
+}
@@ -0,0 +1,378 @@
+package twitterAnalysis;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import metrics.Log;
+import metrics.Metrics;
+/**
+ * Query results kept on disk between runs, so that a query asked again on
+ * the same graph is answered without any search.
+ *
+ * The store is one append-only log file. Its header holds the fingerprint of
+ * the part of the edge file the graph was loaded from; a store opened with a
+ * different fingerprint is emptied, since its results may be out of date. The
+ * fingerprint is taken while the graph is loaded, or kept in its snapshot, so
+ * opening the store does not read the edge file again. Every record
+ * after the header holds a query (type, user a, user b) and its result text,
+ * with a length and a CRC32C checksum. A record that is cut short or does not
+ * match its checksum ends the log: it and anything after it is dropped when
+ * the store is opened, as is left behind by a run that was stopped while
+ * writing.
+ *
+ * Opening the store reads the log once to build an index from every query to
+ * the position of its latest record. Lookups then read just that record.
+ *
+ * Once the log grows past its size cap it is compacted: the records of the
+ * most recently used queries are copied to a new log, up to COMPACTED_SHARE of
+ * the cap, and the new log replaces the old one. Records replaced by a later
+ * put are dropped, as are those of the least recently used queries.
+ *
+ * All methods are synchronized, so the store may be used by several query
+ * workers at once.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+class ResultStore {
+
+    private static final int MAGIC = 0x51525354;
+    private static final int VERSION = 1;
+    // magic, version and fingerprint
+    private static final int HEADER_BYTES = 16;
+    // length and checksum before the payload of every record
+    private static final int RECORD_HEADER_BYTES = 8;
+    // share of the size cap the log is compacted down to
+    private static final double COMPACTED_SHARE = 0.75;
+
+    private static final LongAdder HITS = Metrics.counter("resultStore.hits");
+    private static final LongAdder MISSES = Metrics.counter("resultStore.misses");
+    private static final LongAdder COMPACTIONS = Metrics.counter("resultStore.compactions");
+    private static final LongAdder INVALIDATIONS = Metrics.counter("resultStore.invalidations");
+
+    private final Path path;
+    private final long fingerprint;
+    private final long maxBytes;
+
+    private FileChannel channel;
+    private DataOutputStream out;
+    // size of the log, including what is still buffered in out
+    private long size;
+
+    // position of the latest record of every query in the log
+    private final Map<Query, Entry> index = new HashMap<Query, Entry>();
+    // bumped on every lookup and append, to order entries by last use
+    private long clock;
+
+    /**
+     * Open the store, creating it if it does not exist and emptying it if it
+     * was made for another fingerprint.
+     *
+     * @param path
+     *            - the log file
+     * @param fingerprint
+     *            - the fingerprint of the part of the edge file the graph was
+     *            loaded from, see GraphSnapshot.Source.getFingerprint()
+     * @param maxBytes
+     *            - the size the log may grow to before it is compacted
+     * @throws IOException
+     *             if the log can not be read or written
+     */
+    ResultStore(Path path, long fingerprint, long maxBytes) throws IOException {
+        this.path = path;
+        this.fingerprint = fingerprint;
+        this.maxBytes = maxBytes;
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (readHeader()) {
+            size = readRecords();
+            // drop a torn record at the end, if any
+            channel.truncate(size);
+        } else {
+            if (channel.size() > 0) {
+                INVALIDATIONS.increment();
+                Log.info("The result store is for another edge file. Emptying it.");
+            }
+            channel.truncate(0);
+            size = 0;
+        }
+
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.APPEND),
+                1 << 16));
+        if (size == 0) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            size = HEADER_BYTES;
+        }
+        // the cap may have been lowered since the log was written
+        if (size > maxBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Look up the stored result of a query.
+     *
+     * @return the result text of query, or null if it is not stored
+     * @throws IOException
+     *             if the log can not be read
+     */
+    synchronized String get(Query query) throws IOException {
+        Entry entry = index.get(query);
+        if (entry == null) {
+            MISSES.increment();
+            return null;
+        }
+
+        // the record may still be in the write buffer
+        out.flush();
+        ByteBuffer payload = ByteBuffer.allocate(entry.length);
+        readFully(payload, entry.position + RECORD_HEADER_BYTES);
+        payload.flip();
+        String[] fields = decode(payload);
+        if (fields == null) {
+            throw new IOException("Result store record at " + entry.position + " is corrupt");
+        }
+
+        entry.lastUse = ++clock;
+        HITS.increment();
+        return fields[3];
+    }
+
+    /**
+     * Store the result of a query, replacing any result stored before.
+     *
+     * @throws IOException
+     *             if the log can not be written
+     */
+    synchronized void put(Query query, String result) throws IOException {
+        byte[] payload = encode(query, result);
+        index.put(query, new Entry(size, payload.length, ++clock));
+        writeRecord(out, payload);
+        size += RECORD_HEADER_BYTES + payload.length;
+
+        if (size > maxBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * @return the number of queries with a stored result
+     */
+    synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Write any buffered records to the log and close it.
+     *
+     * @throws IOException
+     *             if the log can not be written
+     */
+    synchronized void close() throws IOException {
+        out.close();
+        channel.close();
+    }
+
+    /**
+     * Copy the records of the most recently used queries, up to
+     * COMPACTED_SHARE of the size cap, to a new log that replaces the old one.
+     */
+    private void compact() throws IOException {
+        out.flush();
+        List<Map.Entry<Query, Entry>> entries = new ArrayList<Map.Entry<Query, Entry>>(index.entrySet());
+        // most recently used first
+        Collections.sort(entries, new Comparator<Map.Entry<Query, Entry>>() {
+            @Override
+            public int compare(Map.Entry<Query, Entry> a, Map.Entry<Query, Entry> b) {
+                return Long.compare(b.getValue().lastUse, a.getValue().lastUse);
+            }
+        });
+
+        long budget = (long) (COMPACTED_SHARE * maxBytes);
+        long kept = HEADER_BYTES;
+        int keep = 0;
+        while (keep < entries.size() && kept + RECORD_HEADER_BYTES + entries.get(keep).getValue().length <= budget) {
+            kept += RECORD_HEADER_BYTES + entries.get(keep).getValue().length;
+            keep++;
+        }
+
+        // write the kept records least recently used first, so that the
+        // order of use survives reopening the store
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Map<Query, Entry> newIndex = new HashMap<Query, Entry>();
+        try (DataOutputStream compactedOut = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(compacted), 1 << 16))) {
+            compactedOut.writeInt(MAGIC);
+            compactedOut.writeInt(VERSION);
+            compactedOut.writeLong(fingerprint);
+            long position = HEADER_BYTES;
+
+            for (int k = keep - 1; k >= 0; k--) {
+                Entry entry = entries.get(k).getValue();
+                ByteBuffer payload = ByteBuffer.allocate(entry.length);
+                readFully(payload, entry.position + RECORD_HEADER_BYTES);
+                writeRecord(compactedOut, payload.array());
+                newIndex.put(entries.get(k).getKey(), new Entry(position, entry.length, entry.lastUse));
+                position += RECORD_HEADER_BYTES + entry.length;
+            }
+        }
+
+        out.close();
+        channel.close();
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.APPEND),
+                1 << 16));
+
+        index.clear();
+        index.putAll(newIndex);
+        size = kept;
+        COMPACTIONS.increment();
+        Log.info("Compacted the result store to %d of %d queries, %d bytes.", keep, entries.size(), kept);
+    }
+
+    /**
+     * @return true if the log starts with a header for this fingerprint
+     */
+    private boolean readHeader() throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getLong(8) == fingerprint;
+    }
+
+    /**
+     * Index every record of the log, in order, stopping at the first one that
+     * is cut short or corrupt.
+     *
+     * @return the size of the log up to the end of the last good record
+     */
+    private long readRecords() throws IOException {
+        long fileSize = channel.size();
+        long position = HEADER_BYTES;
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        CRC32C checksum = new CRC32C();
+
+        while (position + RECORD_HEADER_BYTES <= fileSize) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            int length = recordHeader.getInt(0);
+            if (length < 0 || position + RECORD_HEADER_BYTES + length > fileSize) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER_BYTES);
+            checksum.reset();
+            checksum.update(payload.array());
+            payload.flip();
+            String[] fields = (int) checksum.getValue() == recordHeader.getInt(4) ? decode(payload) : null;
+            if (fields == null) {
+                break;
+            }
+
+            Query query = new Query(fields[0], new Vertex(fields[1]), new Vertex(fields[2]));
+            index.put(query, new Entry(position, length, ++clock));
+            position += RECORD_HEADER_BYTES + length;
+        }
+
+        if (position < fileSize) {
+            Log.info("Dropped %d bytes of torn or corrupt records from the result store.", fileSize - position);
+        }
+        return position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of result store " + path);
+            }
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] payload) throws IOException {
+        CRC32C checksum = new CRC32C();
+        checksum.update(payload);
+        out.writeInt(payload.length);
+        out.writeInt((int) checksum.getValue());
+        out.write(payload);
+    }
+
+    /**
+     * @return the payload of a record: the type, user a, user b and result,
+     *         each as a length and UTF-8 bytes
+     */
+    private static byte[] encode(Query query, String result) {
+        byte[][] fields = { query.getType().getBytes(StandardCharsets.UTF_8),
+                query.getUserA().getLabel().getBytes(StandardCharsets.UTF_8),
+                query.getUserB().getLabel().getBytes(StandardCharsets.UTF_8),
+                result.getBytes(StandardCharsets.UTF_8) };
+
+        int length = 0;
+        for (byte[] field : fields) {
+            length += 4 + field.length;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        for (byte[] field : fields) {
+            payload.putInt(field.length);
+            payload.put(field);
+        }
+        return payload.array();
+    }
+
+    /**
+     * @return the four fields of a payload, or null if it is malformed
+     */
+    private static String[] decode(ByteBuffer payload) {
+        String[] fields = new String[4];
+        for (int k = 0; k < fields.length; k++) {
+            if (payload.remaining() < 4) {
+                return null;
+            }
+            int length = payload.getInt();
+            if (length < 0 || length > payload.remaining()) {
+                return null;
+            }
+            fields[k] = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+            payload.position(payload.position() + length);
+        }
+        return payload.hasRemaining() ? null : fields;
+    }
+
+    /**
+     * Where the latest record of a query is in the log, and when it was last
+     * used.
+     */
+    private static class Entry {
+        final long position;
+        final int length;
+        long lastUse;
+
+        Entry(long position, int length, long lastUse) {
+            this.position = position;
+            this.length = length;
+            this.lastUse = lastUse;
+        }
+    }
+}
@@ -9,91 +9,284 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.util.LinkedList;
-import java.util.List;
-import ca.ubc.ece.cpen221.mp3.graph.AdjacencyListGraph;
+import java.io.RandomAccessFile;
 import ca.ubc.ece.cpen221.mp3.graph.AdjacencyMatrixGraph;
-import ca.ubc.ece.cpen221.mp3.graph.Algorithms;
-import ca.ubc.ece.cpen221.mp3.graph.NoPathException;
-import ca.ubc.ece.cpen221.mp3.staff.Graph;
-import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+import ca.ubc.ece.cpen221.mp3.graph.DistanceCache;
+import ca.ubc.ece.cpen221.mp3.graph.ReachabilityIndex;
+import ca.ubc.ece.cpen221.mp3.graph.GraphSnapshot;
+import ca.ubc.ece.cpen221.mp3.graph.IncrementalGraph;
+import ca.ubc.ece.cpen221.mp3.graph.IndexedGraph;
+import metrics.Log;
+import metrics.Metrics;
+import metrics.PhaseEvent;
+import metrics.PhaseTimer;
 /**
  * @author Cinnie Hsiung, Yuqing Du
  */
 public class TwitterAnalysis {
 
-    private final static String COMMON_INFLUENCERS = "commonInfluencers";
-    private final static String NUM_RETWEETS = "numRetweets";
-
     private final static File TWITTER_DATA = new File("datasets/twitter.txt");
+    private final static File TWITTER_SNAPSHOT = new File("datasets/twitter.snapshot");
     private final static File QUERY_OUTPUT = new File("datasets/queryOutput.txt");
     private final static File QUERY_INPUT = new File("datasets/queryInput.txt");
+    private final static File QUERY_RESULTS = new File("datasets/queryResults.log");
+
+    // size the stored query results may grow to before they are compacted;
+    // 0 turns the store off. Set with -DtwitterAnalysis.resultStoreBytes=...
+    private final static long RESULT_STORE_BYTES = Long.getLong("twitterAnalysis.resultStoreBytes", 64L << 20);
+
+    // number of threads answering queries, and the most queries that may be
+    // in progress or waiting to be written at once. Set with
+    // -DtwitterAnalysis.workers=... and -DtwitterAnalysis.queueDepth=...
+    private final static int QUERY_WORKERS = Integer.getInteger("twitterAnalysis.workers",
+            Runtime.getRuntime().availableProcessors());
+    private final static int QUERY_QUEUE_DEPTH = Integer.getInteger("twitterAnalysis.queueDepth", 1024);
+
+    // with -DtwitterAnalysis.follow=true, keep adding the edges appended to
+    // the follow file (twitter.txt unless -DtwitterAnalysis.followFile=... is
+    // set), and answer the queries again whenever the graph or the query
+    // input changes. Checks for changes every pollMillis, but answers at
+    // most once every answerMillis, so a stream of small batches does not
+    // have every query answered and written again for each one.
+    private final static boolean FOLLOW = Boolean.getBoolean("twitterAnalysis.follow");
+    private final static File FOLLOW_FILE = new File(
+            System.getProperty("twitterAnalysis.followFile", TWITTER_DATA.getPath()));
+    private final static long FOLLOW_POLL_MILLIS = Long.getLong("twitterAnalysis.pollMillis", 1000);
+    private final static long FOLLOW_ANSWER_MILLIS = Long.getLong("twitterAnalysis.answerMillis",
+            10 * FOLLOW_POLL_MILLIS);
+    // size the distances from numRetweets sources kept between follow
+    // rounds on the same graph version may grow to; 0 turns the cache off.
+    // Set with -DtwitterAnalysis.distanceCacheBytes=...
+    private final static long DISTANCE_CACHE_BYTES = Long.getLong("twitterAnalysis.distanceCacheBytes", 64L << 20);
+
+    // time of every phase of a run, see Metrics.report
+    private final static PhaseTimer LOAD_SNAPSHOT = Metrics.timer("load.snapshot");
+    private final static PhaseTimer LOAD_TWITTER_DATA = Metrics.timer("load.twitterData");
+    private final static PhaseTimer SAVE_SNAPSHOT = Metrics.timer("load.saveSnapshot");
+    private final static PhaseTimer OPEN_RESULT_STORE = Metrics.timer("load.resultStore");
+    private final static PhaseTimer READ_QUERIES = Metrics.timer("queries.read");
+    private final static PhaseTimer ANSWER_QUERIES = Metrics.timer("queries.answerAndWrite");
 
     public static void main(String[] args) {
 
-        Graph twitterData = new AdjacencyListGraph();
-
-        // The FileInputStream to open and read from the file that
-        // has the Twitter data.
-        FileInputStream twitterStream;
-
-        // Let us try to open the data file.
-        // The file name is hardcoded, which is not elegant.
-        // Suffices for now.
-        try {
-            twitterStream = new FileInputStream(TWITTER_DATA);
-            System.out.println("Attempting to open Twitter Data file.");
-        } catch (FileNotFoundException e) {
-            // If, for some reason, the file was not found,
-            // then throw an exception.
-            // The file is however included in the git repo
-            // so this should not happen.
-            throw new RuntimeException(e);
+        // Progress messages are off unless -Dlog.level=INFO is set; the
+        // metrics summary is printed when the program exits.
+        Metrics.reportAtExit();
+
+        IndexedGraph twitterData = null;
+        // how much of the data file the graph holds, and a fingerprint of
+        // those bytes that the stored query results are kept for
+        long bytesLoaded = 0;
+        long fingerprint = 0;
+        // a line being written at the end of twitter.txt is left for the
+        // follower to read once it is complete, but otherwise loaded
+        boolean completeLinesOnly = FOLLOW && followsTwitterData();
+
+        // A snapshot saved by an earlier run is only a shortcut: if it can
+        // not be read, or was made from another version of the data file,
+        // the data file is parsed instead.
+        if (TWITTER_SNAPSHOT.exists()) {
+            try {
+                GraphSnapshot.Source source = GraphSnapshot.readSource(TWITTER_SNAPSHOT.toPath());
+                if (source.matches(TWITTER_DATA) && holdsLinesToLoad(source, completeLinesOnly)) {
+                    // map the snapshot instead of parsing the text again
+                    Log.info("Attempting to open Twitter Data snapshot.");
+                    PhaseEvent event = LOAD_SNAPSHOT.start();
+                    twitterData = GraphSnapshot.load(TWITTER_SNAPSHOT.toPath());
+                    bytesLoaded = source.getBytesLoaded();
+                    fingerprint = source.getFingerprint();
+                    LOAD_SNAPSHOT.stop(event, twitterData.edgeCount());
+                    Log.info("Finished opening Twitter Data snapshot.");
+                } else {
+                    Log.info("The Twitter Data snapshot is out of date.");
+                }
+            } catch (IOException e) {
+                Log.warn("Could not open the Twitter Data snapshot, reading the data file instead: %s", e);
+            }
         }
 
-        // We have opened the file.
-        // Let us try to read data.
-        try {
-            // We will use a BufferedReader to read the data from the file.
-            System.out.println("Attempting to read Twitter Data file.");
-            BufferedReader twitterReader = new BufferedReader(new InputStreamReader(twitterStream));
-
-            // We will read one line at a time and then split it.
-            // The format for twitter.txt is as follows:
-            // - Column 1: user a
-            // - Column 2: user b
+        if (twitterData == null) {
+            // Let us try to read the data file.
+            // The file name is hardcoded, which is not elegant.
+            // Suffices for now.
+            TwitterDataLoader loader = new TwitterDataLoader(Runtime.getRuntime().availableProcessors(),
+                    completeLinesOnly);
+            try {
+                // The loader memory-maps the file and parses it on every
+                // core. The format for twitter.txt is as follows:
+                // - Column 1: user a
+                // - Column 2: user b
+                Log.info("Attempting to read Twitter Data file.");
+                PhaseEvent event = LOAD_TWITTER_DATA.start();
+
+                // The graph is only read from now on, so the loader builds
+                // it directly in the compact array form.
+                twitterData = loader.load(TWITTER_DATA);
+                bytesLoaded = loader.getBytesLoaded();
+                fingerprint = loader.getFingerprint();
+                LOAD_TWITTER_DATA.stop(event, loader.getEdgesLoaded());
+
+                Log.info("Finished reading Twitter Data file: %d edges in %d ms (%d edges per second).",
+                        loader.getEdgesLoaded(), loader.getLoadTimeNanos() / 1000000,
+                        (long) loader.getEdgesPerSecond());
+            } catch (IOException e) {
+                // If, for any reason, we had some problems reading data...
+                // The file is however included in the git repo
+                // so this should not happen.
+                throw new RuntimeException(e);
+            }
 
-            String line;
-            int count = 1;
-            // Read each line of the file until there is nothing left to read.
-            while ((line = twitterReader.readLine()) != null) {
-                System.out.println("Reading line " + count + " and splitting it into columns.");
-                // Split the line into columns using the split( )
-                // method for Strings.
-                String[] columns = line.split(" -> ");
+            // Save a snapshot so the next run can skip the parsing. The run
+            // does not need it, so a failed save is only reported.
+            try {
+                PhaseEvent event = SAVE_SNAPSHOT.start();
+                GraphSnapshot.save(twitterData, TWITTER_SNAPSHOT.toPath(), loader.getSource());
+                SAVE_SNAPSHOT.stop(event, twitterData.edgeCount());
+                Log.info("Saved a snapshot of the Twitter Data for the next run.");
+            } catch (IOException e) {
+                Log.warn("Could not save a snapshot of the Twitter Data: %s", e);
+            }
+        }
 
-                // After the split, we should have the following (as Strings):
-                // - columns[0] contains the user a
-                // - columns[1] contains the user b,
+        if (FOLLOW) {
+            follow(twitterData, bytesLoaded);
+        } else {
+            ResultStore resultStore = openResultStore(fingerprint);
+            answerQueries(twitterData, resultStore, null);
+            if (resultStore != null) {
+                try {
+                    resultStore.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        Log.info("Finished.");
+    }
 
-                Vertex userA = new Vertex(columns[0]);
-                Vertex userB = new Vertex(columns[1]);
+    /**
+     * @return true if FOLLOW_FILE is twitter.txt
+     */
+    private static boolean followsTwitterData() {
+        return FOLLOW_FILE.getAbsoluteFile().equals(TWITTER_DATA.getAbsoluteFile());
+    }
 
-                twitterData.addVertex(userA);
-                twitterData.addVertex(userB);
-                twitterData.addEdge(userA, userB);
+    /**
+     * Check that a snapshot of twitter.txt holds the lines this run would
+     * load: all of them, or only the complete ones when following the file.
+     *
+     * @param source
+     *            - what the snapshot was made from. Must match twitter.txt.
+     * @param completeLinesOnly
+     *            - true if only the lines up to the last newline are to be
+     *            loaded
+     * @throws IOException
+     *             if twitter.txt can not be read
+     */
+    private static boolean holdsLinesToLoad(GraphSnapshot.Source source, boolean completeLinesOnly)
+            throws IOException {
+        if (source.getBytesLoaded() < source.getLength()) {
+            // the snapshot stopped at the last newline
+            return completeLinesOnly;
+        }
+        if (!completeLinesOnly || source.getLength() == 0) {
+            return true;
+        }
+        // the whole file is only complete lines if it ends with a newline
+        try (RandomAccessFile file = new RandomAccessFile(TWITTER_DATA, "r")) {
+            file.seek(source.getLength() - 1);
+            return file.read() == '\n';
+        }
+    }
 
-                count++;
+    /**
+     * Open the store of query results from earlier runs. Results stored for
+     * another version of the data file are dropped.
+     *
+     * @param fingerprint
+     *            - the fingerprint of the part of the data file the graph
+     *            holds
+     * @return the store, or null if it is turned off
+     */
+    private static ResultStore openResultStore(long fingerprint) {
+        if (RESULT_STORE_BYTES <= 0) {
+            return null;
+        }
+        try {
+            PhaseEvent event = OPEN_RESULT_STORE.start();
+            ResultStore resultStore = new ResultStore(QUERY_RESULTS.toPath(), fingerprint, RESULT_STORE_BYTES);
+            OPEN_RESULT_STORE.stop(event, resultStore.size());
+            Log.info("Opened the result store: %d stored results.", resultStore.size());
+            return resultStore;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    /**
+     * Follow the follow file, and answer the queries on the latest snapshot
+     * of the graph whenever it or the query input changes. Runs until the
+     * program is stopped. The result store is not used, since the graph
+     * keeps changing; the distances found on one version are kept in a
+     * DistanceCache instead, for the rounds until the next version.
+     */
+    private static void follow(IndexedGraph twitterData, long bytesLoaded) {
+        IncrementalGraph graph = new IncrementalGraph(twitterData);
+
+        // twitter.txt is read from where the load stopped, any other file
+        // from the start
+        long offset = followsTwitterData() ? bytesLoaded : 0;
+        EdgeFileFollower follower = new EdgeFileFollower(graph, FOLLOW_FILE, offset, FOLLOW_POLL_MILLIS);
+        follower.start();
+        Log.info("Following %s from byte %d.", FOLLOW_FILE, offset);
+
+        int answeredVersion = -1;
+        long answeredQueryInput = -1;
+        long answeredAt = 0;
+        DistanceCache distanceCache = null;
+        while (true) {
+            // every round answers all queries on one snapshot, so its
+            // results are consistent with each other
+            IndexedGraph snapshot = graph.snapshot();
+            boolean changed = snapshot.modificationCount() != answeredVersion
+                    || QUERY_INPUT.lastModified() != answeredQueryInput;
+            if (changed && System.currentTimeMillis() - answeredAt >= FOLLOW_ANSWER_MILLIS) {
+                answeredAt = System.currentTimeMillis();
+                answeredVersion = snapshot.modificationCount();
+                answeredQueryInput = QUERY_INPUT.lastModified();
+                Log.info("Answering the queries on graph version %d: %d vertices, %d edges.", answeredVersion,
+                        snapshot.vertexCount(), snapshot.edgeCount());
+                // a round for new queries on the same version reuses the
+                // distances found by the rounds before it
+                if (DISTANCE_CACHE_BYTES > 0
+                        && (distanceCache == null || distanceCache.currentGraph() != snapshot)) {
+                    distanceCache = new DistanceCache(snapshot, DISTANCE_CACHE_BYTES);
+                }
+                answerQueries(snapshot, null, distanceCache);
             }
 
-            System.out.println("Finished reading Twitter Data file. Now closing the file.");
-            twitterReader.close();
-            twitterStream.close();
-        } catch (Exception e) {
-            // If, for any reason, we had some problems reading data...
-            throw new RuntimeException(e);
+            try {
+                Thread.sleep(FOLLOW_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
         }
+    }
+
+    /**
+     * Answer every query of the query input file on twitterData, and write
+     * the results to the query output file.
+     *
+     * @param resultStore
+     *            - the store to answer queries from and keep new results in,
+     *            or null
+     * @param distanceCache
+     *            - a cache of distances in twitterData to answer numRetweets
+     *            queries from, or null
+     */
+    private static void answerQueries(IndexedGraph twitterData, ResultStore resultStore,
+            DistanceCache distanceCache) {
 
         // READING LIST OF QUERIES
 
@@ -104,13 +297,13 @@ public class TwitterAnalysis {
 
         // Let us try to open the data file.
         try {
-            System.out.println("Now opening the query input and output files.");
+            Log.info("Now opening the query input and output files.");
             queryInputStream = new FileInputStream(input);
             queryOutputStream = new FileOutputStream(output);
 
             if (!output.exists()) {
                 output.createNewFile();
-                System.out.println("The output file did not exist. We created a new one.");
+                Log.info("The output file did not exist. We created a new one.");
             }
 
         } catch (FileNotFoundException e) {
@@ -124,134 +317,44 @@ public class TwitterAnalysis {
 
         try {
             // We will use a BufferedReader to read the data from the file.
-            System.out.println("Attempting to read the query input file.");
+            Log.info("Attempting to read the query input file.");
             BufferedReader queryInputReader = new BufferedReader(new InputStreamReader(queryInputStream));
             BufferedWriter queryOutputWriter = new BufferedWriter(new OutputStreamWriter(queryOutputStream));
 
-            // We will read one line at a time and then split it.
-            // The format for twitter.txt is as follows:
-            // - Column 1: query type
-            // - Column 2: user a
-            // - Column 3: user b
-            // - Column 4: question mark (may or may not be present)
+            // Index which users can reach which, so that numRetweets
+            // queries with no path are answered without a search.
+            ReachabilityIndex reachabilityIndex = new ReachabilityIndex(twitterData);
+            Log.info("Indexed reachability: %d strongly connected components.", reachabilityIndex.componentCount());
 
+            // Read every query before answering any, so that queries can be
+            // grouped. See Query.parse for the format of a line.
+            QueryBatch batch = new QueryBatch(twitterData, reachabilityIndex, resultStore, distanceCache);
             String line;
-
-            Graph visitedQueryCommonInfluencers = new AdjacencyListGraph();
-            Graph visitedQueryNumRetweets = new AdjacencyListGraph();
+            long lines = 0;
 
             // Read each line of the file until there is nothing left to read.
+            PhaseEvent event = READ_QUERIES.start();
             while ((line = queryInputReader.readLine()) != null) {
-                System.out.println("Reading each query and splitting the necessary information.");
-
-                // Split the line into columns using the split( )
-                // method for Strings.
-                String[] columns = line.split(" ");
-
-                // After the split, we should have the following (as Strings):
-                // - columns[0] contains the query
-                // - columns[1] contains the user a
-                // - columns[2] contains the user b
-                // - columns[3] contains the question mark
-
-                String question = new String();
-                String query = columns[0];
-                Vertex userAA = new Vertex(columns[1]);
-                Vertex userBB = new Vertex(columns[2]);
-
-                if (columns.length == 4)
-                    question = columns[3];
-
-                if (question.equals("?")) {
-                    System.out.println("This was a valid query. Beginning Algorithm.");
-
-                    if (!visitedQueryCommonInfluencers.getVertices().contains(userAA)) {
-                        visitedQueryCommonInfluencers.addVertex(userAA);
-                        System.out.println(
-                                "The 1st vertex from the query input was not in the visitedQueryCommonInfluencersGraph. Adding it.");
-                    }
-
-                    if (!visitedQueryCommonInfluencers.getVertices().contains(userBB)) {
-                        visitedQueryCommonInfluencers.addVertex(userBB);
-                        System.out.println(
-                                "The 2nd vertex from the query input was not in the visitedQueryCommonInfluencersGraph. Adding it.");
-                    }
-
-                    if (!visitedQueryNumRetweets.getVertices().contains(userAA)) {
-                        visitedQueryNumRetweets.addVertex(userAA);
-                        System.out.println(
-                                "The 1st vertex from the query input was not in the visitedQueryNumRetweetsGraph. Adding it.");
-                    }
-
-                    if (!visitedQueryNumRetweets.getVertices().contains(userBB)) {
-                        visitedQueryNumRetweets.addVertex(userBB);
-                        System.out.println(
-                                "The 2nd vertex from the query input was not in the visitedQueryNumRetweetsGraph. Adding it.");
-                    }
-
-                    if (query.equals(COMMON_INFLUENCERS) && !visitedQueryCommonInfluencers.edgeExists(userAA, userBB)) {
-                        System.out.println("The query was for common influencers. Beginning Algorithm.");
-
-                        queryOutputWriter.write("query: " + query + " " + userAA.toString() + " " + userBB.toString());
-                        queryOutputWriter.newLine();
-                        queryOutputWriter.write("<result>");
-                        queryOutputWriter.newLine();
-
-                        List<Vertex> testList = new LinkedList<Vertex>();
-                        testList.addAll(Algorithms.commonDownstreamVertices(twitterData, userAA, userBB));
-                        System.out.println("Common influencers have been found. Beginning to write to output file.");
-
-                        if (testList.isEmpty()) {
-                            queryOutputWriter.write("0");
-                        } else {
-                            for (Vertex currentVertex : testList) {
-
-                                queryOutputWriter.write(currentVertex.toString());
-                                queryOutputWriter.newLine();
-                            }
-                        }
-
-                        queryOutputWriter.write("</result>");
-                        queryOutputWriter.newLine();
-                        queryOutputWriter.newLine();
-
-                        System.out.println("Finished printing to output file. Adding the analyzed edge to the graph.");
-                        visitedQueryCommonInfluencers.addEdge(userAA, userBB);
-
-                    }
-
-                    if (query.equals(NUM_RETWEETS) && !visitedQueryNumRetweets.edgeExists(userAA, userBB)) {
-                        System.out.println("The query was for number of retweets. Beginning Algorithm.");
-
-                        queryOutputWriter.write("query: " + query + " " + userAA.toString() + " " + userBB.toString());
-                        queryOutputWriter.newLine();
-                        queryOutputWriter.write("<result>");
-                        queryOutputWriter.newLine();
-
-                        try {
-                            int toWrite = Algorithms.shortestDistance(twitterData, userBB, userAA);
-                            queryOutputWriter.write(String.valueOf(toWrite));
-                        } catch (NoPathException e) {
-                            queryOutputWriter.write("Infinity.");
-                        }
-
-                        System.out.println("The shortest distance has been found. Writing to output file.");
-
-                        queryOutputWriter.newLine();
-                        queryOutputWriter.write("</result>");
-                        queryOutputWriter.newLine();
-                        queryOutputWriter.newLine();
-
-                        System.out.println("Finished printing to output file. Adding the analyzed edge to the graph.");
-                        visitedQueryNumRetweets.addEdge(userAA, userBB);
-
-                    }
-
+                lines++;
+                Query query = Query.parse(line);
+                if (query != null) {
+                    batch.add(query);
                 }
-
             }
+            READ_QUERIES.stop(event, lines);
+            Metrics.counter("queries.distinct").add(batch.getQueries().size());
+
+            Log.info("Read %d distinct queries. Beginning Algorithm.", batch.getQueries().size());
+            event = ANSWER_QUERIES.start();
+            if (QUERY_WORKERS > 1) {
+                batch.write(queryOutputWriter, QUERY_WORKERS, QUERY_QUEUE_DEPTH);
+            } else {
+                batch.write(queryOutputWriter);
+            }
+            queryOutputWriter.flush();
+            ANSWER_QUERIES.stop(event, batch.getQueries().size());
 
-            System.out.println("Finished analyzing all the queries. Now closing the files.");
+            Log.info("Finished analyzing all the queries. Now closing the files.");
             queryInputReader.close();
             queryInputStream.close();
 
@@ -261,6 +364,5 @@ public class TwitterAnalysis {
             // If, for any reason, we had some problems reading data...
             throw new RuntimeException(e);
         }
-        System.out.println("Finished.");
     }
 }
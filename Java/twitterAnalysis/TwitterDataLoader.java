@@ -0,0 +1,548 @@
+package twitterAnalysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+import ca.ubc.ece.cpen221.mp3.graph.CompressedSparseRowGraph;
+import ca.ubc.ece.cpen221.mp3.graph.GraphSnapshot;
+import ca.ubc.ece.cpen221.mp3.staff.Vertex;
+/**
+ * Loads an edge file in the twitter.txt format (one "a -> b" record per line)
+ * into a CompressedSparseRowGraph.
+ *
+ * The file is memory-mapped and cut into chunks that start and end on line
+ * boundaries. The chunks are parsed in parallel straight from the mapped
+ * bytes, each into its own list of labels and edges between chunk-local ids.
+ * The chunks are then merged, in file order, into one label dictionary and
+ * one edge list, and the graph is built from that in a single pass.
+ *
+ * A last line with no newline after it is loaded like any other, unless the
+ * loader is made to load complete lines only: then anything after the last
+ * newline is taken to be a line that is still being written, and is left for
+ * a reader that follows the file from getBytesLoaded().
+ *
+ * While the chunks are parsed, the loaded bytes are also fingerprinted, in
+ * fixed-size blocks that are checksummed in parallel and then folded together
+ * in file order. The blocks do not depend on the number of threads, so
+ * neither does the fingerprint.
+ *
+ * @author Cinnie Hsiung, Yuqing Du
+ */
+public class TwitterDataLoader {
+
+    private static final byte[] SEPARATOR = " -> ".getBytes(StandardCharsets.UTF_8);
+
+    // chunks are never bigger than this, so each one fits in one mapping
+    private static final long MAX_CHUNK_SIZE = 1L << 28;
+    // and never smaller than this, so small files are not split up for no
+    // reason
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+    // most edges the int arrays of a CompressedSparseRowGraph can hold
+    private static final int MAX_EDGES = Integer.MAX_VALUE - 8;
+
+    // size of the blocks the fingerprint checksums one at a time
+    private static final long FINGERPRINT_BLOCK_SIZE = 1L << 24;
+
+    private final int threads;
+    // whether to stop at the last newline
+    private final boolean completeLinesOnly;
+
+    // statistics of the last load
+    private long edgesLoaded;
+    private long bytesLoaded;
+    private long sourceLength;
+    private long sourceLastModified;
+    private long fingerprint;
+    private long loadTimeNanos;
+
+    /**
+     * Make a loader that loads every line of the file.
+     *
+     * @param threads
+     *            - the number of threads to parse the file with
+     */
+    public TwitterDataLoader(int threads) {
+        this(threads, false);
+    }
+
+    /**
+     * @param threads
+     *            - the number of threads to parse the file with
+     * @param completeLinesOnly
+     *            - true to leave out anything after the last newline, for a
+     *            file that is still being written and will be followed from
+     *            getBytesLoaded()
+     */
+    public TwitterDataLoader(int threads, boolean completeLinesOnly) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.threads = threads;
+        this.completeLinesOnly = completeLinesOnly;
+    }
+
+    /**
+     * Load an edge file.
+     *
+     * @param file
+     *            - the file to load. Every non-empty line must have the form
+     *            "a -> b".
+     * @return the graph with an edge from a to b for every line of the file,
+     *         or every complete line if the loader loads complete lines only
+     * @throws IOException
+     *             if the file can not be read, a line is not in the right
+     *             format, or the file has more edges than a
+     *             CompressedSparseRowGraph can hold
+     */
+    public CompressedSparseRowGraph load(File file) throws IOException {
+        long startTime = System.nanoTime();
+        // taken before the file is read, so that a change made while it is
+        // being read makes it look changed afterwards
+        sourceLastModified = file.lastModified();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+                FileChannel channel = randomAccessFile.getChannel()) {
+
+            // parse every chunk in parallel
+            List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>();
+            sourceLength = channel.size();
+            long[] boundaries = chunkBoundaries(channel, sourceLength);
+            bytesLoaded = boundaries[boundaries.length - 1];
+            for (int k = 0; k + 1 < boundaries.length; k++) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[k],
+                        boundaries[k + 1] - boundaries[k]);
+                futures.add(executor.submit(new ChunkParser(buffer, boundaries[k])));
+            }
+
+            // and checksum every block of the loaded bytes
+            List<Future<Long>> checksums = new ArrayList<Future<Long>>();
+            for (long position = 0; position < bytesLoaded; position += FINGERPRINT_BLOCK_SIZE) {
+                MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(FINGERPRINT_BLOCK_SIZE, bytesLoaded - position));
+                checksums.add(executor.submit(new BlockChecksum(block)));
+            }
+
+            List<Chunk> chunks = new ArrayList<Chunk>();
+            for (Future<Chunk> future : futures) {
+                chunks.add(future.get());
+            }
+
+            // fold the block checksums in file order, with the length on top
+            CRC32C blocks = new CRC32C();
+            ByteBuffer checksum = ByteBuffer.allocate(4);
+            for (Future<Long> future : checksums) {
+                checksum.clear();
+                checksum.putInt((int) (long) future.get());
+                checksum.flip();
+                blocks.update(checksum);
+            }
+            fingerprint = (bytesLoaded << 32) ^ blocks.getValue();
+
+            CompressedSparseRowGraph graph = merge(chunks);
+
+            loadTimeNanos = System.nanoTime() - startTime;
+            return graph;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return the number of edge records read by the last load, including
+     *         repeated ones
+     */
+    public long getEdgesLoaded() {
+        return edgesLoaded;
+    }
+
+    /**
+     * @return the number of bytes read by the last load: the whole file, or up
+     *         to and including the last newline if the loader loads complete
+     *         lines only, which is where a reader following the file should
+     *         continue from
+     */
+    public long getBytesLoaded() {
+        return bytesLoaded;
+    }
+
+    /**
+     * @return a fingerprint of the bytes read by the last load: their number
+     *         and a checksum of their contents
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return what the graph of the last load was loaded from, to save with a
+     *         snapshot of it
+     */
+    public GraphSnapshot.Source getSource() {
+        return new GraphSnapshot.Source(sourceLength, sourceLastModified, bytesLoaded, fingerprint);
+    }
+
+    /**
+     * @return how long the last load took, in nanoseconds
+     */
+    public long getLoadTimeNanos() {
+        return loadTimeNanos;
+    }
+
+    /**
+     * @return the number of edge records the last load read per second
+     */
+    public double getEdgesPerSecond() {
+        return loadTimeNanos == 0 ? 0 : edgesLoaded * 1e9 / loadTimeNanos;
+    }
+
+    /**
+     * Split the first fileSize bytes of the file into about one chunk per
+     * thread, moving every boundary forward to just after the next newline.
+     *
+     * @return the chunk boundaries, starting with 0 and ending at fileSize, or
+     *         just after the last newline of the file if the loader loads
+     *         complete lines only
+     */
+    private long[] chunkBoundaries(FileChannel channel, long fileSize) throws IOException {
+        long size = completeLinesOnly ? endOfLastLine(channel, fileSize) : fileSize;
+        long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / threads + 1));
+
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        long position = chunkSize;
+        while (position < size) {
+            long newline = findNewline(channel, position, window);
+            if (newline < 0) {
+                break;
+            }
+            boundaries.add(newline + 1);
+            position = newline + 1 + chunkSize;
+        }
+
+        if (boundaries.get(boundaries.size() - 1) < size) {
+            boundaries.add(size);
+        }
+
+        long[] result = new long[boundaries.size()];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = boundaries.get(k);
+        }
+        return result;
+    }
+
+    /**
+     * @return the position just after the last newline in the first fileSize
+     *         bytes of the file, or 0 if there is none
+     */
+    private static long endOfLastLine(FileChannel channel, long fileSize) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        long end = fileSize;
+        while (end > 0) {
+            long start = Math.max(0, end - window.capacity());
+            window.clear();
+            window.limit((int) (end - start));
+            while (window.hasRemaining()) {
+                if (channel.read(window, start + window.position()) < 0) {
+                    throw new IOException("File got shorter while it was loaded");
+                }
+            }
+            for (int k = (int) (end - start) - 1; k >= 0; k--) {
+                if (window.get(k) == '\n') {
+                    return start + k + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the position of the first newline at or after position, or -1
+     *         if there is none
+     */
+    private static long findNewline(FileChannel channel, long position, ByteBuffer window) throws IOException {
+        while (true) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                return -1;
+            }
+            for (int k = 0; k < read; k++) {
+                if (window.get(k) == '\n') {
+                    return position + k;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Give every label one global id, in order of first appearance in the
+     * file, and build the graph.
+     */
+    private CompressedSparseRowGraph merge(List<Chunk> chunks) throws IOException {
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        List<Vertex> vertices = new ArrayList<Vertex>();
+
+        long totalEdges = 0;
+        for (Chunk chunk : chunks) {
+            totalEdges += chunk.edgeCount;
+        }
+        if (totalEdges > MAX_EDGES) {
+            throw new IOException("The file has " + totalEdges + " edges, more than the " + MAX_EDGES
+                    + " a CompressedSparseRowGraph can hold");
+        }
+        int edgeCount = (int) totalEdges;
+
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        int next = 0;
+
+        for (Chunk chunk : chunks) {
+            // map the chunk's ids to global ids
+            int[] globalIds = new int[chunk.labels.size()];
+            for (int localId = 0; localId < globalIds.length; localId++) {
+                String label = chunk.labels.get(localId);
+                Integer id = ids.get(label);
+                if (id == null) {
+                    id = vertices.size();
+                    ids.put(label, id);
+                    vertices.add(new Vertex(label));
+                }
+                globalIds[localId] = id;
+            }
+
+            for (int k = 0; k < chunk.edgeCount; k++) {
+                sources[next] = globalIds[chunk.sources[k]];
+                targets[next] = globalIds[chunk.targets[k]];
+                next++;
+            }
+        }
+
+        edgesLoaded = edgeCount;
+        return new CompressedSparseRowGraph(vertices, sources, targets, edgeCount);
+    }
+
+    /**
+     * The labels and edges of one chunk, with chunk-local vertex ids.
+     */
+    private static class Chunk {
+        List<String> labels = new ArrayList<String>();
+        int[] sources = new int[1024];
+        int[] targets = new int[1024];
+        int edgeCount;
+
+        void addEdge(int source, int target) throws IOException {
+            if (edgeCount == sources.length) {
+                if (edgeCount == MAX_EDGES) {
+                    throw new IOException("A chunk has more than " + MAX_EDGES + " edges");
+                }
+                int capacity = (int) Math.min(MAX_EDGES, 2L * edgeCount);
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+            }
+            sources[edgeCount] = source;
+            targets[edgeCount] = target;
+            edgeCount++;
+        }
+    }
+
+    /**
+     * The CRC32C of one mapped block.
+     */
+    private static class BlockChecksum implements Callable<Long> {
+        private final MappedByteBuffer block;
+
+        BlockChecksum(MappedByteBuffer block) {
+            this.block = block;
+        }
+
+        @Override
+        public Long call() {
+            CRC32C checksum = new CRC32C();
+            checksum.update(block);
+            return checksum.getValue();
+        }
+    }
+
+    /**
+     * Parses the "a -> b" lines of one mapped chunk.
+     */
+    private static class ChunkParser implements Callable<Chunk> {
+        private final MappedByteBuffer buffer;
+        private final long offset;
+
+        private final Chunk chunk = new Chunk();
+
+        // the UTF-8 bytes of every label of the chunk, one after the other;
+        // the label with local id i is at [labelOffsets[i], labelOffsets[i +
+        // 1])
+        private byte[] labelBytes = new byte[1 << 12];
+        private int[] labelOffsets = new int[1 << 8];
+        // open addressing hash table of local id + 1, or 0 if empty, keyed on
+        // the label bytes so that a label already seen needs no String
+        private int[] table = new int[1 << 8];
+
+        ChunkParser(MappedByteBuffer buffer, long offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            int limit = buffer.limit();
+            int lineStart = 0;
+
+            while (lineStart < limit) {
+                // find the end of the line, not counting "\r\n" or "\n"
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int next = lineEnd + 1;
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+
+                if (lineEnd > lineStart) {
+                    int separator = indexOfSeparator(lineStart, lineEnd);
+                    if (separator < 0) {
+                        throw new IOException("Expected \"a -> b\" at byte " + (offset + lineStart));
+                    }
+                    int source = intern(lineStart, separator);
+                    int target = intern(separator + SEPARATOR.length, lineEnd);
+                    chunk.addEdge(source, target);
+                }
+
+                lineStart = next;
+            }
+
+            return chunk;
+        }
+
+        /**
+         * @return the position of the first " -> " in [from, to), or -1
+         */
+        private int indexOfSeparator(int from, int to) {
+            outer: for (int position = from; position + SEPARATOR.length <= to; position++) {
+                for (int k = 0; k < SEPARATOR.length; k++) {
+                    if (buffer.get(position + k) != SEPARATOR[k]) {
+                        continue outer;
+                    }
+                }
+                return position;
+            }
+            return -1;
+        }
+
+        /**
+         * @return the chunk-local id of the label in bytes [from, to). A
+         *         String is only made the first time a label is seen.
+         */
+        private int intern(int from, int to) {
+            int hash = hash(from, to);
+            int slot = hash & (table.length - 1);
+            while (table[slot] != 0) {
+                if (labelEquals(table[slot] - 1, from, to)) {
+                    return table[slot] - 1;
+                }
+                slot = (slot + 1) & (table.length - 1);
+            }
+
+            // a new label: keep its bytes and make its String
+            int id = chunk.labels.size();
+            int length = to - from;
+            int start = labelOffsets[id];
+            if (start + length > labelBytes.length) {
+                labelBytes = Arrays.copyOf(labelBytes, Math.max(start + length, 2 * labelBytes.length));
+            }
+            for (int k = 0; k < length; k++) {
+                labelBytes[start + k] = buffer.get(from + k);
+            }
+            if (id + 2 > labelOffsets.length) {
+                labelOffsets = Arrays.copyOf(labelOffsets, 2 * labelOffsets.length);
+            }
+            labelOffsets[id + 1] = start + length;
+            chunk.labels.add(new String(labelBytes, start, length, StandardCharsets.UTF_8));
+
+            table[slot] = id + 1;
+            // keep the table at most half full
+            if (2 * (id + 1) > table.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        /**
+         * FNV-1a hash of the bytes [from, to) of the buffer.
+         */
+        private int hash(int from, int to) {
+            int hash = 0x811C9DC5;
+            for (int k = from; k < to; k++) {
+                hash ^= buffer.get(k) & 0xFF;
+                hash *= 0x01000193;
+            }
+            return hash;
+        }
+
+        private boolean labelEquals(int id, int from, int to) {
+            int start = labelOffsets[id];
+            if (labelOffsets[id + 1] - start != to - from) {
+                return false;
+            }
+            for (int k = 0; k < to - from; k++) {
+                if (labelBytes[start + k] != buffer.get(from + k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Double the hash table and put every label back in.
+         */
+        private void rehash() {
+            table = new int[2 * table.length];
+            for (int id = 0; id < chunk.labels.size(); id++) {
+                int hash = 0x811C9DC5;
+                for (int k = labelOffsets[id]; k < labelOffsets[id + 1]; k++) {
+                    hash ^= labelBytes[k] & 0xFF;
+                    hash *= 0x01000193;
+                }
+                int slot = hash & (table.length - 1);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (table.length - 1);
+                }
+                table[slot] = id + 1;
+            }
+        }
+    }
+}